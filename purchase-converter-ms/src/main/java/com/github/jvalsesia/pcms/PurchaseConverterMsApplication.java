@@ -10,9 +10,8 @@ import io.swagger.v3.oas.annotations.info.License;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
-import org.springframework.context.annotation.Bean;
 import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
-import org.springframework.web.client.RestClient;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 
 @OpenAPIDefinition(info = @Info(
@@ -29,14 +28,10 @@ import org.springframework.web.client.RestClient;
 )
 @SpringBootApplication
 @EnableJpaAuditing
+@EnableScheduling
 @EnableConfigurationProperties(value = {TreasuryApiConfiguration.class, IssuerUriConfig.class})
 public class PurchaseConverterMsApplication {
 
-    @Bean
-    public RestClient restClient() {
-        return RestClient.create();
-    }
-
     public static void main(String[] args) {
         SpringApplication.run(PurchaseConverterMsApplication.class, args);
     }
@@ -1,10 +1,25 @@
 package com.github.jvalsesia.pcms.api.controller;
 
+import com.github.jvalsesia.pcms.api.dto.BatchConversionRequest;
+import com.github.jvalsesia.pcms.api.dto.BatchConversionResponse;
+import com.github.jvalsesia.pcms.api.dto.BulkIngestResponse;
 import com.github.jvalsesia.pcms.api.dto.ConvertedPurchaseResponse;
+import com.github.jvalsesia.pcms.api.dto.PurchasePageResponse;
+import com.github.jvalsesia.pcms.api.dto.PurchaseReportResponse;
 import com.github.jvalsesia.pcms.api.dto.PurchaseRequest;
 import com.github.jvalsesia.pcms.api.dto.PurchaseResponse;
 import com.github.jvalsesia.pcms.domain.exception.ErrorResponse;
+import com.github.jvalsesia.pcms.domain.service.PurchaseExportFormat;
+import com.github.jvalsesia.pcms.domain.service.PurchaseExportService;
+import com.github.jvalsesia.pcms.domain.service.PurchaseIdempotencyService;
+import com.github.jvalsesia.pcms.domain.service.PurchaseIngestService;
+import com.github.jvalsesia.pcms.domain.service.PurchaseReportGranularity;
+import com.github.jvalsesia.pcms.domain.service.PurchaseReportRounding;
+import com.github.jvalsesia.pcms.domain.service.PurchaseReportService;
+import com.github.jvalsesia.pcms.domain.service.PurchaseSearchService;
 import com.github.jvalsesia.pcms.domain.service.PurchaseService;
+import com.github.jvalsesia.pcms.domain.service.PurchaseWriteBehindService;
+import com.github.jvalsesia.pcms.infrastructure.database.repository.PurchaseJdbcRepository.SearchCriteria;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
@@ -12,12 +27,22 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
 import java.util.UUID;
 
 @RestController
@@ -26,21 +51,82 @@ import java.util.UUID;
 @EnableMethodSecurity
 public class PurchaseController {
 
+    static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    static final String IDEMPOTENT_REPLAYED = "Idempotent-Replayed";
+
     private final PurchaseService purchaseService;
+    private final PurchaseExportService purchaseExportService;
+    private final PurchaseSearchService purchaseSearchService;
+    private final PurchaseReportService purchaseReportService;
+    private final PurchaseIngestService purchaseIngestService;
+    private final PurchaseWriteBehindService purchaseWriteBehindService;
+    private final PurchaseIdempotencyService purchaseIdempotencyService;
 
     @Operation(summary = "Create Purchase REST API", description = "REST API to create new Purchase")
     @ApiResponses({
             @ApiResponse(responseCode = "201", description = "HTTP Status CREATED"),
+            @ApiResponse(responseCode = "202", description = "HTTP Status ACCEPTED, queued by the write-behind mode and not yet committed"),
             @ApiResponse(responseCode = "400", description = "HTTP Status BAD REQUEST", content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
-            @ApiResponse(responseCode = "500", description = "HTTP Status Internal Server Error", content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+            @ApiResponse(responseCode = "422", description = "HTTP Status UNPROCESSABLE ENTITY, the Idempotency-Key was used for a different request", content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "500", description = "HTTP Status Internal Server Error", content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "503", description = "HTTP Status SERVICE UNAVAILABLE, the write-behind queue is full", content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
     })
     @PostMapping("/purchases")
     @PreAuthorize("hasAnyAuthority('SCOPE_purchase')")
-    public ResponseEntity<PurchaseResponse> createPurchase(@Valid @RequestBody PurchaseRequest request) {
+    public ResponseEntity<PurchaseResponse> createPurchase(
+            @Valid @RequestBody PurchaseRequest request,
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        // Keyed creations are stored synchronously, with their key, in one transaction
+        if (idempotencyKey != null) {
+            PurchaseIdempotencyService.Result result = purchaseIdempotencyService.createPurchase(request, idempotencyKey);
+            return ResponseEntity.status(HttpStatus.CREATED)
+                    .header(IDEMPOTENT_REPLAYED, String.valueOf(result.replayed()))
+                    .body(result.purchase());
+        }
+        if (purchaseWriteBehindService.isEnabled()) {
+            PurchaseWriteBehindService.Submission submission = purchaseWriteBehindService.submit(request);
+            return ResponseEntity.status(submission.committed() ? HttpStatus.CREATED : HttpStatus.ACCEPTED)
+                    .body(submission.purchase());
+        }
         PurchaseResponse response = purchaseService.createPurchase(request);
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
 
+    @Operation(summary = "Bulk Create Purchases REST API", description = "REST API to create many Purchases from a JSON array or an NDJSON stream, reporting the rows that were rejected")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "HTTP Status OK, with the number of Purchases stored and the errors of the rejected rows"),
+            @ApiResponse(responseCode = "415", description = "HTTP Status UNSUPPORTED MEDIA TYPE"),
+            @ApiResponse(responseCode = "500", description = "HTTP Status Internal Server Error", content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @PostMapping(value = "/purchases/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    @PreAuthorize("hasAnyAuthority('SCOPE_purchase')")
+    public ResponseEntity<BulkIngestResponse> createPurchases(InputStream body) throws IOException {
+        BulkIngestResponse response = purchaseIngestService.ingest(body);
+        return ResponseEntity.ok(response);
+    }
+
+    @Operation(summary = "Search Purchases REST API", description = "REST API to list Purchases filtered by transaction date range, amount range and description prefix, one page at a time")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "HTTP Status OK, with the page and the cursor of the next one"),
+            @ApiResponse(responseCode = "400", description = "HTTP Status BAD REQUEST", content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "500", description = "HTTP Status Internal Server Error", content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @GetMapping("/purchases")
+    @PreAuthorize("hasAnyAuthority('SCOPE_purchase')")
+    public ResponseEntity<PurchasePageResponse> searchPurchases(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) BigDecimal minAmount,
+            @RequestParam(required = false) BigDecimal maxAmount,
+            @RequestParam(required = false) String description,
+            @RequestParam(defaultValue = "" + PurchaseSearchService.DEFAULT_PAGE_SIZE) int limit,
+            @RequestParam(required = false) String cursor) {
+        SearchCriteria criteria = new SearchCriteria(from, to, minAmount, maxAmount,
+                description == null || description.isEmpty() ? null : description);
+        PurchasePageResponse response = purchaseSearchService.searchPurchases(criteria, limit, cursor);
+        return ResponseEntity.ok(response);
+    }
+
     @Operation(summary = "Fetch Purchase REST API", description = "REST API to Purchase based on id")
     @ApiResponses({
             @ApiResponse(responseCode = "201", description = "HTTP Status CREATED"),
@@ -55,4 +141,76 @@ public class PurchaseController {
         ConvertedPurchaseResponse response = purchaseService.getPurchaseInCurrency(id, country);
         return ResponseEntity.ok(response);
     }
-}
\ No newline at end of file
+
+    @Operation(summary = "Fetch Purchase In Many Currencies REST API", description = "REST API to convert a Purchase to the currencies of several countries at once")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "HTTP Status OK, with the result or the error of every country"),
+            @ApiResponse(responseCode = "400", description = "HTTP Status BAD REQUEST", content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "404", description = "HTTP Status NOT FOUND", content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "500", description = "HTTP Status Internal Server Error", content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @GetMapping(value = "/purchases/{id}/convert", params = "countries")
+    @PreAuthorize("hasAnyAuthority('SCOPE_purchase')")
+    public ResponseEntity<BatchConversionResponse> getPurchaseInCurrencies(
+            @PathVariable UUID id,
+            @RequestParam List<String> countries) {
+        BatchConversionResponse response = purchaseService.getPurchaseInCurrencies(id, countries);
+        return ResponseEntity.ok(response);
+    }
+
+    @Operation(summary = "Batch Convert Purchases REST API", description = "REST API to convert many Purchases in one call, each to its own target country")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "HTTP Status OK, with the result or the error of every item"),
+            @ApiResponse(responseCode = "400", description = "HTTP Status BAD REQUEST", content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "500", description = "HTTP Status Internal Server Error", content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @PostMapping("/purchases/convert/batch")
+    @PreAuthorize("hasAnyAuthority('SCOPE_purchase')")
+    public ResponseEntity<BatchConversionResponse> convertPurchases(@Valid @RequestBody BatchConversionRequest request) {
+        BatchConversionResponse response = purchaseService.convertPurchases(request.getItems());
+        return ResponseEntity.ok(response);
+    }
+
+    @Operation(summary = "Export Converted Purchases REST API", description = "REST API to stream every Purchase of a transaction date range converted to one country's currency, as NDJSON or CSV")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "HTTP Status OK, one line per Purchase ordered by transaction date"),
+            @ApiResponse(responseCode = "400", description = "HTTP Status BAD REQUEST", content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "500", description = "HTTP Status Internal Server Error", content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @GetMapping("/purchases/export")
+    @PreAuthorize("hasAnyAuthority('SCOPE_purchase')")
+    public ResponseEntity<StreamingResponseBody> exportPurchases(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam String country,
+            @RequestParam(defaultValue = "ndjson") String format) {
+        PurchaseExportFormat exportFormat = PurchaseExportFormat.from(format);
+        purchaseExportService.validate(from, to, country);
+        StreamingResponseBody body = out -> purchaseExportService.export(from, to, country, exportFormat, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getMediaType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("purchases-" + from + "-" + to + "." + exportFormat.getFileExtension())
+                        .build().toString())
+                .body(body);
+    }
+
+    @Operation(summary = "Converted Purchase Report REST API", description = "REST API to total the Purchases of a transaction date range per day, week or month, converted to one country's currency")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "HTTP Status OK, one bucket per period holding purchases"),
+            @ApiResponse(responseCode = "400", description = "HTTP Status BAD REQUEST", content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "500", description = "HTTP Status Internal Server Error", content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @GetMapping("/purchases/report")
+    @PreAuthorize("hasAnyAuthority('SCOPE_purchase')")
+    public ResponseEntity<PurchaseReportResponse> reportPurchases(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam String country,
+            @RequestParam(defaultValue = "month") String granularity,
+            @RequestParam(defaultValue = "item") String rounding) {
+        PurchaseReportResponse response = purchaseReportService.report(from, to, country,
+                PurchaseReportGranularity.from(granularity), PurchaseReportRounding.from(rounding));
+        return ResponseEntity.ok(response);
+    }
+}
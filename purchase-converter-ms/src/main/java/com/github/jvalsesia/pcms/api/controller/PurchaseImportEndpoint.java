@@ -0,0 +1,43 @@
+package com.github.jvalsesia.pcms.api.controller;
+
+import com.github.jvalsesia.pcms.api.dto.PurchaseImportStatus;
+import com.github.jvalsesia.pcms.domain.exception.InvalidRequestException;
+import com.github.jvalsesia.pcms.domain.service.PurchaseImportService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Starts purchase file imports and reports their progress:
+ * {@code POST /actuator/purchaseimport {"file": "purchases.csv"}}, then
+ * {@code GET /actuator/purchaseimport}. Files are named relative to {@code purchase.import.directory}.
+ * Not exposed by default; it needs a token with the {@code purchase.admin} scope once it is.
+ */
+@Component
+@Endpoint(id = "purchaseimport")
+@RequiredArgsConstructor
+public class PurchaseImportEndpoint {
+
+    private final PurchaseImportService purchaseImportService;
+
+    @ReadOperation
+    public WebEndpointResponse<PurchaseImportStatus> status() {
+        return purchaseImportService.status()
+                .map(WebEndpointResponse::new)
+                .orElseGet(() -> new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND));
+    }
+
+    @WriteOperation
+    public WebEndpointResponse<Object> start(String file) {
+        try {
+            return new WebEndpointResponse<>(purchaseImportService.start(purchaseImportService.resolveInImportDirectory(file)), 202);
+        } catch (InvalidRequestException e) {
+            return new WebEndpointResponse<>(Map.of("message", e.getMessage()), WebEndpointResponse.STATUS_BAD_REQUEST);
+        }
+    }
+}
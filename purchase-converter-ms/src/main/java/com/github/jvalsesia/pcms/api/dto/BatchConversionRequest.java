@@ -0,0 +1,40 @@
+package com.github.jvalsesia.pcms.api.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@Schema(name = "BatchConversionRequest", description = "Schema to hold the purchases to convert in one call")
+public class BatchConversionRequest {
+
+    public static final int MAX_ITEMS = 1000;
+
+    @NotEmpty(message = "At least one item is required")
+    @Size(max = MAX_ITEMS, message = "At most " + MAX_ITEMS + " items can be converted in one call")
+    @Schema(description = "Purchase and country pairs to convert, answered in the same order")
+    private List<@Valid Item> items;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Schema(name = "BatchConversionItem", description = "Schema to hold one purchase to convert")
+    public static class Item {
+        @NotNull(message = "Purchase id is required")
+        @Schema(description = "The unique id of the Purchase to convert")
+        private UUID purchaseId;
+
+        @NotBlank(message = "Country is required")
+        @Schema(description = "Target country for the currency conversion", example = "Brazil")
+        private String country;
+    }
+}
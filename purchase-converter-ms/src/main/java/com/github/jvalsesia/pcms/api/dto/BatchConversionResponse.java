@@ -0,0 +1,46 @@
+package com.github.jvalsesia.pcms.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(name = "BatchConversionResponse", description = "Schema to hold the result of every item of a batch conversion")
+public class BatchConversionResponse {
+    @Schema(description = "One result per requested item, in request order")
+    private List<Item> results;
+    @Schema(description = "Number of items converted")
+    private int converted;
+    @Schema(description = "Number of items that failed")
+    private int failed;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @Schema(name = "BatchConversionResult", description = "Schema to hold the conversion or the error of one item")
+    public static class Item {
+        @Schema(description = "The unique id of the Purchase")
+        private UUID purchaseId;
+        @Schema(description = "Target country for the currency conversion")
+        private String country;
+        @Schema(description = "HTTP status the single conversion endpoint would have answered")
+        private int status;
+        @Schema(description = "The converted Purchase, when the conversion succeeded")
+        private ConvertedPurchaseResponse conversion;
+        @Schema(description = "Error type, when the conversion failed")
+        private String error;
+        @Schema(description = "Error message, when the conversion failed")
+        private String message;
+    }
+}
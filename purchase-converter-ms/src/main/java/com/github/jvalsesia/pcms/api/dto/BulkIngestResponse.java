@@ -0,0 +1,36 @@
+package com.github.jvalsesia.pcms.api.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(name = "BulkIngestResponse", description = "Schema to hold the outcome of a bulk Purchase ingest")
+public class BulkIngestResponse {
+    @Schema(description = "Number of rows read from the request")
+    private int received;
+    @Schema(description = "Number of Purchases stored")
+    private int inserted;
+    @Schema(description = "Number of rows rejected")
+    private int rejected;
+    @Schema(description = "Errors of the rejected rows, up to the configured limit")
+    private List<RowError> errors;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Schema(name = "BulkIngestRowError", description = "Schema to hold why one row was rejected")
+    public static class RowError {
+        @Schema(description = "Position of the row in the request, starting at 1")
+        private int row;
+        @Schema(description = "Why the row was rejected")
+        private String message;
+    }
+}
@@ -30,4 +30,8 @@ public class ConvertedPurchaseResponse {
     private BigDecimal convertedAmount;
     @Schema(description = "Purchase Target Currency")
     private String targetCurrency;
+    @Schema(description = "Seconds since the exchange rate was last retrieved from Treasury API")
+    private long exchangeRateAgeSeconds;
+    @Schema(description = "True when the exchange rate is stale and served while it is being refreshed")
+    private boolean staleExchangeRate;
 }
\ No newline at end of file
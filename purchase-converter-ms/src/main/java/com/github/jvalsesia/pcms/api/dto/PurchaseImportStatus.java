@@ -0,0 +1,40 @@
+package com.github.jvalsesia.pcms.api.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(name = "PurchaseImportStatus", description = "Schema to hold the progress of a purchase file import")
+public class PurchaseImportStatus {
+    @Schema(description = "Imported file")
+    private String file;
+    @Schema(description = "RUNNING, COMPLETED or FAILED")
+    private String state;
+    @Schema(description = "Size of the file in bytes")
+    private long totalBytes;
+    @Schema(description = "Bytes parsed so far")
+    private long bytesRead;
+    @Schema(description = "Rows parsed so far")
+    private long rows;
+    @Schema(description = "Purchases stored so far")
+    private long inserted;
+    @Schema(description = "Rows rejected so far")
+    private long rejected;
+    @Schema(description = "Average rows parsed per second since the start")
+    private long rowsPerSecond;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    @Schema(description = "Why the import stopped, when it failed")
+    private String failure;
+    @Schema(description = "Errors of the rejected rows, with their line number, once the import has finished")
+    private List<BulkIngestResponse.RowError> errors;
+}
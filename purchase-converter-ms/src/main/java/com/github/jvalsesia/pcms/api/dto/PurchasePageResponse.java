@@ -0,0 +1,21 @@
+package com.github.jvalsesia.pcms.api.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(name = "PurchasePageResponse", description = "Schema to hold one page of Purchases matching a search")
+public class PurchasePageResponse {
+    @Schema(description = "Purchases of the page, ordered by transaction date and id")
+    private List<PurchaseResponse> items;
+    @Schema(description = "Cursor to pass to fetch the next page, null on the last page")
+    private String nextCursor;
+}
@@ -0,0 +1,45 @@
+package com.github.jvalsesia.pcms.api.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(name = "PurchaseReportResponse", description = "Schema to hold Purchase totals per period converted to one country's currency")
+public class PurchaseReportResponse {
+    @Schema(description = "Target country for the currency conversion")
+    private String country;
+    @Schema(description = "Bucket size: day, week or month")
+    private String granularity;
+    @Schema(description = "Rounding of converted totals: item or bucket")
+    private String rounding;
+    @Schema(description = "One entry per period holding purchases, ordered by start date")
+    private List<Bucket> buckets;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Schema(name = "PurchaseReportBucket", description = "Schema to hold the Purchase totals of one period")
+    public static class Bucket {
+        @Schema(description = "First day of the period")
+        private LocalDate start;
+        @Schema(description = "Number of purchases in the period")
+        private long purchaseCount;
+        @Schema(description = "Number of purchases without an exchange rate, left out of the converted amount")
+        private long unconvertedCount;
+        @Schema(description = "Total purchase amount in USD")
+        private BigDecimal totalAmount;
+        @Schema(description = "Total converted amount of the purchases with an exchange rate")
+        private BigDecimal convertedAmount;
+    }
+}
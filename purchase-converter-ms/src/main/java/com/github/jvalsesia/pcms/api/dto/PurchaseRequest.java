@@ -11,16 +11,27 @@ import java.time.LocalDate;
 @Data
 public class PurchaseRequest {
 
-    @NotBlank(message = "Description is required")
-    @Size(max = 50, message = "Description must not exceed 50 characters")
+    // Shared with PurchaseRequestRules, which applies the same constraints without reflection
+    public static final int DESCRIPTION_MAX_LENGTH = 50;
+    public static final String MIN_AMOUNT = "0.01";
+    public static final String DESCRIPTION_REQUIRED = "Description is required";
+    public static final String DESCRIPTION_TOO_LONG = "Description must not exceed 50 characters";
+    public static final String DATE_REQUIRED = "Transaction date is required";
+    public static final String DATE_IN_FUTURE = "Transaction date must not be in the future";
+    public static final String AMOUNT_REQUIRED = "Purchase amount is required";
+    public static final String AMOUNT_NOT_POSITIVE = "Purchase amount must be positive";
+    public static final String AMOUNT_TOO_SMALL = "Purchase amount must be at least 0.01";
+
+    @NotBlank(message = DESCRIPTION_REQUIRED)
+    @Size(max = DESCRIPTION_MAX_LENGTH, message = DESCRIPTION_TOO_LONG)
     @Schema(
             description = "Purchase description", example = "Office Supplies"
     )
     private String description;
 
 
-    @NotNull(message = "Transaction date is required")
-    @PastOrPresent(message = "Transaction date must not be in the future")
+    @NotNull(message = DATE_REQUIRED)
+    @PastOrPresent(message = DATE_IN_FUTURE)
     @ValidDateFormat
     @Schema(
             description = "Purchase transaction date, the valid format is yyyy-MM-dd", example = "2025-10-02"
@@ -28,9 +39,9 @@ public class PurchaseRequest {
     private LocalDate transactionDate;
 
 
-    @NotNull(message = "Purchase amount is required")
-    @Positive(message = "Purchase amount must be positive")
-    @DecimalMin(value = "0.01", message = "Purchase amount must be at least 0.01")
+    @NotNull(message = AMOUNT_REQUIRED)
+    @Positive(message = AMOUNT_NOT_POSITIVE)
+    @DecimalMin(value = MIN_AMOUNT, message = AMOUNT_TOO_SMALL)
     @Schema(
             description = "Purchase transaction amount, must be positive greater than ZERO", example = "385.91"
     )
@@ -0,0 +1,47 @@
+package com.github.jvalsesia.pcms.api.validator;
+
+import com.github.jvalsesia.pcms.api.dto.PurchaseRequest;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * The constraints of {@link PurchaseRequest} as plain checks, for bulk paths where per-row Bean
+ * Validation would cost more than parsing the row. Messages match the annotations.
+ */
+public final class PurchaseRequestRules {
+
+    private static final BigDecimal MIN_AMOUNT = new BigDecimal(PurchaseRequest.MIN_AMOUNT);
+
+    private PurchaseRequestRules() {
+    }
+
+    /**
+     * Returns the first violated constraint, or {@code null} when the purchase is valid.
+     */
+    public static String check(String description, LocalDate transactionDate, BigDecimal purchaseAmount,
+                               LocalDate today) {
+        if (description == null || description.isBlank()) {
+            return "description: " + PurchaseRequest.DESCRIPTION_REQUIRED;
+        }
+        if (description.length() > PurchaseRequest.DESCRIPTION_MAX_LENGTH) {
+            return "description: " + PurchaseRequest.DESCRIPTION_TOO_LONG;
+        }
+        if (transactionDate == null) {
+            return "transactionDate: " + PurchaseRequest.DATE_REQUIRED;
+        }
+        if (transactionDate.isAfter(today)) {
+            return "transactionDate: " + PurchaseRequest.DATE_IN_FUTURE;
+        }
+        if (purchaseAmount == null) {
+            return "purchaseAmount: " + PurchaseRequest.AMOUNT_REQUIRED;
+        }
+        if (purchaseAmount.signum() <= 0) {
+            return "purchaseAmount: " + PurchaseRequest.AMOUNT_NOT_POSITIVE;
+        }
+        if (purchaseAmount.compareTo(MIN_AMOUNT) < 0) {
+            return "purchaseAmount: " + PurchaseRequest.AMOUNT_TOO_SMALL;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,9 @@
+package com.github.jvalsesia.pcms.domain.exception;
+
+import java.util.UUID;
+
+public class IdempotencyKeyConflictException extends RuntimeException {
+    public IdempotencyKeyConflictException(String key, UUID purchaseId) {
+        super("Idempotency-Key '" + key + "' refers to purchase " + purchaseId + ", which is no longer stored");
+    }
+}
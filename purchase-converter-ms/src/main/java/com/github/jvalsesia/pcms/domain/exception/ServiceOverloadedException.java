@@ -0,0 +1,7 @@
+package com.github.jvalsesia.pcms.domain.exception;
+
+public class ServiceOverloadedException extends RuntimeException {
+    public ServiceOverloadedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,16 @@
+package com.github.jvalsesia.pcms.domain.service;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+/**
+ * Source of the exchange rate used to convert a purchase.
+ * <p>
+ * Implementations return the latest rate for the country effective on or before the
+ * transaction date and no older than 6 months, or empty when there is none.
+ * The implementation is selected with {@code exchange-rate.provider}.
+ */
+public interface ExchangeRateProvider {
+
+    Optional<ExchangeRateQuote> findExchangeRate(String country, LocalDate transactionDate);
+}
@@ -0,0 +1,18 @@
+package com.github.jvalsesia.pcms.domain.service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+
+/**
+ * Exchange rate returned by an {@link ExchangeRateProvider}.
+ *
+ * @param rate  the exchange rate
+ * @param age   time since the rate was last retrieved from the Treasury API
+ * @param stale true when the rate is past its freshness lifetime and served while it is revalidated
+ */
+public record ExchangeRateQuote(BigDecimal rate, Duration age, boolean stale) {
+
+    public static ExchangeRateQuote fresh(BigDecimal rate, Duration age) {
+        return new ExchangeRateQuote(rate, age, false);
+    }
+}
@@ -0,0 +1,174 @@
+package com.github.jvalsesia.pcms.domain.service;
+
+import com.github.jvalsesia.pcms.infrastructure.database.entity.ExchangeRateSyncState;
+import com.github.jvalsesia.pcms.infrastructure.database.repository.ExchangeRateJdbcRepository;
+import com.github.jvalsesia.pcms.infrastructure.database.repository.ExchangeRateSyncStateRepository;
+import com.github.jvalsesia.pcms.infrastructure.treasury.TreasuryApiClient;
+import com.github.jvalsesia.pcms.infrastructure.treasury.TreasuryApiException;
+import com.github.jvalsesia.pcms.infrastructure.treasury.TreasuryApiResponse;
+import com.github.jvalsesia.pcms.infrastructure.treasury.config.ExchangeRateSyncConfiguration;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Copies the Treasury rates of exchange dataset into the local exchange_rate table,
+ * so conversions never have to call the Treasury API.
+ * <p>
+ * Each run only asks for records effective on or after the stored watermark. The first page
+ * tells how many pages there are; the remaining pages are fetched in parallel, streamed and
+ * upserted in JDBC batches. The watermark only moves once every page has been stored.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ExchangeRateSyncService {
+
+    public static final String SYNC_NAME = "treasury";
+
+    private final ExchangeRateSyncStateRepository syncStateRepository;
+    private final ExchangeRateJdbcRepository exchangeRateJdbcRepository;
+    private final TreasuryApiClient treasuryApiClient;
+    private final ExchangeRateSyncConfiguration syncConfiguration;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        scheduledSync();
+    }
+
+    @Scheduled(cron = "${exchange-rate.sync.cron:0 0 6 * * *}")
+    public void scheduledSync() {
+        if (!syncConfiguration.isEnabled()) {
+            return;
+        }
+        try {
+            synchronize();
+        } catch (Exception e) {
+            // Keep serving from the rates already stored, the next run retries
+            log.error("Exchange rate synchronization failed", e);
+        }
+    }
+
+    public int synchronize() {
+        long start = System.nanoTime();
+        Optional<ExchangeRateSyncState> state = syncStateRepository.findById(SYNC_NAME);
+        // The watermark date itself is read again: upserts are idempotent and
+        // Treasury may have published only part of that date on the previous run
+        LocalDate watermark = state.map(ExchangeRateSyncState::getWatermark).orElse(syncConfiguration.getInitialDate());
+        log.info("Synchronizing exchange rates effective on or after {}", watermark);
+
+        PageWriter firstPage = syncPage(watermark, 1);
+        List<PageWriter> pages = new ArrayList<>(List.of(firstPage));
+        if (firstPage.totalPages > 1) {
+            pages.addAll(syncRemainingPages(watermark, firstPage.totalPages));
+        }
+
+        // Only rows actually inserted or corrected count, so a run that finds nothing new leaves
+        // the rates version and the caches built on it alone
+        int stored = 0;
+        LocalDate latest = watermark;
+        for (PageWriter page : pages) {
+            stored += page.stored;
+            if (page.latestEffectiveDate != null && page.latestEffectiveDate.isAfter(latest)) {
+                latest = page.latestEffectiveDate;
+            }
+        }
+
+        long ratesVersion;
+        if (state.isPresent()) {
+            ratesVersion = syncStateRepository.advance(SYNC_NAME, latest, stored > 0);
+        } else {
+            // First sync: a concurrent first sync on another node fails on the primary key instead
+            ExchangeRateSyncState created = new ExchangeRateSyncState(SYNC_NAME, latest, stored > 0 ? 1 : 0);
+            syncStateRepository.save(created);
+            ratesVersion = created.getRatesVersion();
+        }
+        log.info("Stored {} new or corrected exchange rates from {} pages in {} ms, watermark {}",
+                stored, pages.size(), (System.nanoTime() - start) / 1_000_000, latest);
+
+        if (stored > 0) {
+            eventPublisher.publishEvent(new ExchangeRatesUpdatedEvent(stored, ratesVersion, false));
+        }
+        return stored;
+    }
+
+    private List<PageWriter> syncRemainingPages(LocalDate watermark, int totalPages) {
+        int threads = Math.min(syncConfiguration.getMaxConcurrentPages(), totalPages - 1);
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            List<Future<PageWriter>> futures = new ArrayList<>();
+            for (int pageNumber = 2; pageNumber <= totalPages; pageNumber++) {
+                int page = pageNumber;
+                futures.add(executor.submit(() -> syncPage(watermark, page)));
+            }
+
+            List<PageWriter> pages = new ArrayList<>();
+            for (Future<PageWriter> future : futures) {
+                pages.add(future.get());
+            }
+            return pages;
+
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new TreasuryApiException("Failed to synchronize exchange rates: " + e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TreasuryApiException("Exchange rate synchronization interrupted", e);
+        }
+    }
+
+    private PageWriter syncPage(LocalDate watermark, int pageNumber) {
+        PageWriter writer = new PageWriter();
+        writer.totalPages = treasuryApiClient.streamExchangeRatesPage(
+                watermark, pageNumber, syncConfiguration.getPageSize(), writer);
+        writer.flush();
+        return writer;
+    }
+
+    // Buffers streamed records of one page and upserts them batch by batch
+    private class PageWriter implements Consumer<TreasuryApiResponse.ExchangeRateData> {
+
+        private final List<TreasuryApiResponse.ExchangeRateData> batch = new ArrayList<>(syncConfiguration.getBatchSize());
+        private int totalPages;
+        private int stored;
+        private LocalDate latestEffectiveDate;
+
+        @Override
+        public void accept(TreasuryApiResponse.ExchangeRateData data) {
+            if (data.getCountry() == null || data.getEffectiveDate() == null || data.getExchangeRate() == null) {
+                return;
+            }
+            if (data.getCurrency() == null) {
+                data.setCurrency("");
+            }
+            batch.add(data);
+            if (latestEffectiveDate == null || data.getEffectiveDate().isAfter(latestEffectiveDate)) {
+                latestEffectiveDate = data.getEffectiveDate();
+            }
+            if (batch.size() >= syncConfiguration.getBatchSize()) {
+                flush();
+            }
+        }
+
+        void flush() {
+            stored += exchangeRateJdbcRepository.upsertAll(batch);
+            batch.clear();
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.github.jvalsesia.pcms.domain.service;
+
+/**
+ * Published after new exchange rates have been stored locally, or, with {@code remote} set, after
+ * another node sharing the database stored them. {@code ratesVersion} is the version of the stored
+ * rates the event brings the node to.
+ */
+public record ExchangeRatesUpdatedEvent(int storedRates, long ratesVersion, boolean remote) {
+}
@@ -0,0 +1,28 @@
+package com.github.jvalsesia.pcms.domain.service;
+
+import com.github.jvalsesia.pcms.domain.exception.InvalidRequestException;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Locale;
+
+/**
+ * Output formats of the converted purchase export.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum PurchaseExportFormat {
+    NDJSON("application/x-ndjson", "ndjson"),
+    CSV("text/csv", "csv");
+
+    private final String mediaType;
+    private final String fileExtension;
+
+    public static PurchaseExportFormat from(String format) {
+        try {
+            return valueOf(format.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRequestException("Unsupported export format '" + format + "', use ndjson or csv");
+        }
+    }
+}
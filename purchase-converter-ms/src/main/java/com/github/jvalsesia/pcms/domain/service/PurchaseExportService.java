@@ -0,0 +1,210 @@
+package com.github.jvalsesia.pcms.domain.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.jvalsesia.pcms.domain.exception.InvalidRequestException;
+import com.github.jvalsesia.pcms.infrastructure.database.repository.PurchaseJdbcRepository;
+import com.github.jvalsesia.pcms.infrastructure.database.repository.PurchaseJdbcRepository.PurchaseRow;
+import com.github.jvalsesia.pcms.infrastructure.treasury.TreasuryApiException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Optional;
+
+/**
+ * Streams every purchase of a transaction date range, converted to one country's currency,
+ * as NDJSON or CSV. Purchases are read page by page with keyset pagination and written as
+ * they are read, so memory use does not grow with the size of the range.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PurchaseExportService {
+
+    static final int PAGE_SIZE = 1000;
+
+    private final PurchaseJdbcRepository purchaseJdbcRepository;
+    private final ExchangeRateProvider exchangeRateProvider;
+    private final ObjectMapper objectMapper;
+
+    public void validate(LocalDate from, LocalDate to, String country) {
+        if (from.isAfter(to)) {
+            throw new InvalidRequestException("Export start date " + from + " is after end date " + to);
+        }
+        if (country.isBlank()) {
+            throw new InvalidRequestException("Country is required");
+        }
+    }
+
+    public void export(LocalDate from, LocalDate to, String country, PurchaseExportFormat format,
+                       OutputStream out) throws IOException {
+        validate(from, to, country);
+        long start = System.nanoTime();
+        WarmRateLookup rates = new WarmRateLookup(country);
+        int exported;
+        try (RowWriter writer = format == PurchaseExportFormat.CSV ? new CsvRowWriter(out) : new NdjsonRowWriter(out)) {
+            exported = purchaseJdbcRepository.forEachInDateRange(from, to, PAGE_SIZE, row -> {
+                try {
+                    writer.write(row, country, rates.find(row.transactionDate()));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        log.info("Exported {} purchases from {} to {} converted for {} in {} ms with {} rate lookups",
+                exported, from, to, country, (System.nanoTime() - start) / 1_000_000, rates.lookups);
+    }
+
+    // Rows arrive ordered by transaction date, so consecutive rows share their rate lookup
+    private final class WarmRateLookup {
+
+        private final String country;
+        private LocalDate lastDate;
+        private RateResult lastResult;
+        private int lookups;
+
+        WarmRateLookup(String country) {
+            this.country = country;
+        }
+
+        RateResult find(LocalDate transactionDate) {
+            if (!transactionDate.equals(lastDate)) {
+                lastDate = transactionDate;
+                lastResult = lookUp(transactionDate);
+                lookups++;
+            }
+            return lastResult;
+        }
+
+        private RateResult lookUp(LocalDate transactionDate) {
+            try {
+                Optional<ExchangeRateQuote> quote = exchangeRateProvider.findExchangeRate(country, transactionDate);
+                return quote.map(found -> new RateResult(found.rate(), null))
+                        .orElseGet(() -> new RateResult(null, String.format(
+                                "No exchange rate available for country '%s' within 6 months of transaction date %s",
+                                country, transactionDate)));
+            } catch (TreasuryApiException e) {
+                log.error("Treasury API error for country {} on {}: {}", country, transactionDate, e.getMessage());
+                return new RateResult(null, "Unable to retrieve exchange rate information");
+            }
+        }
+    }
+
+    private record RateResult(BigDecimal rate, String error) {
+
+        BigDecimal convert(BigDecimal amount) {
+            return rate == null ? null : amount.multiply(rate).setScale(2, RoundingMode.HALF_UP);
+        }
+    }
+
+    private interface RowWriter extends Closeable {
+
+        void write(PurchaseRow row, String country, RateResult rate) throws IOException;
+    }
+
+    private final class NdjsonRowWriter implements RowWriter {
+
+        private final JsonGenerator generator;
+
+        NdjsonRowWriter(OutputStream out) throws IOException {
+            generator = objectMapper.getFactory().createGenerator(out)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            // One object per line, without the default space between root values
+            generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void write(PurchaseRow row, String country, RateResult rate) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("id", row.id().toString());
+            generator.writeStringField("description", row.description());
+            generator.writeStringField("transactionDate", row.transactionDate().toString());
+            generator.writeNumberField("originalAmount", row.purchaseAmount());
+            generator.writeNumberField("exchangeRate", rate.rate());
+            generator.writeNumberField("convertedAmount", rate.convert(row.purchaseAmount()));
+            generator.writeStringField("targetCurrency", country);
+            if (rate.error() != null) {
+                generator.writeStringField("error", rate.error());
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.close();
+        }
+    }
+
+    private static final class CsvRowWriter implements RowWriter {
+
+        private static final String HEADER =
+                "id,description,transaction_date,original_amount,exchange_rate,converted_amount,target_currency,error";
+
+        private final Writer writer;
+
+        CsvRowWriter(OutputStream out) throws IOException {
+            writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            writer.write(HEADER);
+            writer.write('\n');
+        }
+
+        @Override
+        public void write(PurchaseRow row, String country, RateResult rate) throws IOException {
+            writer.write(row.id().toString());
+            writer.write(',');
+            writeText(row.description());
+            writer.write(',');
+            writer.write(row.transactionDate().toString());
+            writer.write(',');
+            writer.write(row.purchaseAmount().toPlainString());
+            writer.write(',');
+            if (rate.rate() != null) {
+                writer.write(rate.rate().toPlainString());
+                writer.write(',');
+                writer.write(rate.convert(row.purchaseAmount()).toPlainString());
+            } else {
+                writer.write(',');
+            }
+            writer.write(',');
+            writeText(country);
+            writer.write(',');
+            writeText(rate.error());
+            writer.write('\n');
+        }
+
+        // RFC 4180: quote fields holding a separator, a quote or a line break
+        private void writeText(String text) throws IOException {
+            if (text == null) {
+                return;
+            }
+            if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+                writer.write(text);
+                return;
+            }
+            writer.write('"');
+            writer.write(text.replace("\"", "\"\""));
+            writer.write('"');
+        }
+
+        // Flushes without closing the response stream, which belongs to the caller
+        @Override
+        public void close() throws IOException {
+            writer.flush();
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.github.jvalsesia.pcms.domain.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.jvalsesia.pcms.api.dto.PurchaseRequest;
+import com.github.jvalsesia.pcms.api.dto.PurchaseResponse;
+import com.github.jvalsesia.pcms.domain.exception.IdempotencyKeyConflictException;
+import com.github.jvalsesia.pcms.domain.exception.IdempotencyKeyReusedException;
+import com.github.jvalsesia.pcms.domain.exception.InvalidRequestException;
+import com.github.jvalsesia.pcms.infrastructure.concurrent.BloomFilter;
+import com.github.jvalsesia.pcms.infrastructure.database.config.IdempotencyConfiguration;
+import com.github.jvalsesia.pcms.infrastructure.database.entity.IdempotencyKey;
+import com.github.jvalsesia.pcms.infrastructure.database.repository.IdempotencyKeyRepository;
+import com.github.jvalsesia.pcms.infrastructure.database.repository.PurchaseRepository;
+import com.github.jvalsesia.pcms.infrastructure.database.routing.PrimaryReads;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Creates purchases under an Idempotency-Key: a retried request gets the original purchase back
+ * instead of a duplicate. The key is inserted in the transaction that creates the purchase, so
+ * its primary key settles races between nodes. Keys this node has never seen skip the lookup
+ * and go straight to that insert; recent keys are answered from memory.
+ */
+@Slf4j
+@Service
+public class PurchaseIdempotencyService {
+
+    public static final int MAX_KEY_LENGTH = 255;
+
+    private static final String UNIQUE_VIOLATION = "23505";
+
+    private final PurchaseService purchaseService;
+    private final PurchaseRepository purchaseRepository;
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final IdempotencyConfiguration idempotencyConfiguration;
+    private final BloomFilter seenKeys;
+    private final Cache<String, Stored> recentKeys;
+
+    public PurchaseIdempotencyService(PurchaseService purchaseService,
+                                      PurchaseRepository purchaseRepository,
+                                      IdempotencyKeyRepository idempotencyKeyRepository,
+                                      TransactionTemplate transactionTemplate,
+                                      IdempotencyConfiguration idempotencyConfiguration) {
+        this.purchaseService = purchaseService;
+        this.purchaseRepository = purchaseRepository;
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.idempotencyConfiguration = idempotencyConfiguration;
+        this.seenKeys = new BloomFilter(idempotencyConfiguration.getExpectedKeys(),
+                idempotencyConfiguration.getFalsePositiveRate());
+        this.recentKeys = Caffeine.newBuilder()
+                .maximumSize(idempotencyConfiguration.getCacheSize())
+                .expireAfterWrite(idempotencyConfiguration.getTtl())
+                .build();
+    }
+
+    /**
+     * Purchase answered for an Idempotency-Key; {@code replayed} is true when it was created by
+     * an earlier request.
+     */
+    public record Result(PurchaseResponse purchase, boolean replayed) {
+    }
+
+    // Expires with the stored key: replaying it from memory must not extend its life
+    private record Stored(String requestHash, PurchaseResponse purchase, LocalDateTime expiresAt) {
+    }
+
+    public Result createPurchase(PurchaseRequest request, String key) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new InvalidRequestException("Idempotency-Key must be 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+        String requestHash = fingerprint(request);
+
+        Stored recent = recentKeys.getIfPresent(key);
+        if (recent != null) {
+            if (recent.expiresAt().isAfter(LocalDateTime.now())) {
+                return replay(key, requestHash, recent);
+            }
+            recentKeys.invalidate(key);
+        }
+        // Without a Bloom filter hit the key is new to this node: let the insert find out
+        if (seenKeys.mightContain(key)) {
+            Optional<Stored> stored = findStored(key);
+            if (stored.isPresent()) {
+                remember(key, stored.get());
+                return replay(key, requestHash, stored.get());
+            }
+        }
+        return create(request, key, requestHash, true);
+    }
+
+    @Scheduled(cron = "${purchase.idempotency.purge-cron:0 */15 * * * *}")
+    public void purgeExpiredKeys() {
+        int purged = idempotencyKeyRepository.deleteExpired(LocalDateTime.now());
+        if (purged > 0) {
+            log.info("Purged {} expired idempotency keys", purged);
+        }
+    }
+
+    private Result create(PurchaseRequest request, String key, String requestHash, boolean retryExpired) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime expiresAt = now.plus(idempotencyConfiguration.getTtl());
+        try {
+            PurchaseResponse created = transactionTemplate.execute(status -> {
+                PurchaseResponse purchase = purchaseService.createPurchase(request);
+                idempotencyKeyRepository.insert(key, requestHash, purchase.getId(), now, expiresAt);
+                return purchase;
+            });
+            remember(key, new Stored(requestHash, created, expiresAt));
+            return new Result(created, false);
+        } catch (DataIntegrityViolationException e) {
+            if (!isKeyConflict(e)) {
+                throw e;
+            }
+            // Another request with this key committed first, possibly on another node: read it on the primary
+            Optional<IdempotencyKey> existing = PrimaryReads.call(() -> idempotencyKeyRepository.findById(key));
+            if (existing.isEmpty() || !existing.get().getExpiresAt().isAfter(LocalDateTime.now())) {
+                // Purged or expired since: the key is free again
+                if (retryExpired && (existing.isEmpty()
+                        || idempotencyKeyRepository.deleteIfExpired(key, LocalDateTime.now()) > 0)) {
+                    return create(request, key, requestHash, false);
+                }
+                throw e;
+            }
+            Optional<Stored> stored = PrimaryReads.call(() -> toStored(existing.get()));
+            if (stored.isEmpty()) {
+                // The key outlived its purchase, e.g. a month retired by partition retention
+                if (!existing.get().getRequestHash().equals(requestHash)) {
+                    throw new IdempotencyKeyReusedException(key);
+                }
+                throw new IdempotencyKeyConflictException(key, existing.get().getPurchaseId());
+            }
+            remember(key, stored.get());
+            return replay(key, requestHash, stored.get());
+        }
+    }
+
+    // Only a duplicate of the key itself means another request won; any other violation is this request's own.
+    // PostgreSQL names the constraint; H2, whose dev schema has no constraint names, names the key column
+    private static boolean isKeyConflict(DataIntegrityViolationException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sqlException && UNIQUE_VIOLATION.equals(sqlException.getSQLState())) {
+                String message = String.valueOf(sqlException.getMessage()).toLowerCase(Locale.ROOT);
+                return message.contains("pk_idempotency_key") || message.contains("idempotency_key(idempotency_key");
+            }
+        }
+        return false;
+    }
+
+    private Result replay(String key, String requestHash, Stored stored) {
+        if (!stored.requestHash().equals(requestHash)) {
+            throw new IdempotencyKeyReusedException(key);
+        }
+        log.info("Replaying purchase {} for idempotency key {}", stored.purchase().getId(), key);
+        return new Result(stored.purchase(), true);
+    }
+
+    private void remember(String key, Stored stored) {
+        seenKeys.put(key);
+        recentKeys.put(key, stored);
+    }
+
+    private Optional<Stored> findStored(String key) {
+        LocalDateTime now = LocalDateTime.now();
+        return idempotencyKeyRepository.findById(key)
+                .filter(stored -> stored.getExpiresAt().isAfter(now))
+                .flatMap(this::toStored);
+    }
+
+    private Optional<Stored> toStored(IdempotencyKey key) {
+        return purchaseRepository.findById(key.getPurchaseId())
+                .map(purchase -> new Stored(key.getRequestHash(), PurchaseResponse.builder()
+                        .id(purchase.getId())
+                        .description(purchase.getDescription())
+                        .transactionDate(purchase.getTransactionDate())
+                        .purchaseAmount(purchase.getPurchaseAmount())
+                        .build(), key.getExpiresAt()));
+    }
+
+    // Purchases are compared as stored, so an amount differing only past the cents still matches
+    private static String fingerprint(PurchaseRequest request) {
+        String canonical = request.getDescription() + '\n' + request.getTransactionDate() + '\n'
+                + request.getPurchaseAmount().setScale(2, RoundingMode.HALF_UP).toPlainString();
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(canonical.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
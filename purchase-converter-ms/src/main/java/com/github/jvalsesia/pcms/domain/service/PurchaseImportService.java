@@ -0,0 +1,537 @@
+package com.github.jvalsesia.pcms.domain.service;
+
+import com.github.jvalsesia.pcms.api.dto.BulkIngestResponse;
+import com.github.jvalsesia.pcms.api.dto.PurchaseImportStatus;
+import com.github.jvalsesia.pcms.api.validator.PurchaseRequestRules;
+import com.github.jvalsesia.pcms.domain.exception.InvalidRequestException;
+import com.github.jvalsesia.pcms.infrastructure.database.config.PurchaseImportConfiguration;
+import com.github.jvalsesia.pcms.infrastructure.database.id.UuidV7;
+import com.github.jvalsesia.pcms.infrastructure.database.repository.PurchaseJdbcRepository;
+import com.github.jvalsesia.pcms.infrastructure.database.repository.PurchaseJdbcRepository.PurchaseRow;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Imports purchases from a CSV file with the columns description, transaction_date (yyyy-MM-dd)
+ * and purchase_amount, and an optional header line. The file is memory-mapped and cut into
+ * chunks at line boundaries; every core parses, validates and writes its own chunks in batches,
+ * without going through Jackson or Bean Validation. Quoted descriptions are supported, line
+ * breaks inside them are not. Batches commit independently, so a failed import keeps the rows
+ * already written.
+ * <p>
+ * An import runs at startup when {@code purchase.import.file} is set, optionally exiting once it
+ * is done, or on demand through the purchaseimport actuator endpoint. Progress and throughput are
+ * logged every {@code purchase.import.progress-interval} and exposed by {@link #status()}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PurchaseImportService {
+
+    private final PurchaseJdbcRepository purchaseJdbcRepository;
+    private final PurchaseImportConfiguration importConfiguration;
+
+    private final AtomicReference<ImportRun> lastRun = new AtomicReference<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady(ApplicationReadyEvent event) {
+        Path file = importConfiguration.getFile();
+        if (file == null) {
+            return;
+        }
+        boolean completed;
+        try {
+            completed = State.COMPLETED.name().equals(run(file).getState());
+        } catch (InvalidRequestException e) {
+            log.error("Import of {} not started: {}", file, e.getMessage());
+            completed = false;
+        }
+        if (importConfiguration.isExitWhenDone()) {
+            int exitCode = completed ? 0 : 1;
+            System.exit(SpringApplication.exit(event.getApplicationContext(), () -> exitCode));
+        }
+    }
+
+    /**
+     * Starts importing the file in the background and returns its initial status.
+     */
+    public PurchaseImportStatus start(Path file) {
+        ImportRun run = begin(file);
+        Thread.ofPlatform().name("purchase-import").start(() -> execute(run));
+        return run.status();
+    }
+
+    /**
+     * Imports the file and returns once it is done.
+     */
+    public PurchaseImportStatus run(Path file) {
+        ImportRun run = begin(file);
+        execute(run);
+        return run.status();
+    }
+
+    /**
+     * Resolves a file name given to the purchaseimport endpoint inside {@code purchase.import.directory}.
+     * Absolute names, and names or symbolic links leading out of the directory, are rejected.
+     */
+    public Path resolveInImportDirectory(String file) {
+        Path directory;
+        try {
+            directory = importConfiguration.getDirectory().toRealPath();
+        } catch (IOException e) {
+            throw new InvalidRequestException("Import directory " + importConfiguration.getDirectory() + " does not exist");
+        }
+        Path requested;
+        try {
+            requested = Path.of(file);
+        } catch (InvalidPathException e) {
+            throw new InvalidRequestException("Import file " + file + " is not a valid file name");
+        }
+        Path resolved = directory.resolve(requested).normalize();
+        if (requested.isAbsolute() || !resolved.startsWith(directory)) {
+            throw new InvalidRequestException("Import file " + file + " is outside the import directory");
+        }
+        Path real;
+        try {
+            real = resolved.toRealPath();
+        } catch (IOException e) {
+            throw new InvalidRequestException("Import file " + file + " does not exist or is not readable");
+        }
+        // A symbolic link inside the directory may still point out of it
+        if (!real.startsWith(directory)) {
+            throw new InvalidRequestException("Import file " + file + " is outside the import directory");
+        }
+        return real;
+    }
+
+    public Optional<PurchaseImportStatus> status() {
+        return Optional.ofNullable(lastRun.get()).map(ImportRun::status);
+    }
+
+    private ImportRun begin(Path file) {
+        if (!Files.isRegularFile(file) || !Files.isReadable(file)) {
+            throw new InvalidRequestException("Import file " + file + " does not exist or is not readable");
+        }
+        ImportRun run;
+        try {
+            run = new ImportRun(file, Files.size(file));
+        } catch (IOException e) {
+            throw new InvalidRequestException("Import file " + file + " cannot be read: " + e.getMessage());
+        }
+        ImportRun previous = lastRun.get();
+        if ((previous != null && previous.state == State.RUNNING) || !lastRun.compareAndSet(previous, run)) {
+            throw new InvalidRequestException("An import is already running");
+        }
+        return run;
+    }
+
+    private void execute(ImportRun run) {
+        int threads = importConfiguration.getThreads() > 0
+                ? importConfiguration.getThreads() : Runtime.getRuntime().availableProcessors();
+        log.info("Importing purchases from {} ({} bytes) on {} threads", run.file, run.totalBytes, threads);
+        Thread progress = Thread.ofVirtual().start(() -> reportProgress(run));
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+                Thread.ofPlatform().name("purchase-import-", 0).factory());
+        try (FileChannel channel = FileChannel.open(run.file, StandardOpenOption.READ)) {
+            List<Chunk> chunks = split(channel, run.totalBytes, importConfiguration.getChunkSize().toBytes());
+            List<Future<Integer>> lineCounts = new ArrayList<>(chunks.size());
+            for (Chunk chunk : chunks) {
+                lineCounts.add(executor.submit(() -> importChunk(channel, chunk, run)));
+            }
+            int[] linesBefore = new int[chunks.size()];
+            for (int i = 0; i < chunks.size(); i++) {
+                int lines = lineCounts.get(i).get();
+                if (i + 1 < chunks.size()) {
+                    linesBefore[i + 1] = linesBefore[i] + lines;
+                }
+            }
+            run.finish(State.COMPLETED, null, linesBefore);
+        } catch (ExecutionException e) {
+            log.error("Import of {} failed", run.file, e.getCause());
+            run.finish(State.FAILED, e.getCause().getMessage(), null);
+        } catch (IOException e) {
+            log.error("Import of {} failed", run.file, e);
+            run.finish(State.FAILED, e.getMessage(), null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            run.finish(State.FAILED, "Interrupted", null);
+        } finally {
+            executor.shutdownNow();
+            progress.interrupt();
+        }
+        logProgress(run);
+    }
+
+    // Cuts the file into chunks of about chunkSize bytes, each ending right after a line break
+    private static List<Chunk> split(FileChannel channel, long size, long chunkSize) throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long start = 0;
+        while (start < size) {
+            // A mapping cannot exceed 2 GB
+            long end = Math.min(size, start + Math.min(chunkSize, Integer.MAX_VALUE - probe.capacity()));
+            while (end < size) {
+                probe.clear();
+                int read = channel.read(probe, end);
+                int newline = -1;
+                for (int i = 0; i < read && newline < 0; i++) {
+                    if (probe.get(i) == '\n') {
+                        newline = i;
+                    }
+                }
+                if (newline >= 0) {
+                    end += newline + 1;
+                    break;
+                }
+                end += read;
+            }
+            chunks.add(new Chunk(chunks.size(), start, end - start));
+            start = end;
+        }
+        return chunks;
+    }
+
+    // Returns the number of lines of the chunk, to number the errors once every chunk is done
+    private int importChunk(FileChannel channel, Chunk chunk, ImportRun run) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, chunk.start(), chunk.length());
+        ChunkWriter writer = new ChunkWriter(run);
+        LineParser parser = new LineParser(buffer);
+        LocalDate today = LocalDate.now();
+        int limit = buffer.limit();
+        int position = 0;
+        int line = 0;
+        while (position < limit) {
+            int end = position;
+            while (end < limit && buffer.get(end) != '\n') {
+                end++;
+            }
+            line++;
+            int lineEnd = end > position && buffer.get(end - 1) == '\r' ? end - 1 : end;
+            boolean header = chunk.index() == 0 && line == 1 && parser.isHeader(position, lineEnd);
+            if (lineEnd > position && !header) {
+                writer.accept(chunk.index(), line, parser.parse(position, lineEnd, today));
+            }
+            writer.bytesRead += Math.min(end + 1, limit) - position;
+            position = end + 1;
+            if (Thread.currentThread().isInterrupted()) {
+                throw new IOException("Import cancelled");
+            }
+        }
+        writer.flush();
+        return line;
+    }
+
+    private void reportProgress(ImportRun run) {
+        try {
+            while (run.state == State.RUNNING) {
+                Thread.sleep(importConfiguration.getProgressInterval());
+                if (run.state == State.RUNNING) {
+                    logProgress(run);
+                }
+            }
+        } catch (InterruptedException e) {
+            // Import finished
+        }
+    }
+
+    private static void logProgress(ImportRun run) {
+        PurchaseImportStatus status = run.status();
+        log.info("Import of {} {}: {}% read, {} rows ({} inserted, {} rejected), {} rows/s",
+                status.getFile(), status.getState(),
+                status.getTotalBytes() == 0 ? 100 : status.getBytesRead() * 100 / status.getTotalBytes(),
+                status.getRows(), status.getInserted(), status.getRejected(), status.getRowsPerSecond());
+    }
+
+    private enum State {
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    private record Chunk(int index, long start, long length) {
+    }
+
+    // A parsed row: the purchase, or why the row was rejected
+    private record ParsedRow(PurchaseRow purchase, String error) {
+    }
+
+    private record ChunkError(int chunk, int line, String message) {
+    }
+
+    private final class ImportRun {
+
+        private final Path file;
+        private final long totalBytes;
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private final long startNanos = System.nanoTime();
+        private final LongAdder bytesRead = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder inserted = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final AtomicInteger reportedErrors = new AtomicInteger();
+        private final ConcurrentLinkedQueue<ChunkError> chunkErrors = new ConcurrentLinkedQueue<>();
+        private volatile State state = State.RUNNING;
+        private volatile LocalDateTime finishedAt;
+        private volatile long elapsedNanos;
+        private volatile String failure;
+        private volatile List<BulkIngestResponse.RowError> errors = List.of();
+
+        ImportRun(Path file, long totalBytes) {
+            this.file = file;
+            this.totalBytes = totalBytes;
+        }
+
+        void reject(int chunk, int line, String message) {
+            rejected.increment();
+            if (reportedErrors.getAndIncrement() < importConfiguration.getMaxReportedErrors()) {
+                chunkErrors.add(new ChunkError(chunk, line, message));
+            }
+        }
+
+        // Turns chunk-relative line numbers into file line numbers
+        void finish(State finalState, String failureMessage, int[] linesBefore) {
+            if (linesBefore != null) {
+                errors = chunkErrors.stream()
+                        .map(error -> new BulkIngestResponse.RowError(linesBefore[error.chunk()] + error.line(), error.message()))
+                        .sorted(Comparator.comparingInt(BulkIngestResponse.RowError::getRow))
+                        .toList();
+            }
+            failure = failureMessage;
+            elapsedNanos = System.nanoTime() - startNanos;
+            finishedAt = LocalDateTime.now();
+            state = finalState;
+        }
+
+        PurchaseImportStatus status() {
+            long nanos = state == State.RUNNING ? System.nanoTime() - startNanos : elapsedNanos;
+            long parsed = rows.sum();
+            return PurchaseImportStatus.builder()
+                    .file(file.toString())
+                    .state(state.name())
+                    .totalBytes(totalBytes)
+                    .bytesRead(bytesRead.sum())
+                    .rows(parsed)
+                    .inserted(inserted.sum())
+                    .rejected(rejected.sum())
+                    .rowsPerSecond(nanos > 0 ? parsed * 1_000_000_000L / nanos : 0)
+                    .startedAt(startedAt)
+                    .finishedAt(finishedAt)
+                    .failure(failure)
+                    .errors(errors)
+                    .build();
+        }
+    }
+
+    // Buffers the valid rows of one chunk and publishes the counters once per batch
+    private final class ChunkWriter {
+
+        private final ImportRun run;
+        private final List<PurchaseRow> batch = new ArrayList<>(importConfiguration.getBatchSize());
+        private long bytesRead;
+        private long rows;
+
+        ChunkWriter(ImportRun run) {
+            this.run = run;
+        }
+
+        void accept(int chunk, int line, ParsedRow row) {
+            rows++;
+            if (row.error() != null) {
+                run.reject(chunk, line, row.error());
+                return;
+            }
+            batch.add(row.purchase());
+            if (batch.size() >= importConfiguration.getBatchSize()) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (!batch.isEmpty()) {
+                if (importConfiguration.isCopy() && purchaseJdbcRepository.supportsCopy()) {
+                    purchaseJdbcRepository.copyAll(batch);
+                } else {
+                    purchaseJdbcRepository.insertAll(batch);
+                }
+                run.inserted.add(batch.size());
+                batch.clear();
+            }
+            run.rows.add(rows);
+            run.bytesRead.add(bytesRead);
+            rows = 0;
+            bytesRead = 0;
+        }
+    }
+
+    // Reads the fields of one line straight from the mapped bytes
+    private static final class LineParser {
+
+        private static final byte[] HEADER = "description,".getBytes(StandardCharsets.US_ASCII);
+
+        private final MappedByteBuffer buffer;
+        private byte[] scratch = new byte[256];
+        private int position;
+        private int end;
+
+        LineParser(MappedByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        boolean isHeader(int start, int lineEnd) {
+            if (lineEnd - start < HEADER.length) {
+                return false;
+            }
+            for (int i = 0; i < HEADER.length; i++) {
+                if (Character.toLowerCase(buffer.get(start + i)) != HEADER[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        ParsedRow parse(int start, int lineEnd, LocalDate today) {
+            position = start;
+            end = lineEnd;
+            String description = readDescription();
+            if (description == null) {
+                return new ParsedRow(null, "description: unterminated quotes");
+            }
+            int dateStart = position;
+            int dateEnd = nextComma();
+            int amountStart = position;
+            int amountEnd = nextComma();
+            if (amountStart > end || amountEnd < end) {
+                return new ParsedRow(null, "Expected 3 columns: description,transaction_date,purchase_amount");
+            }
+            LocalDate transactionDate = parseDate(dateStart, dateEnd);
+            if (transactionDate == null && dateEnd > dateStart) {
+                return new ParsedRow(null, "transactionDate: Date must be in YYYY-MM-DD format");
+            }
+            BigDecimal purchaseAmount;
+            try {
+                purchaseAmount = amountEnd > amountStart ? new BigDecimal(ascii(amountStart, amountEnd)) : null;
+            } catch (NumberFormatException e) {
+                return new ParsedRow(null, "purchaseAmount: not a number");
+            }
+            String error = PurchaseRequestRules.check(description, transactionDate, purchaseAmount, today);
+            if (error != null) {
+                return new ParsedRow(null, error);
+            }
+            return new ParsedRow(new PurchaseRow(UuidV7.next(), description, transactionDate,
+                    purchaseAmount.setScale(2, RoundingMode.HALF_UP)), null);
+        }
+
+        // RFC 4180 field: plain up to the next comma, or quoted with "" for a quote
+        private String readDescription() {
+            if (position < end && buffer.get(position) == '"') {
+                int length = 0;
+                position++;
+                while (position < end) {
+                    byte b = buffer.get(position++);
+                    if (b == '"') {
+                        if (position < end && buffer.get(position) == '"') {
+                            position++;
+                        } else {
+                            if (position < end && buffer.get(position) == ',') {
+                                position++;
+                            }
+                            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+                        }
+                    }
+                    if (length == scratch.length) {
+                        scratch = Arrays.copyOf(scratch, length * 2);
+                    }
+                    scratch[length++] = b;
+                }
+                return null;
+            }
+            int start = position;
+            int fieldEnd = nextComma();
+            int length = fieldEnd - start;
+            if (length > scratch.length) {
+                scratch = new byte[length];
+            }
+            buffer.get(start, scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+
+        // Returns the end of the current field and moves past its comma; past the line end when none is left
+        private int nextComma() {
+            int start = position;
+            while (start < end && buffer.get(start) != ',') {
+                start++;
+            }
+            position = start + 1;
+            return start;
+        }
+
+        private LocalDate parseDate(int start, int fieldEnd) {
+            if (fieldEnd - start != 10 || buffer.get(start + 4) != '-' || buffer.get(start + 7) != '-') {
+                return null;
+            }
+            int year = digits(start, 4);
+            int month = digits(start + 5, 2);
+            int day = digits(start + 8, 2);
+            if (year < 0 || month < 0 || day < 0) {
+                return null;
+            }
+            try {
+                return LocalDate.of(year, month, day);
+            } catch (DateTimeException e) {
+                return null;
+            }
+        }
+
+        private int digits(int start, int count) {
+            int value = 0;
+            for (int i = start; i < start + count; i++) {
+                int digit = buffer.get(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    return -1;
+                }
+                value = value * 10 + digit;
+            }
+            return value;
+        }
+
+        private String ascii(int start, int fieldEnd) {
+            char[] chars = new char[fieldEnd - start];
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = (char) buffer.get(start + i);
+            }
+            return new String(chars).trim();
+        }
+    }
+}
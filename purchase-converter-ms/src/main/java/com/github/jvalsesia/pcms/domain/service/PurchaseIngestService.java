@@ -0,0 +1,132 @@
+package com.github.jvalsesia.pcms.domain.service;
+
+import com.fasterxml.jackson.core.exc.StreamReadException;
+import com.fasterxml.jackson.databind.DatabindException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.jvalsesia.pcms.api.dto.BulkIngestResponse;
+import com.github.jvalsesia.pcms.api.dto.PurchaseRequest;
+import com.github.jvalsesia.pcms.api.validator.PurchaseRequestRules;
+import com.github.jvalsesia.pcms.infrastructure.database.config.PurchaseIngestConfiguration;
+import com.github.jvalsesia.pcms.infrastructure.database.id.UuidV7;
+import com.github.jvalsesia.pcms.infrastructure.database.repository.PurchaseJdbcRepository;
+import com.github.jvalsesia.pcms.infrastructure.database.repository.PurchaseJdbcRepository.PurchaseRow;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stores many purchases from one request body, either a JSON array or NDJSON. Rows are read,
+ * validated with the rules of the CSV import and buffered one at a time and written in batches,
+ * so the body is never held in memory. Invalid rows are reported and skipped; every batch is
+ * committed on its own. When the database refuses a batch its rows are stored one by one, so only
+ * the rows it refuses are reported.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PurchaseIngestService {
+
+    private final PurchaseJdbcRepository purchaseJdbcRepository;
+    private final PurchaseIngestConfiguration ingestConfiguration;
+    private final ObjectMapper objectMapper;
+
+    public BulkIngestResponse ingest(InputStream body) throws IOException {
+        long start = System.nanoTime();
+        Ingest ingest = new Ingest();
+        int row = 1;
+        // Reads both a root-level array and a sequence of root-level objects
+        try (MappingIterator<PurchaseRequest> requests = objectMapper.readerFor(PurchaseRequest.class).readValues(body)) {
+            while (requests.hasNextValue()) {
+                ingest.received = row;
+                try {
+                    ingest.accept(row, requests.nextValue());
+                } catch (DatabindException e) {
+                    // The iterator skips the rest of the malformed row
+                    ingest.reject(row, "Invalid row: " + e.getOriginalMessage());
+                }
+                row++;
+            }
+        } catch (StreamReadException e) {
+            // Malformed JSON cannot be resynchronized: stop, keeping what was read so far
+            ingest.received = row;
+            ingest.reject(row, "Malformed JSON, ingest stopped: " + e.getOriginalMessage());
+        } finally {
+            ingest.flush();
+        }
+
+        log.info("Ingested {} of {} purchases ({} rejected) in {} ms",
+                ingest.inserted, ingest.received, ingest.rejected, (System.nanoTime() - start) / 1_000_000);
+        return BulkIngestResponse.builder()
+                .received(ingest.received)
+                .inserted(ingest.inserted)
+                .rejected(ingest.rejected)
+                .errors(ingest.errors)
+                .build();
+    }
+
+    private static String notStored(RuntimeException error) {
+        return "Row could not be stored: " + NestedExceptionUtils.getMostSpecificCause(error).getMessage();
+    }
+
+    private final class Ingest {
+
+        private final List<PurchaseRow> batch = new ArrayList<>(ingestConfiguration.getBatchSize());
+        private final List<Integer> batchRows = new ArrayList<>(ingestConfiguration.getBatchSize());
+        private final List<BulkIngestResponse.RowError> errors = new ArrayList<>();
+        private final LocalDate today = LocalDate.now();
+        private int received;
+        private int inserted;
+        private int rejected;
+
+        void accept(int row, PurchaseRequest request) {
+            if (request == null) {
+                reject(row, "Row is null");
+                return;
+            }
+            String error = PurchaseRequestRules.check(request.getDescription(), request.getTransactionDate(),
+                    request.getPurchaseAmount(), today);
+            if (error != null) {
+                reject(row, error);
+                return;
+            }
+            batch.add(new PurchaseRow(UuidV7.next(), request.getDescription(), request.getTransactionDate(),
+                    request.getPurchaseAmount().setScale(2, RoundingMode.HALF_UP)));
+            batchRows.add(row);
+            if (batch.size() >= ingestConfiguration.getBatchSize()) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                inserted += purchaseJdbcRepository.insertAllOrEach(batch, ingestConfiguration.isCopy(),
+                        (index, error) -> reject(batchRows.get(index), notStored(error)));
+            } catch (RuntimeException e) {
+                // Not the rows' fault, e.g. the database is unreachable: none of them were stored
+                log.warn("Batch of {} purchases could not be stored: {}", batch.size(), e.getMessage());
+                batchRows.forEach(row -> reject(row, notStored(e)));
+            }
+            batch.clear();
+            batchRows.clear();
+        }
+
+        void reject(int row, String message) {
+            rejected++;
+            if (errors.size() < ingestConfiguration.getMaxReportedErrors()) {
+                errors.add(new BulkIngestResponse.RowError(row, message));
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.github.jvalsesia.pcms.domain.service;
+
+import com.github.jvalsesia.pcms.infrastructure.database.config.PurchasePartitionConfiguration;
+import com.github.jvalsesia.pcms.infrastructure.database.config.PurchasePartitionConfiguration.RetentionAction;
+import com.github.jvalsesia.pcms.infrastructure.database.repository.PurchasePartitionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.YearMonth;
+import java.util.List;
+
+/**
+ * Keeps the monthly partitions of the purchase table ahead of the calendar and applies the
+ * retention policy. Each run:
+ * <ol>
+ *     <li>gives the months found in the default partition a partition of their own, so old
+ *     backfills become retirable months too;</li>
+ *     <li>creates the partitions of the current month and the next premake-months;</li>
+ *     <li>archives or drops the partitions older than retention-months.</li>
+ * </ol>
+ * Retiring a month detaches its partition, which is immediate, rather than deleting its rows.
+ * A {@link PurchasesRetiredEvent} then drops the retired purchases from the caches.
+ * <p>
+ * Every node schedules the maintenance, but only the one holding the database advisory lock
+ * runs it; the others skip that run.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PurchasePartitionService {
+
+    private final PurchasePartitionRepository partitionRepository;
+    private final PurchasePartitionConfiguration partitionConfiguration;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        scheduledMaintenance();
+    }
+
+    @Scheduled(cron = "${purchase.partition.cron:0 0 3 * * *}")
+    public void scheduledMaintenance() {
+        if (!partitionConfiguration.isEnabled()) {
+            return;
+        }
+        try {
+            if (partitionRepository.isPartitioned()) {
+                maintain();
+            }
+        } catch (Exception e) {
+            // Premade months leave time for the next run to retry
+            log.error("Purchase partition maintenance failed", e);
+        }
+    }
+
+    public void maintain() {
+        if (!partitionRepository.withMaintenanceLock(() -> maintain(YearMonth.now()))) {
+            log.info("Purchase partition maintenance skipped, another node is running it");
+        }
+    }
+
+    void maintain(YearMonth current) {
+        int created = 0;
+        for (YearMonth month : partitionRepository.findDefaultPartitionMonths()) {
+            created += partitionRepository.createPartitions(month, month);
+        }
+        created += partitionRepository.createPartitions(current, current.plusMonths(partitionConfiguration.getPremakeMonths()));
+        List<YearMonth> retired = retire(current);
+        if (!retired.isEmpty()) {
+            eventPublisher.publishEvent(new PurchasesRetiredEvent(retired, false));
+        }
+        log.info("Purchase partitions maintained: {} created, {} retired", created, retired.size());
+    }
+
+    private List<YearMonth> retire(YearMonth current) {
+        int retentionMonths = partitionConfiguration.getRetentionMonths();
+        if (retentionMonths <= 0) {
+            return List.of();
+        }
+        YearMonth oldestKept = current.minusMonths(retentionMonths - 1L);
+        List<YearMonth> retired = partitionRepository.findPartitionMonths().stream()
+                .filter(month -> month.isBefore(oldestKept))
+                .toList();
+        for (YearMonth month : retired) {
+            if (partitionConfiguration.getRetentionAction() == RetentionAction.DROP) {
+                partitionRepository.dropPartition(month);
+                log.info("Purchase partition of {} dropped", month);
+            } else {
+                String archivedName = partitionRepository.archivePartition(month);
+                log.info("Purchase partition of {} archived as purchase_archive.{}", month, archivedName);
+            }
+        }
+        return retired;
+    }
+}
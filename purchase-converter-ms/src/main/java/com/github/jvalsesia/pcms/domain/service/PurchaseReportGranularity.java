@@ -0,0 +1,33 @@
+package com.github.jvalsesia.pcms.domain.service;
+
+import com.github.jvalsesia.pcms.domain.exception.InvalidRequestException;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Locale;
+
+/**
+ * Bucket sizes of the converted purchase report. Weeks start on Monday.
+ */
+public enum PurchaseReportGranularity {
+    DAY,
+    WEEK,
+    MONTH;
+
+    public LocalDate bucketStart(LocalDate date) {
+        return switch (this) {
+            case DAY -> date;
+            case WEEK -> date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MONTH -> date.withDayOfMonth(1);
+        };
+    }
+
+    public static PurchaseReportGranularity from(String granularity) {
+        try {
+            return valueOf(granularity.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRequestException("Unsupported report granularity '" + granularity + "', use day, week or month");
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.github.jvalsesia.pcms.domain.service;
+
+import com.github.jvalsesia.pcms.domain.exception.InvalidRequestException;
+
+import java.util.Locale;
+
+/**
+ * How converted report totals are rounded to cents.
+ */
+public enum PurchaseReportRounding {
+    /**
+     * Each purchase is rounded before summing, so a bucket equals the sum of the amounts the
+     * conversion endpoints return for its purchases.
+     */
+    ITEM,
+    /**
+     * Each bucket total is rounded once.
+     */
+    BUCKET;
+
+    public static PurchaseReportRounding from(String rounding) {
+        try {
+            return valueOf(rounding.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRequestException("Unsupported report rounding '" + rounding + "', use item or bucket");
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.github.jvalsesia.pcms.domain.service;
+
+import com.github.jvalsesia.pcms.api.dto.PurchaseReportResponse;
+import com.github.jvalsesia.pcms.domain.exception.InvalidRequestException;
+import com.github.jvalsesia.pcms.infrastructure.database.repository.PurchaseJdbcRepository;
+import com.github.jvalsesia.pcms.infrastructure.database.repository.PurchaseJdbcRepository.DailyTotal;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Totals purchases per day, week or month converted to one country's currency. The database
+ * converts and sums the purchases of each day in a single query; days are then rolled up into
+ * buckets here, so the response size depends on the range, not on the number of purchases.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PurchaseReportService {
+
+    private final PurchaseJdbcRepository purchaseJdbcRepository;
+
+    public PurchaseReportResponse report(LocalDate from, LocalDate to, String country,
+                                         PurchaseReportGranularity granularity, PurchaseReportRounding rounding) {
+        if (from.isAfter(to)) {
+            throw new InvalidRequestException("Report start date " + from + " is after end date " + to);
+        }
+        if (country.isBlank()) {
+            throw new InvalidRequestException("Country is required");
+        }
+        long start = System.nanoTime();
+        List<DailyTotal> days = purchaseJdbcRepository.sumConvertedByDay(from, to, country);
+
+        List<PurchaseReportResponse.Bucket> buckets = new ArrayList<>();
+        BucketTotal current = null;
+        for (DailyTotal day : days) {
+            LocalDate bucketStart = granularity.bucketStart(day.transactionDate());
+            if (current == null || !current.start.equals(bucketStart)) {
+                if (current != null) {
+                    buckets.add(current.toBucket());
+                }
+                current = new BucketTotal(bucketStart, rounding);
+            }
+            current.add(day);
+        }
+        if (current != null) {
+            buckets.add(current.toBucket());
+        }
+
+        log.info("Reported {} days of purchases from {} to {} for {} in {} buckets in {} ms",
+                days.size(), from, to, country, buckets.size(), (System.nanoTime() - start) / 1_000_000);
+        return PurchaseReportResponse.builder()
+                .country(country)
+                .granularity(granularity.name().toLowerCase(Locale.ROOT))
+                .rounding(rounding.name().toLowerCase(Locale.ROOT))
+                .buckets(buckets)
+                .build();
+    }
+
+    private static final class BucketTotal {
+
+        private final LocalDate start;
+        private final PurchaseReportRounding rounding;
+        private long purchaseCount;
+        private long convertedCount;
+        private BigDecimal totalAmount = BigDecimal.ZERO;
+        private BigDecimal convertedAmount = BigDecimal.ZERO;
+
+        BucketTotal(LocalDate start, PurchaseReportRounding rounding) {
+            this.start = start;
+            this.rounding = rounding;
+        }
+
+        void add(DailyTotal day) {
+            purchaseCount += day.purchaseCount();
+            convertedCount += day.convertedCount();
+            totalAmount = totalAmount.add(day.totalAmount());
+            BigDecimal converted = rounding == PurchaseReportRounding.ITEM
+                    ? day.convertedAmountRounded() : day.convertedAmountExact();
+            if (converted != null) {
+                convertedAmount = convertedAmount.add(converted);
+            }
+        }
+
+        PurchaseReportResponse.Bucket toBucket() {
+            return PurchaseReportResponse.Bucket.builder()
+                    .start(start)
+                    .purchaseCount(purchaseCount)
+                    .unconvertedCount(purchaseCount - convertedCount)
+                    .totalAmount(totalAmount.setScale(2, RoundingMode.HALF_UP))
+                    .convertedAmount(convertedCount == 0 ? null : convertedAmount.setScale(2, RoundingMode.HALF_UP))
+                    .build();
+        }
+    }
+}
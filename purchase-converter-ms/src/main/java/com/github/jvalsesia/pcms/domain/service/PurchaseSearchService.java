@@ -0,0 +1,85 @@
+package com.github.jvalsesia.pcms.domain.service;
+
+import com.github.jvalsesia.pcms.api.dto.PurchasePageResponse;
+import com.github.jvalsesia.pcms.api.dto.PurchaseResponse;
+import com.github.jvalsesia.pcms.domain.exception.InvalidRequestException;
+import com.github.jvalsesia.pcms.infrastructure.database.repository.PurchaseJdbcRepository;
+import com.github.jvalsesia.pcms.infrastructure.database.repository.PurchaseJdbcRepository.Keyset;
+import com.github.jvalsesia.pcms.infrastructure.database.repository.PurchaseJdbcRepository.PurchaseRow;
+import com.github.jvalsesia.pcms.infrastructure.database.repository.PurchaseJdbcRepository.SearchCriteria;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Lists purchases page by page with an opaque cursor holding the (transaction date, id) of the
+ * last purchase returned, so every page is a seek on the index instead of an OFFSET scan.
+ */
+@Service
+@RequiredArgsConstructor
+public class PurchaseSearchService {
+
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 500;
+
+    private final PurchaseJdbcRepository purchaseJdbcRepository;
+
+    public PurchasePageResponse searchPurchases(SearchCriteria criteria, int limit, String cursor) {
+        validate(criteria, limit);
+        Keyset after = cursor == null || cursor.isBlank() ? null : decodeCursor(cursor);
+
+        // One extra row tells whether another page follows without a count query
+        List<PurchaseRow> rows = purchaseJdbcRepository.search(criteria, after, limit + 1);
+        boolean hasNext = rows.size() > limit;
+        List<PurchaseRow> page = hasNext ? rows.subList(0, limit) : rows;
+
+        return PurchasePageResponse.builder()
+                .items(page.stream().map(PurchaseSearchService::toResponse).toList())
+                .nextCursor(hasNext ? encodeCursor(page.getLast()) : null)
+                .build();
+    }
+
+    private void validate(SearchCriteria criteria, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new InvalidRequestException("Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        if (criteria.from() != null && criteria.to() != null && criteria.from().isAfter(criteria.to())) {
+            throw new InvalidRequestException("Start date " + criteria.from() + " is after end date " + criteria.to());
+        }
+        if (criteria.minAmount() != null && criteria.maxAmount() != null
+                && criteria.minAmount().compareTo(criteria.maxAmount()) > 0) {
+            throw new InvalidRequestException("Minimum amount " + criteria.minAmount()
+                    + " is greater than maximum amount " + criteria.maxAmount());
+        }
+    }
+
+    static String encodeCursor(PurchaseRow row) {
+        String keyset = row.transactionDate() + "|" + row.id();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(keyset.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static Keyset decodeCursor(String cursor) {
+        try {
+            String keyset = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = keyset.indexOf('|');
+            return new Keyset(LocalDate.parse(keyset.substring(0, separator)),
+                    UUID.fromString(keyset.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new InvalidRequestException("Invalid page cursor");
+        }
+    }
+
+    private static PurchaseResponse toResponse(PurchaseRow row) {
+        return PurchaseResponse.builder()
+                .id(row.id())
+                .description(row.description())
+                .transactionDate(row.transactionDate())
+                .purchaseAmount(row.purchaseAmount())
+                .build();
+    }
+}
@@ -1,21 +1,45 @@
 package com.github.jvalsesia.pcms.domain.service;
 
+import com.github.jvalsesia.pcms.api.dto.BatchConversionRequest;
+import com.github.jvalsesia.pcms.api.dto.BatchConversionResponse;
 import com.github.jvalsesia.pcms.api.dto.ConvertedPurchaseResponse;
 import com.github.jvalsesia.pcms.api.dto.PurchaseRequest;
 import com.github.jvalsesia.pcms.api.dto.PurchaseResponse;
 import com.github.jvalsesia.pcms.domain.exception.CurrencyConversionException;
 import com.github.jvalsesia.pcms.domain.exception.PurchaseNotFoundException;
+import com.github.jvalsesia.pcms.infrastructure.database.cache.PurchaseCache;
+import com.github.jvalsesia.pcms.infrastructure.database.config.ReplicaRoutingConfiguration;
 import com.github.jvalsesia.pcms.infrastructure.database.entity.Purchase;
+import com.github.jvalsesia.pcms.infrastructure.database.id.UuidV7;
+import com.github.jvalsesia.pcms.infrastructure.database.repository.PurchaseJdbcRepository;
+import com.github.jvalsesia.pcms.infrastructure.database.repository.PurchaseJdbcRepository.PurchaseRow;
 import com.github.jvalsesia.pcms.infrastructure.database.repository.PurchaseRepository;
-import com.github.jvalsesia.pcms.infrastructure.treasury.TreasuryApiClient;
+import com.github.jvalsesia.pcms.infrastructure.database.routing.PrimaryReads;
+import com.github.jvalsesia.pcms.infrastructure.rate.config.ExchangeRateLookupConfiguration;
+import com.github.jvalsesia.pcms.infrastructure.treasury.TreasuryApiException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Slf4j
 @Service
@@ -23,7 +47,11 @@ import java.util.UUID;
 public class PurchaseService {
 
     private final PurchaseRepository purchaseRepository;
-    private final TreasuryApiClient treasuryApiClient;
+    private final PurchaseJdbcRepository purchaseJdbcRepository;
+    private final ExchangeRateProvider exchangeRateProvider;
+    private final ExchangeRateLookupConfiguration lookupConfiguration;
+    private final ReplicaRoutingConfiguration routingConfiguration;
+    private final PurchaseCache purchaseCache;
 
     @Transactional
     public PurchaseResponse createPurchase(PurchaseRequest request) {
@@ -36,39 +64,222 @@ public class PurchaseService {
 
         Purchase saved = purchaseRepository.save(purchase);
         log.info("Purchase created with id: {}", saved.getId());
+        purchaseCache.put(toRow(saved));
 
         return mapToPurchaseResponse(saved);
     }
 
-    @Transactional(readOnly = true)
     public ConvertedPurchaseResponse getPurchaseInCurrency(UUID id, String country) {
         log.info("Converting purchase {} to currency for country: {}", id, country);
 
-        Purchase purchase = purchaseRepository.findById(id)
+        PurchaseRow purchase = findPurchase(id)
                 .orElseThrow(() -> new PurchaseNotFoundException(id));
 
-        BigDecimal exchangeRate = treasuryApiClient.getExchangeRatesFiltered(country, purchase.getTransactionDate())
-                .orElseThrow(() -> new CurrencyConversionException(
-                        String.format("The purchase cannot be converted to the target currency. " +
-                                        "No exchange rate available for country '%s' within 6 months of transaction date %s",
-                                country, purchase.getTransactionDate())
-                ));
+        ExchangeRateQuote quote = exchangeRateProvider.findExchangeRate(country, purchase.transactionDate())
+                .orElseThrow(() -> noExchangeRate(country, purchase));
 
-        BigDecimal convertedAmount = purchase.getPurchaseAmount()
+        ConvertedPurchaseResponse response = convert(purchase, country, quote);
+        log.info("Purchase {} converted: {} USD = {} (rate: {})",
+                id, purchase.purchaseAmount(), response.getConvertedAmount(), response.getExchangeRate());
+        return response;
+    }
+
+    /**
+     * Converts many purchases in one call. Purchases are loaded with a single query and each
+     * distinct country and transaction date is looked up once; a failing item is reported in
+     * its result instead of failing the whole batch.
+     */
+    public BatchConversionResponse convertPurchases(List<BatchConversionRequest.Item> items) {
+        Set<UUID> ids = new HashSet<>();
+        items.forEach(item -> ids.add(item.getPurchaseId()));
+        Map<UUID, PurchaseRow> purchases = new HashMap<>(ids.size() * 2);
+        List<UUID> missing = new ArrayList<>();
+        for (UUID id : ids) {
+            purchaseCache.get(id).ifPresentOrElse(purchase -> purchases.put(id, purchase), () -> missing.add(id));
+        }
+        if (!missing.isEmpty()) {
+            List<PurchaseRow> found = missing.stream().anyMatch(this::createdRecently)
+                    ? PrimaryReads.call(() -> purchaseJdbcRepository.findAllById(missing))
+                    : purchaseJdbcRepository.findAllById(missing);
+            found.forEach(purchase -> {
+                purchaseCache.put(purchase);
+                purchases.put(purchase.id(), purchase);
+            });
+        }
+
+        Map<RateKey, RateLookup> rates = new HashMap<>();
+        List<BatchConversionResponse.Item> results = new ArrayList<>(items.size());
+        for (BatchConversionRequest.Item item : items) {
+            results.add(convertItem(item, purchases.get(item.getPurchaseId()), rates));
+        }
+
+        BatchConversionResponse response = toBatchResponse(results);
+        log.info("Batch converted {} of {} purchases with {} distinct rate lookups",
+                response.getConverted(), items.size(), rates.size());
+        return response;
+    }
+
+    /**
+     * Converts one purchase to several currencies. The purchase is loaded once and the rates are
+     * looked up concurrently on virtual threads; a country whose rate is missing, failed or not
+     * found within {@code exchange-rate.lookup.fan-out-deadline} is reported in its own result.
+     */
+    public BatchConversionResponse getPurchaseInCurrencies(UUID id, List<String> countries) {
+        List<String> distinctCountries = countries.stream().map(String::trim).filter(country -> !country.isEmpty())
+                .distinct().toList();
+        if (distinctCountries.isEmpty() || distinctCountries.size() > lookupConfiguration.getMaxCountries()) {
+            throw new CurrencyConversionException(String.format(
+                    "Between 1 and %d countries can be requested in one call", lookupConfiguration.getMaxCountries()));
+        }
+        log.info("Converting purchase {} to currencies for {} countries", id, distinctCountries.size());
+
+        PurchaseRow purchase = findPurchase(id)
+                .orElseThrow(() -> new PurchaseNotFoundException(id));
+
+        long deadlineNanos = System.nanoTime() + lookupConfiguration.getFanOutDeadline().toNanos();
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            List<Future<RateLookup>> lookups = new ArrayList<>(distinctCountries.size());
+            for (String country : distinctCountries) {
+                lookups.add(executor.submit(() -> lookUpRate(country, purchase.transactionDate())));
+            }
+
+            List<BatchConversionResponse.Item> results = new ArrayList<>(distinctCountries.size());
+            for (int i = 0; i < distinctCountries.size(); i++) {
+                String country = distinctCountries.get(i);
+                results.add(toResult(BatchConversionResponse.Item.builder().purchaseId(id).country(country),
+                        purchase, country, await(lookups.get(i), deadlineNanos, country)));
+            }
+
+            BatchConversionResponse response = toBatchResponse(results);
+            log.info("Purchase {} converted to {} of {} currencies", id, response.getConverted(), results.size());
+            return response;
+
+        } finally {
+            // Interrupts the lookups still running past the deadline
+            executor.shutdownNow();
+        }
+    }
+
+    // Purchases never change, so a cached snapshot is as good as a read, and a hit takes no
+    // connection at all. Misses read the four columns a conversion needs, with no entity
+    private Optional<PurchaseRow> findPurchase(UUID id) {
+        Optional<PurchaseRow> cached = purchaseCache.get(id);
+        if (cached.isPresent()) {
+            return cached;
+        }
+        Optional<PurchaseRow> loaded = createdRecently(id)
+                ? PrimaryReads.call(() -> purchaseJdbcRepository.findById(id))
+                : purchaseJdbcRepository.findById(id);
+        loaded.ifPresent(purchaseCache::put);
+        return loaded;
+    }
+
+    // Read-your-writes: a purchase created within the window may not have reached the replicas
+    // yet. UUIDv7 ids carry their creation time, so this holds for purchases created on any node
+    private boolean createdRecently(UUID id) {
+        return id.version() == 7 && System.currentTimeMillis() - UuidV7.timestamp(id)
+                < routingConfiguration.getReadYourWritesWindow().toMillis();
+    }
+
+    private BatchConversionResponse.Item convertItem(BatchConversionRequest.Item item, PurchaseRow purchase,
+                                                     Map<RateKey, RateLookup> rates) {
+        BatchConversionResponse.Item.ItemBuilder result = BatchConversionResponse.Item.builder()
+                .purchaseId(item.getPurchaseId())
+                .country(item.getCountry());
+        if (purchase == null) {
+            return failed(result, HttpStatus.NOT_FOUND, "Not Found",
+                    new PurchaseNotFoundException(item.getPurchaseId()).getMessage());
+        }
+
+        RateLookup lookup = rates.computeIfAbsent(new RateKey(item.getCountry(), purchase.transactionDate()),
+                key -> lookUpRate(key.country(), key.transactionDate()));
+        return toResult(result, purchase, item.getCountry(), lookup);
+    }
+
+    private static BatchConversionResponse.Item toResult(BatchConversionResponse.Item.ItemBuilder result,
+                                                         PurchaseRow purchase, String country, RateLookup lookup) {
+        if (lookup.failure() == HttpStatus.GATEWAY_TIMEOUT) {
+            return failed(result, HttpStatus.GATEWAY_TIMEOUT, "External Service Error",
+                    "Exchange rate lookup did not complete within the request deadline");
+        }
+        if (lookup.failure() != null) {
+            return failed(result, HttpStatus.SERVICE_UNAVAILABLE, "External Service Error",
+                    "Unable to retrieve exchange rate information");
+        }
+        if (lookup.quote().isEmpty()) {
+            return failed(result, HttpStatus.BAD_REQUEST, "Currency Conversion Error",
+                    noExchangeRate(country, purchase).getMessage());
+        }
+        return result.status(HttpStatus.OK.value())
+                .conversion(convert(purchase, country, lookup.quote().get()))
+                .build();
+    }
+
+    private static BatchConversionResponse toBatchResponse(List<BatchConversionResponse.Item> results) {
+        int converted = (int) results.stream().filter(result -> result.getConversion() != null).count();
+        return BatchConversionResponse.builder()
+                .results(results)
+                .converted(converted)
+                .failed(results.size() - converted)
+                .build();
+    }
+
+    private RateLookup lookUpRate(String country, LocalDate transactionDate) {
+        try {
+            return new RateLookup(exchangeRateProvider.findExchangeRate(country, transactionDate), null);
+        } catch (TreasuryApiException e) {
+            log.error("Treasury API error for country {} on {}: {}", country, transactionDate, e.getMessage());
+            return new RateLookup(Optional.empty(), HttpStatus.SERVICE_UNAVAILABLE);
+        }
+    }
+
+    private static RateLookup await(Future<RateLookup> lookup, long deadlineNanos, String country) {
+        try {
+            return lookup.get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            log.warn("Exchange rate lookup for country {} exceeded the request deadline", country);
+            return new RateLookup(Optional.empty(), HttpStatus.GATEWAY_TIMEOUT);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TreasuryApiException("Interrupted while looking up exchange rates", e);
+        }
+    }
+
+    private static BatchConversionResponse.Item failed(BatchConversionResponse.Item.ItemBuilder result,
+                                                       HttpStatus status, String error, String message) {
+        return result.status(status.value()).error(error).message(message).build();
+    }
+
+    private static CurrencyConversionException noExchangeRate(String country, PurchaseRow purchase) {
+        return new CurrencyConversionException(
+                String.format("The purchase cannot be converted to the target currency. " +
+                                "No exchange rate available for country '%s' within 6 months of transaction date %s",
+                        country, purchase.transactionDate()));
+    }
+
+    private static ConvertedPurchaseResponse convert(PurchaseRow purchase, String country, ExchangeRateQuote quote) {
+        BigDecimal exchangeRate = quote.rate();
+
+        BigDecimal convertedAmount = purchase.purchaseAmount()
                 .multiply(exchangeRate)
                 .setScale(2, RoundingMode.HALF_UP);
 
-        log.info("Purchase {} converted: {} USD = {} (rate: {})",
-                id, purchase.getPurchaseAmount(), convertedAmount, exchangeRate);
-
         return ConvertedPurchaseResponse.builder()
-                .id(purchase.getId())
-                .description(purchase.getDescription())
-                .transactionDate(purchase.getTransactionDate())
-                .originalAmount(purchase.getPurchaseAmount())
+                .id(purchase.id())
+                .description(purchase.description())
+                .transactionDate(purchase.transactionDate())
+                .originalAmount(purchase.purchaseAmount())
                 .exchangeRate(exchangeRate)
                 .convertedAmount(convertedAmount)
                 .targetCurrency(country)
+                .exchangeRateAgeSeconds(quote.age().toSeconds())
+                .staleExchangeRate(quote.stale())
                 .build();
     }
 
@@ -80,4 +291,17 @@ public class PurchaseService {
                 .purchaseAmount(purchase.getPurchaseAmount())
                 .build();
     }
+
+    private static PurchaseRow toRow(Purchase purchase) {
+        return new PurchaseRow(purchase.getId(), purchase.getDescription(), purchase.getTransactionDate(),
+                purchase.getPurchaseAmount());
+    }
+
+    // The 6-month look-back window is fully determined by the transaction date
+    private record RateKey(String country, LocalDate transactionDate) {
+    }
+
+    // failure is the status reported for the item when the rate could not be looked up
+    private record RateLookup(Optional<ExchangeRateQuote> quote, HttpStatus failure) {
+    }
 }
\ No newline at end of file
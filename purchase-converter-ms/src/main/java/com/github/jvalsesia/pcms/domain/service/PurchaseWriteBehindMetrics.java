@@ -0,0 +1,36 @@
+package com.github.jvalsesia.pcms.domain.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes the purchase write-behind statistics on the actuator metrics/prometheus endpoints.
+ */
+@Component
+@RequiredArgsConstructor
+public class PurchaseWriteBehindMetrics implements MeterBinder {
+
+    private final PurchaseWriteBehindService writeBehindService;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (!writeBehindService.isEnabled()) {
+            return;
+        }
+        Gauge.builder("purchase.writebehind.queued", writeBehindService, PurchaseWriteBehindService::getQueuedCount)
+                .description("Purchases acknowledged and waiting to be written")
+                .register(registry);
+        FunctionCounter.builder("purchase.writebehind.retried", writeBehindService,
+                        PurchaseWriteBehindService::getRetriedCount)
+                .description("Batches written again after the database failed to store them")
+                .register(registry);
+        FunctionCounter.builder("purchase.writebehind.refused", writeBehindService,
+                        PurchaseWriteBehindService::getRefusedCount)
+                .description("Acknowledged purchases dropped because the database refused their data")
+                .register(registry);
+    }
+}
@@ -0,0 +1,246 @@
+package com.github.jvalsesia.pcms.domain.service;
+
+import com.github.jvalsesia.pcms.api.dto.PurchaseRequest;
+import com.github.jvalsesia.pcms.api.dto.PurchaseResponse;
+import com.github.jvalsesia.pcms.domain.exception.ServiceOverloadedException;
+import com.github.jvalsesia.pcms.infrastructure.database.config.PurchaseWriteBehindConfiguration;
+import com.github.jvalsesia.pcms.infrastructure.database.config.PurchaseWriteBehindConfiguration.Acknowledgment;
+import com.github.jvalsesia.pcms.infrastructure.database.id.UuidV7;
+import com.github.jvalsesia.pcms.infrastructure.database.repository.PurchaseJdbcRepository;
+import com.github.jvalsesia.pcms.infrastructure.database.repository.PurchaseJdbcRepository.PurchaseRow;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Optional write-behind path for purchase creation. Request threads assign the id, queue the
+ * purchase and return without holding a connection; a single writer drains the queue and stores
+ * everything waiting in one transaction, so one commit serves many requests. The queue is
+ * lock-free and bounded by a counter: when full, creations are rejected instead of piling up.
+ * <p>
+ * A batch that fails because the database is unavailable is retried with backoff until it is
+ * stored. Only purchases the database refuses, such as constraint violations, are dropped; they
+ * are counted by {@code purchase.writebehind.refused}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PurchaseWriteBehindService {
+
+    // Safety net only: producers unpark the writer as soon as they queue a purchase
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final PurchaseJdbcRepository purchaseJdbcRepository;
+    private final PurchaseWriteBehindConfiguration writeBehindConfiguration;
+
+    private final ConcurrentLinkedQueue<Pending> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder refused = new LongAdder();
+    private volatile boolean running;
+    private Thread writer;
+
+    /**
+     * Result of a queued creation: {@code committed} is false when the purchase was acknowledged
+     * before its batch was committed.
+     */
+    public record Submission(PurchaseResponse purchase, boolean committed) {
+    }
+
+    private record Pending(PurchaseRow row, CompletableFuture<Void> stored) {
+    }
+
+    @PostConstruct
+    void start() {
+        if (!writeBehindConfiguration.isEnabled()) {
+            return;
+        }
+        running = true;
+        writer = Thread.ofPlatform().name("purchase-write-behind").daemon().start(this::drain);
+        log.info("Purchase write-behind enabled: capacity {}, batches of up to {}, acknowledged when {}",
+                writeBehindConfiguration.getQueueCapacity(), writeBehindConfiguration.getMaxBatchSize(),
+                writeBehindConfiguration.getAcknowledgment());
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(writeBehindConfiguration.getShutdownTimeout());
+        if (writer.isAlive()) {
+            log.error("Purchase write-behind did not drain within {}, {} purchases not stored",
+                    writeBehindConfiguration.getShutdownTimeout(), queued.get());
+        }
+    }
+
+    public boolean isEnabled() {
+        return running;
+    }
+
+    public Submission submit(PurchaseRequest request) {
+        PurchaseRow row = new PurchaseRow(UuidV7.next(), request.getDescription(), request.getTransactionDate(),
+                request.getPurchaseAmount().setScale(2, RoundingMode.HALF_UP));
+        Pending pending = new Pending(row, new CompletableFuture<>());
+        if (!running || !offer(pending)) {
+            throw new ServiceOverloadedException("Purchase write queue is full, retry later");
+        }
+        // The writer may have seen the queue empty after stop() and returned: take the purchase
+        // back unless it was already picked up
+        if (!running && queue.remove(pending)) {
+            queued.decrementAndGet();
+            throw new ServiceOverloadedException("Purchase writes are shutting down, retry later");
+        }
+        LockSupport.unpark(writer);
+
+        PurchaseResponse response = PurchaseResponse.builder()
+                .id(row.id())
+                .description(row.description())
+                .transactionDate(row.transactionDate())
+                .purchaseAmount(row.purchaseAmount())
+                .build();
+        if (writeBehindConfiguration.getAcknowledgment() == Acknowledgment.QUEUED) {
+            return new Submission(response, false);
+        }
+        try {
+            pending.stored().get(writeBehindConfiguration.getAckTimeout().toMillis(), TimeUnit.MILLISECONDS);
+            return new Submission(response, true);
+        } catch (TimeoutException e) {
+            // Still queued: the client gets the id and a 202 instead of waiting longer
+            return new Submission(response, false);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Submission(response, false);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Purchase " + row.id() + " could not be stored", e.getCause());
+        }
+    }
+
+    private boolean offer(Pending pending) {
+        if (queued.incrementAndGet() > writeBehindConfiguration.getQueueCapacity()) {
+            queued.decrementAndGet();
+            return false;
+        }
+        queue.offer(pending);
+        return true;
+    }
+
+    // Everything queued while the previous batch was committing goes into the next one
+    private void drain() {
+        int maxBatchSize = writeBehindConfiguration.getMaxBatchSize();
+        List<Pending> batch = new ArrayList<>(maxBatchSize);
+        while (true) {
+            Pending next;
+            while (batch.size() < maxBatchSize && (next = queue.poll()) != null) {
+                queued.decrementAndGet();
+                batch.add(next);
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+            } else if (running) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            } else if (queue.isEmpty()) {
+                return;
+            }
+        }
+    }
+
+    // Acknowledged purchases are only given up when the database refuses their data; while it is
+    // unreachable the batch is retried with backoff and the queue fills up behind it
+    private void write(List<Pending> batch) {
+        List<Pending> unstored = batch;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                unstored = store(unstored);
+                if (unstored.isEmpty()) {
+                    return;
+                }
+                log.warn("{} purchases of a group commit could not be stored, retrying", unstored.size());
+            } catch (RuntimeException e) {
+                log.warn("Group commit of {} purchases failed, retrying: {}", unstored.size(), e.getMessage());
+            }
+            retried.increment();
+            if (!pause(backoff(attempt))) {
+                log.error("Purchase write-behind interrupted, {} purchases not stored", unstored.size());
+                return;
+            }
+        }
+    }
+
+    // Returns the purchases that failed for reasons other than their data
+    private List<Pending> store(List<Pending> group) {
+        boolean[] notStored = new boolean[group.size()];
+        List<Pending> unstored = new ArrayList<>();
+        purchaseJdbcRepository.insertAllOrEach(group.stream().map(Pending::row).toList(), false, (index, error) -> {
+            Pending pending = group.get(index);
+            notStored[index] = true;
+            if (isRefused(error)) {
+                refused.increment();
+                log.error("Purchase {} refused by the database, dropped: {}", pending.row().id(), error.getMessage());
+                pending.stored().completeExceptionally(error);
+            } else {
+                unstored.add(pending);
+            }
+        });
+        for (int i = 0; i < group.size(); i++) {
+            if (!notStored[i]) {
+                group.get(i).stored().complete(null);
+            }
+        }
+        return unstored;
+    }
+
+    public int getQueuedCount() {
+        return queued.get();
+    }
+
+    public long getRetriedCount() {
+        return retried.sum();
+    }
+
+    public long getRefusedCount() {
+        return refused.sum();
+    }
+
+    // Constraint violations and the like would fail the same way on every retry
+    private static boolean isRefused(RuntimeException e) {
+        return e instanceof DataIntegrityViolationException;
+    }
+
+    private Duration backoff(int attempt) {
+        Duration initial = writeBehindConfiguration.getRetryInitialBackoff();
+        Duration doubled = initial.multipliedBy(1L << Math.min(attempt - 1, 20));
+        Duration max = writeBehindConfiguration.getRetryMaxBackoff();
+        return doubled.compareTo(max) > 0 ? max : doubled;
+    }
+
+    // Slept rather than parked, so that new submissions do not cut the backoff short
+    private static boolean pause(Duration duration) {
+        try {
+            Thread.sleep(duration);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.github.jvalsesia.pcms.domain.service;
+
+import java.time.YearMonth;
+import java.util.List;
+
+/**
+ * Published after the purchases of these transaction months were archived or dropped, by this
+ * node or, with {@code remote} set, by another node sharing the database.
+ */
+public record PurchasesRetiredEvent(List<YearMonth> months, boolean remote) {
+}
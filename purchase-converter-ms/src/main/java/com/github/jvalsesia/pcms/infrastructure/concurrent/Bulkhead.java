@@ -0,0 +1,57 @@
+package com.github.jvalsesia.pcms.infrastructure.concurrent;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caps the calls in flight to one downstream. Callers past the cap wait in arrival order for up
+ * to the given time and are refused after that, so a slow downstream makes its callers fail fast
+ * instead of piling up until memory or the downstream's own pool runs out.
+ * <p>
+ * Waiting callers park without holding a carrier, so thousands of virtual threads can queue on a
+ * bulkhead cheaply. Every call permitted by {@link #tryAcquire(Duration)} must {@link #release()}.
+ */
+public class Bulkhead {
+
+    private final int maxConcurrent;
+    private final Semaphore permits;
+    private final LongAdder rejected = new LongAdder();
+
+    public Bulkhead(int maxConcurrent) {
+        if (maxConcurrent < 1) {
+            throw new IllegalArgumentException("A bulkhead needs at least one permit");
+        }
+        this.maxConcurrent = maxConcurrent;
+        this.permits = new Semaphore(maxConcurrent, true);
+    }
+
+    public boolean tryAcquire(Duration maxWait) throws InterruptedException {
+        if (permits.tryAcquire(Math.max(0, maxWait.toNanos()), TimeUnit.NANOSECONDS)) {
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public int getActiveCount() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    public int getWaitingCount() {
+        return permits.getQueueLength();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+}
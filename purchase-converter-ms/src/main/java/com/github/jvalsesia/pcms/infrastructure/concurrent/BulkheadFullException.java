@@ -0,0 +1,7 @@
+package com.github.jvalsesia.pcms.infrastructure.concurrent;
+
+public class BulkheadFullException extends RuntimeException {
+    public BulkheadFullException(String message) {
+        super(message);
+    }
+}
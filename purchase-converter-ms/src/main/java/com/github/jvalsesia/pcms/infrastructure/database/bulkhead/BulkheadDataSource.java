@@ -0,0 +1,134 @@
+package com.github.jvalsesia.pcms.infrastructure.database.bulkhead;
+
+import com.github.jvalsesia.pcms.infrastructure.concurrent.Bulkhead;
+import com.github.jvalsesia.pcms.infrastructure.concurrent.BulkheadFullException;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Hands out the connections of a pool under a {@link Bulkhead}: a connection takes a slot when it
+ * is opened and gives it back when it is closed.
+ * <p>
+ * Callers past the cap wait in arrival order for up to {@code maxWait}, then get a
+ * {@link SQLTransientConnectionException} caused by a {@link BulkheadFullException}, well before
+ * the pool's own connection timeout. With the cap at the pool size nobody waits inside the pool.
+ */
+public class BulkheadDataSource extends DelegatingDataSource implements Closeable {
+
+    private final Bulkhead bulkhead;
+    private final Duration maxWait;
+
+    public BulkheadDataSource(DataSource target, Bulkhead bulkhead, Duration maxWait) {
+        super(target);
+        this.bulkhead = bulkhead;
+        this.maxWait = maxWait;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        acquire();
+        try {
+            return guard(obtainTargetDataSource().getConnection());
+        } catch (SQLException | RuntimeException e) {
+            bulkhead.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        acquire();
+        try {
+            return guard(obtainTargetDataSource().getConnection(username, password));
+        } catch (SQLException | RuntimeException e) {
+            bulkhead.release();
+            throw e;
+        }
+    }
+
+    public Bulkhead getBulkhead() {
+        return bulkhead;
+    }
+
+    // Closes the pool when the context shuts down, the wrapper being the bean the container knows about
+    @Override
+    public void close() throws IOException {
+        if (obtainTargetDataSource() instanceof Closeable pool) {
+            pool.close();
+        }
+    }
+
+    private void acquire() throws SQLException {
+        try {
+            if (!bulkhead.tryAcquire(maxWait)) {
+                throw new SQLTransientConnectionException("No database connection within " + maxWait,
+                        new BulkheadFullException("Database is busy, retry later"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a database connection", e);
+        }
+    }
+
+    private Connection guard(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                new ReleasingHandler(connection, bulkhead));
+    }
+
+    // Gives the slot back on the first close; closing twice is allowed by JDBC and must not release twice
+    private static final class ReleasingHandler implements InvocationHandler {
+
+        private final Connection target;
+        private final Bulkhead bulkhead;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private ReleasingHandler(Connection target, Bulkhead bulkhead) {
+            this.target = target;
+            this.bulkhead = bulkhead;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "close" -> {
+                    try {
+                        return invokeTarget(method, args);
+                    } finally {
+                        if (released.compareAndSet(false, true)) {
+                            bulkhead.release();
+                        }
+                    }
+                }
+                default -> {
+                    return invokeTarget(method, args);
+                }
+            }
+        }
+
+        private Object invokeTarget(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.github.jvalsesia.pcms.infrastructure.database.bulkhead;
+
+import com.github.jvalsesia.pcms.infrastructure.concurrent.Bulkhead;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+/**
+ * Publishes the database bulkhead statistics on the actuator metrics/prometheus endpoints.
+ */
+@Component
+@RequiredArgsConstructor
+public class DatabaseBulkheadMetrics implements MeterBinder {
+
+    private final DataSource dataSource;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Bulkhead bulkhead = bulkhead();
+        if (bulkhead == null) {
+            return;
+        }
+        Gauge.builder("database.bulkhead.active", bulkhead, Bulkhead::getActiveCount)
+                .description("Primary pool connections taken through the bulkhead")
+                .register(registry);
+        Gauge.builder("database.bulkhead.waiting", bulkhead, Bulkhead::getWaitingCount)
+                .description("Callers queued for a primary pool connection")
+                .register(registry);
+        FunctionCounter.builder("database.bulkhead.rejected", bulkhead, Bulkhead::getRejectedCount)
+                .description("Connection requests refused after waiting max-wait, answered with 503")
+                .register(registry);
+    }
+
+    // Behind the replica routing proxy when replicas are configured
+    private Bulkhead bulkhead() {
+        try {
+            return dataSource.isWrapperFor(BulkheadDataSource.class)
+                    ? dataSource.unwrap(BulkheadDataSource.class).getBulkhead()
+                    : null;
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+}
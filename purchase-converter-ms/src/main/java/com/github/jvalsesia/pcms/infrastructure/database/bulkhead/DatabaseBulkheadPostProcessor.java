@@ -0,0 +1,42 @@
+package com.github.jvalsesia.pcms.infrastructure.database.bulkhead;
+
+import com.github.jvalsesia.pcms.infrastructure.concurrent.Bulkhead;
+import com.github.jvalsesia.pcms.infrastructure.database.config.DatabaseBulkheadConfiguration;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Puts the primary Hikari pool, auto-configured or declared by {@code ReplicaDataSourceConfig},
+ * behind a {@link BulkheadDataSource} sized to the pool. Replica pools are not beans and stay
+ * as they are: their short connection timeout already moves reads on to another replica.
+ */
+@Slf4j
+@Component
+public class DatabaseBulkheadPostProcessor implements BeanPostProcessor {
+
+    // Looked up when the pool is created: post-processors are instantiated before the other beans
+    private final ObjectProvider<DatabaseBulkheadConfiguration> configuration;
+
+    public DatabaseBulkheadPostProcessor(ObjectProvider<DatabaseBulkheadConfiguration> configuration) {
+        this.configuration = configuration;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof HikariDataSource pool)) {
+            return bean;
+        }
+        DatabaseBulkheadConfiguration bulkheadConfiguration = configuration.getObject();
+        if (!bulkheadConfiguration.isEnabled()) {
+            return bean;
+        }
+        int maxConcurrent = bulkheadConfiguration.getMaxConcurrent() > 0
+                ? bulkheadConfiguration.getMaxConcurrent()
+                : pool.getMaximumPoolSize();
+        log.info("Database bulkhead of {} connections in front of pool {}", maxConcurrent, pool.getPoolName());
+        return new BulkheadDataSource(pool, new Bulkhead(maxConcurrent), bulkheadConfiguration.getMaxWait());
+    }
+}
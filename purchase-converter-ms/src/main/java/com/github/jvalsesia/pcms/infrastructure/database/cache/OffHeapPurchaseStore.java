@@ -0,0 +1,145 @@
+package com.github.jvalsesia.pcms.infrastructure.database.cache;
+
+import com.github.jvalsesia.pcms.infrastructure.database.repository.PurchaseJdbcRepository.PurchaseRow;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Direct-mapped purchase store in direct memory, outside the garbage-collected heap. Each
+ * purchase has one fixed-size slot picked from its id; a purchase hashing to a used slot
+ * replaces the one stored there, so the store never grows past its size and needs no eviction
+ * bookkeeping. Purchases are copied in and out as bytes: nothing on the heap refers to them.
+ */
+final class OffHeapPurchaseStore {
+
+    static final int SLOT_SIZE = 256;
+
+    private static final int SEGMENT_SIZE = 1 << 30;
+    private static final int SLOTS_PER_SEGMENT = SEGMENT_SIZE / SLOT_SIZE;
+    private static final int STRIPES = 64;
+
+    // Slot layout
+    private static final int USED = 0;
+    private static final int MOST_SIGNIFICANT_BITS = 1;
+    private static final int LEAST_SIGNIFICANT_BITS = 9;
+    private static final int EPOCH_DAY = 17;
+    private static final int UNSCALED_AMOUNT = 21;
+    private static final int SCALE = 29;
+    private static final int DESCRIPTION_LENGTH = 30;
+    private static final int DESCRIPTION = 32;
+    private static final int MAX_DESCRIPTION_BYTES = SLOT_SIZE - DESCRIPTION;
+
+    private final ByteBuffer[] segments;
+    private final long slots;
+    private final Object[] locks = new Object[STRIPES];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    OffHeapPurchaseStore(long sizeInBytes) {
+        slots = Math.max(1, sizeInBytes / SLOT_SIZE);
+        int segmentCount = (int) ((slots + SLOTS_PER_SEGMENT - 1) / SLOTS_PER_SEGMENT);
+        segments = new ByteBuffer[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            long segmentSlots = Math.min(SLOTS_PER_SEGMENT, slots - (long) i * SLOTS_PER_SEGMENT);
+            segments[i] = ByteBuffer.allocateDirect((int) (segmentSlots * SLOT_SIZE));
+        }
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Stores the purchase, unless it does not fit a slot: an amount beyond 64 bits unscaled or a
+     * description longer than the slot, neither of which a stored purchase can have.
+     */
+    void put(PurchaseRow purchase) {
+        byte[] description = purchase.description().getBytes(StandardCharsets.UTF_8);
+        BigDecimal amount = purchase.purchaseAmount();
+        if (description.length > MAX_DESCRIPTION_BYTES || amount.unscaledValue().bitLength() > 63) {
+            return;
+        }
+        long slot = slot(purchase.id());
+        ByteBuffer segment = segments[(int) (slot / SLOTS_PER_SEGMENT)];
+        int offset = (int) (slot % SLOTS_PER_SEGMENT) * SLOT_SIZE;
+        synchronized (lock(slot)) {
+            segment.putLong(offset + MOST_SIGNIFICANT_BITS, purchase.id().getMostSignificantBits());
+            segment.putLong(offset + LEAST_SIGNIFICANT_BITS, purchase.id().getLeastSignificantBits());
+            segment.putInt(offset + EPOCH_DAY, (int) purchase.transactionDate().toEpochDay());
+            segment.putLong(offset + UNSCALED_AMOUNT, amount.unscaledValue().longValue());
+            segment.put(offset + SCALE, (byte) amount.scale());
+            segment.putShort(offset + DESCRIPTION_LENGTH, (short) description.length);
+            segment.put(offset + DESCRIPTION, description);
+            segment.put(offset + USED, (byte) 1);
+        }
+    }
+
+    Optional<PurchaseRow> get(UUID id) {
+        long slot = slot(id);
+        ByteBuffer segment = segments[(int) (slot / SLOTS_PER_SEGMENT)];
+        int offset = (int) (slot % SLOTS_PER_SEGMENT) * SLOT_SIZE;
+        PurchaseRow purchase = null;
+        synchronized (lock(slot)) {
+            if (segment.get(offset + USED) == 1
+                    && segment.getLong(offset + MOST_SIGNIFICANT_BITS) == id.getMostSignificantBits()
+                    && segment.getLong(offset + LEAST_SIGNIFICANT_BITS) == id.getLeastSignificantBits()) {
+                byte[] description = new byte[segment.getShort(offset + DESCRIPTION_LENGTH)];
+                segment.get(offset + DESCRIPTION, description);
+                purchase = new PurchaseRow(id, new String(description, StandardCharsets.UTF_8),
+                        LocalDate.ofEpochDay(segment.getInt(offset + EPOCH_DAY)),
+                        BigDecimal.valueOf(segment.getLong(offset + UNSCALED_AMOUNT), segment.get(offset + SCALE)));
+            }
+        }
+        if (purchase == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return Optional.ofNullable(purchase);
+    }
+
+    /**
+     * Frees the slots of the purchases whose transaction date matches, scanning every slot.
+     */
+    void removeIf(Predicate<LocalDate> transactionDate) {
+        for (long slot = 0; slot < slots; slot++) {
+            ByteBuffer segment = segments[(int) (slot / SLOTS_PER_SEGMENT)];
+            int offset = (int) (slot % SLOTS_PER_SEGMENT) * SLOT_SIZE;
+            synchronized (lock(slot)) {
+                if (segment.get(offset + USED) == 1
+                        && transactionDate.test(LocalDate.ofEpochDay(segment.getInt(offset + EPOCH_DAY)))) {
+                    segment.put(offset + USED, (byte) 0);
+                }
+            }
+        }
+    }
+
+    long capacity() {
+        return slots;
+    }
+
+    long hitCount() {
+        return hits.sum();
+    }
+
+    long missCount() {
+        return misses.sum();
+    }
+
+    private long slot(UUID id) {
+        // The random bits of the id, mixed so that neighbouring ids spread over the segments
+        long hash = id.getLeastSignificantBits() ^ (id.getMostSignificantBits() * 0x9E3779B97F4A7C15L);
+        hash ^= hash >>> 31;
+        return Math.floorMod(hash, slots);
+    }
+
+    private Object lock(long slot) {
+        return locks[(int) (slot & (STRIPES - 1))];
+    }
+}
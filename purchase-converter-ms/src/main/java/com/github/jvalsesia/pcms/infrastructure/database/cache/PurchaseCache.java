@@ -0,0 +1,124 @@
+package com.github.jvalsesia.pcms.infrastructure.database.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.jvalsesia.pcms.domain.service.PurchasesRetiredEvent;
+import com.github.jvalsesia.pcms.infrastructure.database.config.PurchaseCacheConfiguration;
+import com.github.jvalsesia.pcms.infrastructure.database.repository.PurchaseJdbcRepository.PurchaseRow;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * In-process cache of purchase snapshots. Purchases never change once created, so entries
+ * never expire; they only leave when the cache is full or when the retention policy retires
+ * the month of their transaction date.
+ * <p>
+ * Entries are {@link PurchaseRow} records, not entities: nothing ties them to a persistence
+ * context and they are safe to share between threads. With an off-heap size configured,
+ * purchases evicted from the heap move to an {@link OffHeapPurchaseStore} and come back on
+ * their next read.
+ */
+@Slf4j
+@Component
+public class PurchaseCache {
+
+    private final boolean enabled;
+    private final OffHeapPurchaseStore offHeap;
+    private final Cache<UUID, PurchaseRow> cache;
+
+    public PurchaseCache(PurchaseCacheConfiguration cacheConfiguration) {
+        this.enabled = cacheConfiguration.isEnabled();
+        long offHeapBytes = cacheConfiguration.getOffHeapSize().toBytes();
+        this.offHeap = enabled && offHeapBytes >= OffHeapPurchaseStore.SLOT_SIZE ? new OffHeapPurchaseStore(offHeapBytes) : null;
+        Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                .maximumSize(enabled ? cacheConfiguration.getMaximumSize() : 0)
+                .recordStats();
+        this.cache = offHeap == null ? builder.build() : builder
+                .<UUID, PurchaseRow>evictionListener((id, purchase, cause) -> {
+                    if (cause == RemovalCause.SIZE) {
+                        offHeap.put(purchase);
+                    }
+                })
+                .build();
+        if (offHeap != null) {
+            log.info("Purchase cache holds {} purchases on the heap and {} off the heap",
+                    cacheConfiguration.getMaximumSize(), offHeap.capacity());
+        }
+    }
+
+    public Optional<PurchaseRow> get(UUID id) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        PurchaseRow purchase = cache.getIfPresent(id);
+        if (purchase == null && offHeap != null) {
+            purchase = offHeap.get(id).orElse(null);
+            if (purchase != null) {
+                cache.put(id, purchase);
+            }
+        }
+        return Optional.ofNullable(purchase);
+    }
+
+    /**
+     * Caches the purchase; inside a transaction, only once it commits, so a purchase rolled back
+     * is never served.
+     */
+    public void put(PurchaseRow purchase) {
+        if (!enabled) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.put(purchase.id(), purchase);
+                }
+            });
+        } else {
+            cache.put(purchase.id(), purchase);
+        }
+    }
+
+    @EventListener
+    public void onPurchasesRetired(PurchasesRetiredEvent event) {
+        invalidateMonths(event.months());
+    }
+
+    public void invalidateMonths(List<YearMonth> months) {
+        if (!enabled) {
+            return;
+        }
+        cache.asMap().values().removeIf(purchase -> months.contains(YearMonth.from(purchase.transactionDate())));
+        if (offHeap != null) {
+            offHeap.removeIf(transactionDate -> months.contains(YearMonth.from(transactionDate)));
+        }
+    }
+
+    public void invalidateAll() {
+        if (!enabled) {
+            return;
+        }
+        cache.invalidateAll();
+        if (offHeap != null) {
+            offHeap.removeIf(transactionDate -> true);
+        }
+    }
+
+    Cache<UUID, PurchaseRow> getCache() {
+        return cache;
+    }
+
+    OffHeapPurchaseStore getOffHeap() {
+        return offHeap;
+    }
+}
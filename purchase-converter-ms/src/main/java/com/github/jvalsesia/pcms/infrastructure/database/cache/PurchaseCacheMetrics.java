@@ -0,0 +1,52 @@
+package com.github.jvalsesia.pcms.infrastructure.database.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes purchase cache statistics on the actuator metrics/prometheus endpoints.
+ */
+@Component
+@RequiredArgsConstructor
+public class PurchaseCacheMetrics implements MeterBinder {
+
+    private final PurchaseCache purchaseCache;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        // cache.gets{result=hit|miss}, cache.evictions, cache.size, ... of the heap tier
+        CaffeineCacheMetrics.monitor(registry, purchaseCache.getCache(), "purchases");
+
+        OffHeapPurchaseStore offHeap = purchaseCache.getOffHeap();
+        if (offHeap != null) {
+            FunctionCounter.builder("purchase.cache.off-heap.hits", offHeap, OffHeapPurchaseStore::hitCount)
+                    .description("Heap cache misses answered by the off-heap store")
+                    .register(registry);
+            FunctionCounter.builder("purchase.cache.off-heap.misses", offHeap, OffHeapPurchaseStore::missCount)
+                    .description("Heap cache misses the off-heap store could not answer either")
+                    .register(registry);
+        }
+
+        Gauge.builder("purchase.cache.hit.ratio", purchaseCache, PurchaseCacheMetrics::hitRatio)
+                .description("Share of purchase lookups answered without a database read, since startup")
+                .register(registry);
+    }
+
+    private static double hitRatio(PurchaseCache purchaseCache) {
+        long requests = purchaseCache.getCache().stats().requestCount();
+        if (requests == 0) {
+            return 0;
+        }
+        long hits = purchaseCache.getCache().stats().hitCount();
+        OffHeapPurchaseStore offHeap = purchaseCache.getOffHeap();
+        if (offHeap != null) {
+            hits += offHeap.hitCount();
+        }
+        return (double) hits / requests;
+    }
+}
@@ -0,0 +1,24 @@
+package com.github.jvalsesia.pcms.infrastructure.database.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "cache-invalidation")
+@Component
+@Getter
+@Setter
+public class CacheInvalidationConfiguration {
+    // Tell the other nodes sharing the PostgreSQL database when their caches are stale; ignored on other databases
+    private boolean enabled = true;
+    // LISTEN/NOTIFY channel, shared by every node of one deployment
+    private String channel = "pcms_cache_invalidation";
+    // An idle listen connection is checked this often, a silently dropped one would never deliver again
+    private Duration pollTimeout = Duration.ofSeconds(5);
+    // Doubled after each failed reconnect, up to reconnect-max-backoff
+    private Duration reconnectInitialBackoff = Duration.ofMillis(500);
+    private Duration reconnectMaxBackoff = Duration.ofSeconds(30);
+}
@@ -0,0 +1,21 @@
+package com.github.jvalsesia.pcms.infrastructure.database.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "database-bulkhead")
+@Component
+@Getter
+@Setter
+public class DatabaseBulkheadConfiguration {
+    // Cap the connections of the primary pool in use, queueing the callers past the cap in arrival order
+    private boolean enabled = true;
+    // 0 for spring.datasource.hikari.maximum-pool-size
+    private int maxConcurrent = 0;
+    // Longest wait for a connection before answering 503; shorter than the pool's own connection-timeout
+    private Duration maxWait = Duration.ofSeconds(2);
+}
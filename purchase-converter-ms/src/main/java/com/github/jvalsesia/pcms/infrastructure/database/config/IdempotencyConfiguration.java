@@ -0,0 +1,24 @@
+package com.github.jvalsesia.pcms.infrastructure.database.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "purchase.idempotency")
+@Component
+@Getter
+@Setter
+public class IdempotencyConfiguration {
+    // How long a key replays its purchase; expired keys can be used again
+    private Duration ttl = Duration.ofHours(24);
+    // Keys whose purchase is kept in memory for replays without a database read
+    private int cacheSize = 10000;
+    // Sizing of the Bloom filter that lets new keys skip the database check
+    private long expectedKeys = 1_000_000;
+    private double falsePositiveRate = 0.01;
+    // Schedule of the expired key purge
+    private String purgeCron = "0 */15 * * * *";
+}
@@ -0,0 +1,20 @@
+package com.github.jvalsesia.pcms.infrastructure.database.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+@ConfigurationProperties(prefix = "purchase.cache")
+@Component
+@Getter
+@Setter
+public class PurchaseCacheConfiguration {
+    // Keep purchases in memory after they are created or first read; purchases never change
+    private boolean enabled = true;
+    // Purchases kept on the heap
+    private long maximumSize = 100_000;
+    // Direct memory holding the purchases evicted from the heap, 256 bytes each; 0 for none
+    private DataSize offHeapSize = DataSize.ofBytes(0);
+}
@@ -0,0 +1,34 @@
+package com.github.jvalsesia.pcms.infrastructure.database.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "purchase.import")
+@Component
+@Getter
+@Setter
+public class PurchaseImportConfiguration {
+    // CSV file imported at startup; imports can also be started through the purchaseimport actuator endpoint
+    private Path file;
+    // Files imported through the purchaseimport endpoint are named relative to this directory and must stay inside it
+    private Path directory = Path.of("data/import");
+    // Exit the application once the startup import is done, for one-off command line runs
+    private boolean exitWhenDone = false;
+    // Parallel parsers and writers, 0 for one per core
+    private int threads = 0;
+    // Size of the file slices parsed in parallel
+    private DataSize chunkSize = DataSize.ofMegabytes(64);
+    // Rows written per batch
+    private int batchSize = 5000;
+    // Write with the COPY protocol when the database is PostgreSQL, batched inserts otherwise
+    private boolean copy = true;
+    private Duration progressInterval = Duration.ofSeconds(5);
+    // Row errors kept for the status; further errors are only counted
+    private int maxReportedErrors = 1000;
+}
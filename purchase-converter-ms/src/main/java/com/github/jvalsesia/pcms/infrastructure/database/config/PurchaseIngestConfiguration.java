@@ -0,0 +1,19 @@
+package com.github.jvalsesia.pcms.infrastructure.database.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@ConfigurationProperties(prefix = "purchase.ingest")
+@Component
+@Getter
+@Setter
+public class PurchaseIngestConfiguration {
+    // Valid rows buffered before each write to the database
+    private int batchSize = 5000;
+    // Write with the COPY protocol when the database is PostgreSQL, batched inserts otherwise
+    private boolean copy = true;
+    // Row errors listed in the response; further errors are only counted
+    private int maxReportedErrors = 1000;
+}
@@ -0,0 +1,28 @@
+package com.github.jvalsesia.pcms.infrastructure.database.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@ConfigurationProperties(prefix = "purchase.partition")
+@Component
+@Getter
+@Setter
+public class PurchasePartitionConfiguration {
+    // Maintain the monthly purchase partitions; only applies to a partitioned PostgreSQL purchase table
+    private boolean enabled = true;
+    // Schedule of the partition maintenance, also run at startup
+    private String cron = "0 0 3 * * *";
+    // Months created ahead of the current one, so new purchases never land in the default partition
+    private int premakeMonths = 3;
+    // Months of purchases kept, counting the current one; older partitions are retired. 0 keeps everything
+    private int retentionMonths = 0;
+    // What happens to a retired partition: moved to the purchase_archive schema, or dropped
+    private RetentionAction retentionAction = RetentionAction.ARCHIVE;
+
+    public enum RetentionAction {
+        ARCHIVE,
+        DROP
+    }
+}
@@ -0,0 +1,36 @@
+package com.github.jvalsesia.pcms.infrastructure.database.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "purchase.write-behind")
+@Component
+@Getter
+@Setter
+public class PurchaseWriteBehindConfiguration {
+    // Queue purchase creations and store them in group-committed batches
+    private boolean enabled = false;
+    // Purchases waiting to be written; further creations are rejected with 503 until it drains
+    private int queueCapacity = 10000;
+    // Purchases written by one commit
+    private int maxBatchSize = 1000;
+    // When a creation is answered: once its batch is committed, or as soon as it is queued
+    private Acknowledgment acknowledgment = Acknowledgment.COMMITTED;
+    // Wait for the commit before answering 202 Accepted instead of 201 Created
+    private Duration ackTimeout = Duration.ofSeconds(2);
+    // Time given to the writer to drain the queue on shutdown
+    private Duration shutdownTimeout = Duration.ofSeconds(30);
+    // First wait before writing a batch again after the database failed to store it; doubles per attempt
+    private Duration retryInitialBackoff = Duration.ofMillis(100);
+    // Longest wait between two attempts at a batch while the database is unavailable
+    private Duration retryMaxBackoff = Duration.ofSeconds(5);
+
+    public enum Acknowledgment {
+        COMMITTED,
+        QUEUED
+    }
+}
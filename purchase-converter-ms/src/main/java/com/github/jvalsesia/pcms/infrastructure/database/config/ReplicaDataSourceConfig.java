@@ -0,0 +1,69 @@
+package com.github.jvalsesia.pcms.infrastructure.database.config;
+
+import com.github.jvalsesia.pcms.infrastructure.database.routing.ReadReplicaDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replaces the auto-configured DataSource when replicas are configured. The lazy proxy only takes
+ * a connection at the first statement, once the transaction has marked it read-only or not:
+ * read-only transactions then get a replica connection, everything else the primary.
+ * <p>
+ * The primary pool is injected as a plain DataSource: it comes out of the container behind the
+ * database bulkhead.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "replica-routing", name = "replicas[0].url")
+public class ReplicaDataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    ReadReplicaDataSource readReplicaDataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                                DataSourceProperties properties,
+                                                ReplicaRoutingConfiguration routingConfiguration) {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        List<ReplicaRoutingConfiguration.Replica> configured = routingConfiguration.getReplicas();
+        for (int i = 0; i < configured.size(); i++) {
+            ReplicaRoutingConfiguration.Replica replica = configured.get(i);
+            HikariDataSource dataSource = new HikariDataSource();
+            dataSource.setPoolName("replica-" + i);
+            dataSource.setJdbcUrl(replica.getUrl());
+            dataSource.setUsername(replica.getUsername() != null ? replica.getUsername() : properties.determineUsername());
+            dataSource.setPassword(replica.getPassword() != null ? replica.getPassword() : properties.determinePassword());
+            dataSource.setMaximumPoolSize(routingConfiguration.getMaximumPoolSize());
+            dataSource.setConnectionTimeout(routingConfiguration.getConnectionTimeout().toMillis());
+            dataSource.setReadOnly(true);
+            // Start even when the replica is down: it stays out of the rotation until it answers
+            dataSource.setInitializationFailTimeout(-1);
+            replicas.put(dataSource.getPoolName(), dataSource);
+        }
+        return new ReadReplicaDataSource(primaryDataSource, replicas, routingConfiguration.getHealthCheckInterval(),
+                routingConfiguration.getMaxReplicationLag());
+    }
+
+    @Bean
+    @Primary
+    DataSource dataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                          ReadReplicaDataSource readReplicaDataSource) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primaryDataSource);
+        dataSource.setReadOnlyDataSource(readReplicaDataSource);
+        return dataSource;
+    }
+}
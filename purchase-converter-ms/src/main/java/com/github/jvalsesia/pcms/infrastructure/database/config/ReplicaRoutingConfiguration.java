@@ -0,0 +1,37 @@
+package com.github.jvalsesia.pcms.infrastructure.database.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@ConfigurationProperties(prefix = "replica-routing")
+@Component
+@Getter
+@Setter
+public class ReplicaRoutingConfiguration {
+    // Read-only transactions go to these PostgreSQL replicas; none keeps every connection on spring.datasource
+    private List<Replica> replicas = new ArrayList<>();
+    // Purchases created this recently are read from the primary, which the replicas may not have caught up with
+    private Duration readYourWritesWindow = Duration.ofSeconds(5);
+    private Duration healthCheckInterval = Duration.ofSeconds(5);
+    // Replicas further behind are left out of the rotation until they catch up
+    private Duration maxReplicationLag = Duration.ofSeconds(10);
+    // Pool of each replica
+    private int maximumPoolSize = 10;
+    // Short, so reads move on to another replica or the primary quickly when a replica is down
+    private Duration connectionTimeout = Duration.ofSeconds(1);
+
+    @Getter
+    @Setter
+    public static class Replica {
+        private String url;
+        // Default to the spring.datasource credentials
+        private String username;
+        private String password;
+    }
+}
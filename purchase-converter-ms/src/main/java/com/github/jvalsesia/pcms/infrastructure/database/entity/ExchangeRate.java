@@ -1,38 +1,44 @@
 package com.github.jvalsesia.pcms.infrastructure.database.entity;
 
-import jakarta.persistence.Column;
-import jakarta.persistence.Entity;
-import jakarta.persistence.Id;
+import jakarta.persistence.*;
 import lombok.*;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.UUID;
 
-
+/**
+ * Local copy of a Treasury Reporting Rates of Exchange record.
+ * Looked up by (country, effective_date) when converting purchases.
+ */
 @Entity
+@Table(name = "exchange_rate",
+        uniqueConstraints = @UniqueConstraint(name = "uk_exchange_rate_country_currency_date",
+                columnNames = {"country", "currency", "effective_date"}),
+        indexes = @Index(name = "idx_exchange_rate_country_effective_date",
+                columnList = "country, effective_date"))
 @Getter
 @Setter
 @ToString
 @AllArgsConstructor
 @NoArgsConstructor
+@EntityListeners(AuditingEntityListener.class)
 public class ExchangeRate extends AuditEntity {
     @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
     private UUID id;
 
-    @Column(length = 50, nullable = false)
-    private String description;
-
-    @Column(nullable = false)
-    private LocalDate transactionDate;
+    @Column(length = 100, nullable = false)
+    private String country;
 
-    @Column(nullable = false, precision = 19, scale = 2)
-    private BigDecimal purchaseAmountUSD;
+    @Column(length = 100, nullable = false)
+    private String currency;
 
     @Column(nullable = false)
-    private BigDecimal exchangeRate;
+    private LocalDate effectiveDate;
 
-    @Column(nullable = false, precision = 19, scale = 2)
-    private BigDecimal convertedAmount;
+    @Column(nullable = false, precision = 19, scale = 6)
+    private BigDecimal exchangeRate;
 
 }
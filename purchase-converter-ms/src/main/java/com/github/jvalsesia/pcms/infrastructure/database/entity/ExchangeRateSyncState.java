@@ -0,0 +1,35 @@
+package com.github.jvalsesia.pcms.infrastructure.database.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.time.LocalDate;
+
+/**
+ * Watermark of the Treasury sync: the latest effective date fully imported by a successful run,
+ * and the version of the stored rates, bumped by every run that stored rates.
+ */
+@Entity
+@Table(name = "exchange_rate_sync_state")
+@Getter
+@Setter
+@ToString
+@AllArgsConstructor
+@NoArgsConstructor
+@EntityListeners(AuditingEntityListener.class)
+public class ExchangeRateSyncState extends AuditEntity {
+    @Id
+    @Column(length = 50)
+    private String name;
+
+    @Column(nullable = false)
+    private LocalDate watermark;
+
+    @Column(nullable = false)
+    private long ratesVersion;
+
+    public ExchangeRateSyncState(String name, LocalDate watermark) {
+        this(name, watermark, 0);
+    }
+}
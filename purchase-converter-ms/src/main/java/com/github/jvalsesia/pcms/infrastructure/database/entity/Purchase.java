@@ -1,5 +1,6 @@
 package com.github.jvalsesia.pcms.infrastructure.database.entity;
 
+import com.github.jvalsesia.pcms.infrastructure.database.id.GeneratedUuidV7;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Positive;
 import lombok.*;
@@ -18,8 +19,9 @@ import java.util.UUID;
 @NoArgsConstructor
 @EntityListeners(AuditingEntityListener.class)
 public class Purchase extends AuditEntity {
+    // Time-ordered, so inserts append to the primary key index
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @GeneratedUuidV7
     private UUID id;
 
     @Column(length = 50, nullable = false)
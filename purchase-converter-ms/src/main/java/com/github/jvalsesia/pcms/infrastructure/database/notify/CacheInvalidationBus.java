@@ -0,0 +1,275 @@
+package com.github.jvalsesia.pcms.infrastructure.database.notify;
+
+import com.github.jvalsesia.pcms.domain.service.ExchangeRateSyncService;
+import com.github.jvalsesia.pcms.domain.service.ExchangeRatesUpdatedEvent;
+import com.github.jvalsesia.pcms.domain.service.PurchasesRetiredEvent;
+import com.github.jvalsesia.pcms.infrastructure.database.cache.PurchaseCache;
+import com.github.jvalsesia.pcms.infrastructure.database.config.CacheInvalidationConfiguration;
+import com.github.jvalsesia.pcms.infrastructure.database.config.PurchasePartitionConfiguration;
+import com.github.jvalsesia.pcms.infrastructure.database.repository.ExchangeRateSyncStateRepository;
+import com.github.jvalsesia.pcms.infrastructure.database.routing.PrimaryReads;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the caches of the nodes sharing one PostgreSQL database in step over LISTEN/NOTIFY,
+ * without a message broker.
+ * <p>
+ * Local {@link ExchangeRatesUpdatedEvent}s and {@link PurchasesRetiredEvent}s are sent as a NOTIFY
+ * on the configured channel. Each node keeps one connection LISTENing to it, and republishes
+ * what the other nodes send as remote events, milliseconds after their commit. Payloads are
+ * {@code <node> rates <version>} and {@code <node> purchases-retired <month>,<month>...}.
+ * <p>
+ * The listen connection is held for the node's lifetime, so it is opened with the datasource URL
+ * and credentials straight from the driver: it takes neither a pool connection nor a slot of the
+ * database bulkhead. Sending goes through the pool like any other statement.
+ * <p>
+ * PostgreSQL only delivers notifications to sessions listening when they are sent. When the
+ * listen connection is lost it is reopened with backoff, and the node resyncs: the rates are
+ * reloaded if their stored version moved, and with retention enabled the purchase cache is
+ * cleared, since a retirement may have been missed.
+ */
+@Slf4j
+@Component
+public class CacheInvalidationBus {
+
+    static final String RATES = "rates";
+    static final String PURCHASES_RETIRED = "purchases-retired";
+
+    private final CacheInvalidationConfiguration configuration;
+    private final DataSourceProperties dataSourceProperties;
+    private final JdbcTemplate jdbcTemplate;
+    private final ExchangeRateSyncStateRepository syncStateRepository;
+    private final PurchaseCache purchaseCache;
+    private final PurchasePartitionConfiguration partitionConfiguration;
+    private final ApplicationEventPublisher eventPublisher;
+    private final boolean active;
+
+    // Tells this node's notifications apart, since a listening session receives its own too
+    private final String nodeId = UUID.randomUUID().toString();
+    private final AtomicLong ratesVersion = new AtomicLong();
+    private volatile boolean running;
+    private volatile Connection listenConnection;
+    private Thread listener;
+
+    public CacheInvalidationBus(CacheInvalidationConfiguration configuration, DataSource dataSource,
+                                DataSourceProperties dataSourceProperties, JdbcTemplate jdbcTemplate,
+                                ExchangeRateSyncStateRepository syncStateRepository, PurchaseCache purchaseCache,
+                                PurchasePartitionConfiguration partitionConfiguration,
+                                ApplicationEventPublisher eventPublisher) {
+        this.configuration = configuration;
+        this.dataSourceProperties = dataSourceProperties;
+        this.jdbcTemplate = jdbcTemplate;
+        this.syncStateRepository = syncStateRepository;
+        this.purchaseCache = purchaseCache;
+        this.partitionConfiguration = partitionConfiguration;
+        this.eventPublisher = eventPublisher;
+        this.active = configuration.isEnabled() && isPostgreSql(dataSource);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        start();
+    }
+
+    public synchronized void start() {
+        if (!active || running) {
+            return;
+        }
+        running = true;
+        listener = Thread.ofPlatform().daemon().name("cache-invalidation-listener").start(this::listen);
+    }
+
+    @PreDestroy
+    public synchronized void stop() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        // Aborting the connection wakes the listener up from its wait for notifications
+        abortQuietly(listenConnection);
+        listener.interrupt();
+        listener.join(configuration.getPollTimeout().toMillis());
+    }
+
+    @EventListener
+    public void onExchangeRatesUpdated(ExchangeRatesUpdatedEvent event) {
+        if (event.remote()) {
+            return;
+        }
+        ratesVersion.accumulateAndGet(event.ratesVersion(), Math::max);
+        publish(RATES, Long.toString(event.ratesVersion()));
+    }
+
+    @EventListener
+    public void onPurchasesRetired(PurchasesRetiredEvent event) {
+        if (event.remote()) {
+            return;
+        }
+        publish(PURCHASES_RETIRED, event.months().stream().map(YearMonth::toString).collect(Collectors.joining(",")));
+    }
+
+    public boolean isListening() {
+        return listenConnection != null;
+    }
+
+    private void publish(String type, String argument) {
+        if (!active) {
+            return;
+        }
+        try {
+            // Inside a transaction the notification is only delivered once it commits
+            jdbcTemplate.query("SELECT pg_notify(?, ?)", resultSet -> null,
+                    configuration.getChannel(), nodeId + " " + type + " " + argument);
+        } catch (DataAccessException e) {
+            // The other nodes catch up when they resync or on the next change
+            log.warn("Cache invalidation {} {} could not be sent: {}", type, argument, e.getMessage());
+        }
+    }
+
+    private void listen() {
+        Duration backoff = configuration.getReconnectInitialBackoff();
+        boolean missed = false;
+        while (running) {
+            try (Connection connection = openListenConnection()) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN \"" + configuration.getChannel().replace("\"", "\"\"") + "\"");
+                }
+                listenConnection = connection;
+                // Listening before reading the stored state: nothing sent from now on can be missed
+                resync(missed);
+                backoff = configuration.getReconnectInitialBackoff();
+                log.info("Listening to cache invalidations on {}", configuration.getChannel());
+                receive(connection);
+            } catch (SQLException | RuntimeException e) {
+                if (!running) {
+                    break;
+                }
+                log.warn("Cache invalidation listener disconnected, reconnecting in {}: {}", backoff, e.getMessage());
+                missed = true;
+                if (!sleep(backoff)) {
+                    break;
+                }
+                backoff = backoff.multipliedBy(2);
+                if (backoff.compareTo(configuration.getReconnectMaxBackoff()) > 0) {
+                    backoff = configuration.getReconnectMaxBackoff();
+                }
+            } finally {
+                listenConnection = null;
+            }
+        }
+    }
+
+    private Connection openListenConnection() throws SQLException {
+        return DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword());
+    }
+
+    private void receive(Connection connection) throws SQLException {
+        PGConnection pgConnection = connection.unwrap(PGConnection.class);
+        int pollTimeout = (int) configuration.getPollTimeout().toMillis();
+        while (running) {
+            PGNotification[] notifications = pgConnection.getNotifications(pollTimeout);
+            if (notifications == null || notifications.length == 0) {
+                if (!connection.isValid(Math.max(1, pollTimeout / 1000))) {
+                    throw new SQLException("Listen connection no longer answers");
+                }
+                continue;
+            }
+            for (PGNotification notification : notifications) {
+                apply(notification.getParameter());
+            }
+        }
+    }
+
+    void apply(String payload) {
+        String[] parts = payload.split(" ", 3);
+        if (parts.length < 3 || parts[0].equals(nodeId)) {
+            return;
+        }
+        try {
+            switch (parts[1]) {
+                case RATES -> {
+                    long version = Long.parseLong(parts[2]);
+                    ratesVersion.accumulateAndGet(version, Math::max);
+                    eventPublisher.publishEvent(new ExchangeRatesUpdatedEvent(0, version, true));
+                }
+                case PURCHASES_RETIRED -> eventPublisher.publishEvent(new PurchasesRetiredEvent(
+                        Arrays.stream(parts[2].split(",")).map(YearMonth::parse).toList(), true));
+                default -> log.debug("Ignoring cache invalidation {}", payload);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Cache invalidation {} could not be applied: {}", payload, e.getMessage());
+        }
+    }
+
+    // Catches up with what was sent while this node was not listening
+    void resync(boolean missed) {
+        long stored = PrimaryReads.call(() -> syncStateRepository.findRatesVersionByName(ExchangeRateSyncService.SYNC_NAME))
+                .orElse(0L);
+        long known = ratesVersion.getAndSet(stored);
+        if (!missed) {
+            return;
+        }
+        if (stored != known) {
+            eventPublisher.publishEvent(new ExchangeRatesUpdatedEvent(0, stored, true));
+        }
+        if (partitionConfiguration.isEnabled() && partitionConfiguration.getRetentionMonths() > 0) {
+            purchaseCache.invalidateAll();
+        }
+        log.info("Caches resynchronized after missed invalidations, rates version {}", stored);
+    }
+
+    private boolean sleep(Duration duration) {
+        try {
+            Thread.sleep(duration);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static void abortQuietly(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.abort(Runnable::run);
+        } catch (SQLException e) {
+            log.debug("Listen connection could not be aborted: {}", e.getMessage());
+        }
+    }
+
+    private static boolean isPostgreSql(DataSource dataSource) {
+        try {
+            String product = JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+            return "PostgreSQL".equalsIgnoreCase(product);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
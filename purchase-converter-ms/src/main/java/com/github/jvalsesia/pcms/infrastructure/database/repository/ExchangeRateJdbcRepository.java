@@ -0,0 +1,118 @@
+package com.github.jvalsesia.pcms.infrastructure.database.repository;
+
+import com.github.jvalsesia.pcms.infrastructure.treasury.TreasuryApiResponse;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.DatabaseMetaData;
+import java.sql.Date;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Batched upserts into exchange_rate, bypassing the persistence context for bulk syncs.
+ * A row is only rewritten when Treasury corrected its rate. Full reads for the in-memory index
+ * are plain projections too.
+ */
+@Repository
+public class ExchangeRateJdbcRepository {
+
+    private static final String POSTGRESQL_UPSERT = """
+            INSERT INTO exchange_rate (id, created_at, country, currency, effective_date, exchange_rate)
+            VALUES (?, ?, ?, ?, ?, ?)
+            ON CONFLICT (country, currency, effective_date) DO UPDATE
+            SET exchange_rate = EXCLUDED.exchange_rate, updated_at = EXCLUDED.created_at
+            WHERE exchange_rate.exchange_rate <> EXCLUDED.exchange_rate
+            """;
+
+    // Standard MERGE for H2 and other databases without ON CONFLICT
+    private static final String STANDARD_UPSERT = """
+            MERGE INTO exchange_rate t
+            USING (SELECT CAST(? AS UUID) AS id, CAST(? AS TIMESTAMP) AS created_at,
+                          CAST(? AS VARCHAR(100)) AS country, CAST(? AS VARCHAR(100)) AS currency,
+                          CAST(? AS DATE) AS effective_date, CAST(? AS DECIMAL(19, 6)) AS exchange_rate) s
+            ON t.country = s.country AND t.currency = s.currency AND t.effective_date = s.effective_date
+            WHEN MATCHED AND t.exchange_rate <> s.exchange_rate THEN
+                UPDATE SET exchange_rate = s.exchange_rate, updated_at = s.created_at
+            WHEN NOT MATCHED THEN
+                INSERT (id, created_at, country, currency, effective_date, exchange_rate)
+                VALUES (s.id, s.created_at, s.country, s.currency, s.effective_date, s.exchange_rate)
+            """;
+
+    private static final String ALL_RATES = """
+            SELECT country, effective_date, exchange_rate, COALESCE(updated_at, created_at) AS retrieved_at
+            FROM exchange_rate
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String upsertSql;
+
+    public ExchangeRateJdbcRepository(JdbcTemplate jdbcTemplate, DataSource dataSource) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.upsertSql = isPostgreSql(dataSource) ? POSTGRESQL_UPSERT : STANDARD_UPSERT;
+    }
+
+    /**
+     * Returns how many rows were inserted or corrected; rates already stored unchanged count as 0.
+     */
+    public int upsertAll(List<TreasuryApiResponse.ExchangeRateData> rates) {
+        if (rates.isEmpty()) {
+            return 0;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        int[][] updateCounts = jdbcTemplate.batchUpdate(upsertSql, rates, rates.size(), (ps, rate) -> {
+            ps.setObject(1, UUID.randomUUID());
+            ps.setTimestamp(2, now);
+            ps.setString(3, rate.getCountry());
+            ps.setString(4, rate.getCurrency());
+            ps.setDate(5, Date.valueOf(rate.getEffectiveDate()));
+            ps.setBigDecimal(6, rate.getExchangeRate());
+        });
+        int written = 0;
+        for (int[] batch : updateCounts) {
+            for (int count : batch) {
+                // pgjdbc reports SUCCESS_NO_INFO for every row of a rewritten batch that wrote anything,
+                // and 0 for one that wrote nothing, so unknown counts still tell a change apart
+                written += count == Statement.SUCCESS_NO_INFO ? 1 : Math.max(count, 0);
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Hands every stored rate to the consumer, along with when the sync last wrote it. Outside a
+     * read-only transaction it reads the primary, so rates just stored by any node are seen.
+     */
+    public void forEachRate(Consumer<StoredRate> consumer) {
+        jdbcTemplate.query(ALL_RATES, (RowCallbackHandler) rs -> {
+            Timestamp retrievedAt = rs.getTimestamp("retrieved_at");
+            consumer.accept(new StoredRate(rs.getString("country"), rs.getDate("effective_date").toLocalDate(),
+                    rs.getBigDecimal("exchange_rate"), retrievedAt != null ? retrievedAt.toInstant() : Instant.now()));
+        });
+    }
+
+    private static boolean isPostgreSql(DataSource dataSource) {
+        try {
+            String product = JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+            return "PostgreSQL".equalsIgnoreCase(product);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * @param retrievedAt when the sync last wrote the rate; rows without a timestamp count as just written
+     */
+    public record StoredRate(String country, LocalDate effectiveDate, BigDecimal exchangeRate, Instant retrievedAt) {
+    }
+}
@@ -0,0 +1,19 @@
+package com.github.jvalsesia.pcms.infrastructure.database.repository;
+
+
+import com.github.jvalsesia.pcms.infrastructure.database.entity.ExchangeRate;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface ExchangeRateRepository extends JpaRepository<ExchangeRate, UUID> {
+
+    // Latest rate <= transaction date and >= transaction date - 6 months,
+    // served by idx_exchange_rate_country_effective_date
+    Optional<ExchangeRate> findFirstByCountryAndEffectiveDateBetweenOrderByEffectiveDateDesc(
+            String country, LocalDate from, LocalDate to);
+}
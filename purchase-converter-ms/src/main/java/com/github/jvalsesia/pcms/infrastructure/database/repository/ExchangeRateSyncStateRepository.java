@@ -0,0 +1,44 @@
+package com.github.jvalsesia.pcms.infrastructure.database.repository;
+
+
+import com.github.jvalsesia.pcms.infrastructure.database.entity.ExchangeRateSyncState;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+@Repository
+public interface ExchangeRateSyncStateRepository extends JpaRepository<ExchangeRateSyncState, String> {
+
+    @Query("SELECT s.ratesVersion FROM ExchangeRateSyncState s WHERE s.name = :name")
+    Optional<Long> findRatesVersionByName(@Param("name") String name);
+
+    // In place rather than read-modify-write, so syncs running on several nodes never lose a bump
+    // or move the watermark back
+    @Transactional
+    @Modifying
+    @Query("""
+            UPDATE ExchangeRateSyncState s
+            SET s.watermark = CASE WHEN s.watermark < :watermark THEN :watermark ELSE s.watermark END,
+                s.ratesVersion = s.ratesVersion + :increment
+            WHERE s.name = :name
+            """)
+    int updateWatermarkAndRatesVersion(@Param("name") String name, @Param("watermark") LocalDate watermark,
+                                       @Param("increment") long increment);
+
+    /**
+     * Advances the watermark of an existing sync state, bumps its rates version when rates were
+     * stored and returns the version as of this update: the row stays locked until commit, so a
+     * concurrent sync reads its own bump after this one.
+     */
+    @Transactional
+    default long advance(String name, LocalDate watermark, boolean ratesStored) {
+        updateWatermarkAndRatesVersion(name, watermark, ratesStored ? 1 : 0);
+        return findRatesVersionByName(name).orElseThrow();
+    }
+}
@@ -0,0 +1,37 @@
+package com.github.jvalsesia.pcms.infrastructure.database.repository;
+
+import com.github.jvalsesia.pcms.infrastructure.database.entity.IdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Repository
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, String> {
+
+    // A plain INSERT rather than save(), which would SELECT first because the id is assigned:
+    // a concurrent request with the same key fails on the primary key instead
+    @Modifying
+    @Query(value = """
+            INSERT INTO idempotency_key (idempotency_key, request_hash, purchase_id, created_at, expires_at)
+            VALUES (:key, :requestHash, :purchaseId, :createdAt, :expiresAt)
+            """, nativeQuery = true)
+    void insert(@Param("key") String key, @Param("requestHash") String requestHash,
+                @Param("purchaseId") UUID purchaseId, @Param("createdAt") LocalDateTime createdAt,
+                @Param("expiresAt") LocalDateTime expiresAt);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM IdempotencyKey k WHERE k.idempotencyKey = :key AND k.expiresAt <= :now")
+    int deleteIfExpired(@Param("key") String key, @Param("now") LocalDateTime now);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM IdempotencyKey k WHERE k.expiresAt <= :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
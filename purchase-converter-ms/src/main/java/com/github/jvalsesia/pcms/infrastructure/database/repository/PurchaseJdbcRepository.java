@@ -0,0 +1,372 @@
+package com.github.jvalsesia.pcms.infrastructure.database.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.RowMapperResultSetExtractor;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.sql.DatabaseMetaData;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Purchase queries and bulk inserts that bypass the persistence context: rows are mapped straight
+ * to {@link PurchaseRow} records and never become managed entities.
+ */
+@Slf4j
+@Repository
+public class PurchaseJdbcRepository {
+
+    private static final String FIRST_PAGE = """
+            SELECT id, description, transaction_date, purchase_amount
+            FROM purchase
+            WHERE transaction_date BETWEEN ? AND ?
+            ORDER BY transaction_date, id
+            LIMIT ?
+            """;
+
+    // Keyset continuation: seeks past the last row returned instead of counting an OFFSET
+    private static final String NEXT_PAGE = """
+            SELECT id, description, transaction_date, purchase_amount
+            FROM purchase
+            WHERE transaction_date BETWEEN ? AND ?
+              AND (transaction_date, id) > (?, ?)
+            ORDER BY transaction_date, id
+            LIMIT ?
+            """;
+
+    private static final String INSERT = """
+            INSERT INTO purchase (id, created_at, description, transaction_date, purchase_amount)
+            VALUES (?, ?, ?, ?, ?)
+            """;
+
+    private static final String COPY = """
+            COPY purchase (id, created_at, description, transaction_date, purchase_amount)
+            FROM STDIN WITH (FORMAT csv)
+            """;
+
+    private static final String FIND_BY_ID = """
+            SELECT id, description, transaction_date, purchase_amount
+            FROM purchase
+            WHERE id = ?
+            """;
+
+    private static final String SEARCH = """
+            SELECT id, description, transaction_date, purchase_amount
+            FROM purchase
+            """;
+
+    // The rate of each distinct transaction date is resolved once, with the conversion rule of
+    // DatabaseExchangeRateProvider: the latest rate of the country at most 6 months old.
+    private static final String DAILY_CONVERTED_TOTALS = """
+            WITH day_rate AS (
+                SELECT d.transaction_date,
+                       (SELECT r.exchange_rate
+                        FROM exchange_rate r
+                        WHERE r.country = ?
+                          AND r.effective_date BETWEEN d.transaction_date - INTERVAL '6' MONTH AND d.transaction_date
+                        ORDER BY r.effective_date DESC
+                        LIMIT 1) AS rate
+                FROM (SELECT DISTINCT transaction_date
+                      FROM purchase
+                      WHERE transaction_date BETWEEN ? AND ?) d
+            )
+            SELECT p.transaction_date,
+                   COUNT(*) AS purchase_count,
+                   COUNT(dr.rate) AS converted_count,
+                   SUM(p.purchase_amount) AS total_amount,
+                   SUM(ROUND(p.purchase_amount * dr.rate, 2)) AS converted_amount_rounded,
+                   SUM(p.purchase_amount * dr.rate) AS converted_amount_exact
+            FROM purchase p
+            JOIN day_rate dr ON dr.transaction_date = p.transaction_date
+            WHERE p.transaction_date BETWEEN ? AND ?
+            GROUP BY p.transaction_date
+            ORDER BY p.transaction_date
+            """;
+
+    private static final RowMapper<PurchaseRow> ROW_MAPPER = (rs, rowNum) -> new PurchaseRow(
+            rs.getObject("id", UUID.class),
+            rs.getString("description"),
+            rs.getDate("transaction_date").toLocalDate(),
+            rs.getBigDecimal("purchase_amount"));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean postgreSql;
+
+    public PurchaseJdbcRepository(JdbcTemplate jdbcTemplate, DataSource dataSource,
+                                  TransactionTemplate transactionTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.postgreSql = isPostgreSql(dataSource);
+    }
+
+    /**
+     * Whether {@link #copyAll} can be used: the COPY protocol is specific to PostgreSQL.
+     */
+    public boolean supportsCopy() {
+        return postgreSql;
+    }
+
+    /**
+     * Inserts the purchases with one JDBC batch; PostgreSQL turns it into multi-row inserts when
+     * the connection has reWriteBatchedInserts set.
+     */
+    public void insertAll(List<PurchaseRow> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(INSERT, rows, rows.size(), (ps, row) -> {
+            ps.setObject(1, row.id());
+            ps.setTimestamp(2, now);
+            ps.setString(3, row.description());
+            ps.setDate(4, Date.valueOf(row.transactionDate()));
+            ps.setBigDecimal(5, row.purchaseAmount());
+        });
+    }
+
+    /**
+     * Streams the purchases to PostgreSQL with COPY FROM STDIN, which skips per-row statement
+     * parsing and planning. The rows are written atomically: all of them or none.
+     */
+    public void copyAll(List<PurchaseRow> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        String now = LocalDateTime.now().toString();
+        StringBuilder csv = new StringBuilder(rows.size() * 96);
+        for (PurchaseRow row : rows) {
+            csv.append(row.id()).append(',')
+                    .append(now).append(',')
+                    .append('"').append(row.description().replace("\"", "\"\"")).append('"').append(',')
+                    .append(row.transactionDate()).append(',')
+                    .append(row.purchaseAmount().toPlainString()).append('\n');
+        }
+        jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            try {
+                return connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY, new StringReader(csv.toString()));
+            } catch (IOException e) {
+                throw new SQLException("COPY into purchase failed", e);
+            }
+        });
+    }
+
+    /**
+     * Stores the purchases in one transaction, with {@link #copyAll} when {@code copy} is set and
+     * supported, else with {@link #insertAll}. When the database refuses the batch for its data,
+     * the rows are inserted one at a time instead, so one bad row does not keep the others out:
+     * every row left unstored is handed to {@code notStored} with its error. Returns how many rows
+     * were stored. Any other failure of the batch, such as a lost connection, is thrown with
+     * nothing stored.
+     */
+    public int insertAllOrEach(List<PurchaseRow> rows, boolean copy, NotStoredHandler notStored) {
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (copy && supportsCopy()) {
+                    copyAll(rows);
+                } else {
+                    insertAll(rows);
+                }
+            });
+            return rows.size();
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Batch of {} purchases refused, storing them one by one: {}", rows.size(), e.getMessage());
+            int stored = 0;
+            for (int i = 0; i < rows.size(); i++) {
+                try {
+                    insertAll(List.of(rows.get(i)));
+                    stored++;
+                } catch (RuntimeException rowError) {
+                    notStored.accept(i, rowError);
+                }
+            }
+            return stored;
+        }
+    }
+
+    /**
+     * Reads the columns a conversion needs, without a persistence context, entity hydration or
+     * audit fields.
+     */
+    public Optional<PurchaseRow> findById(UUID id) {
+        return queryReadOnly(FIND_BY_ID, id).stream().findFirst();
+    }
+
+    /**
+     * Reads the purchases of the ids found, in no particular order, with one query.
+     */
+    public List<PurchaseRow> findAllById(Collection<UUID> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        String sql = SEARCH + "WHERE id IN (" + String.join(", ", Collections.nCopies(ids.size(), "?")) + ")";
+        return queryReadOnly(sql, ids.toArray());
+    }
+
+    // Outside a transaction the connection is marked read-only before its first statement: with
+    // replica routing it then comes from a replica, as it would for a read-only transaction
+    private List<PurchaseRow> queryReadOnly(String sql, Object... args) {
+        return queryReadOnly(sql, ROW_MAPPER, args);
+    }
+
+    private <T> List<T> queryReadOnly(String sql, RowMapper<T> rowMapper, Object... args) {
+        boolean inTransaction = TransactionSynchronizationManager.isActualTransactionActive();
+        return jdbcTemplate.query(connection -> {
+            if (!inTransaction) {
+                connection.setReadOnly(true);
+            }
+            return connection.prepareStatement(sql);
+        }, new ArgumentPreparedStatementSetter(args), new RowMapperResultSetExtractor<>(rowMapper));
+    }
+
+    /**
+     * Hands every purchase with a transaction date in the range to the consumer, ordered by
+     * transaction date and id, reading one page of at most {@code pageSize} rows at a time.
+     * Returns the number of purchases read.
+     */
+    public int forEachInDateRange(LocalDate from, LocalDate to, int pageSize, Consumer<PurchaseRow> consumer) {
+        int count = 0;
+        List<PurchaseRow> page = queryReadOnly(FIRST_PAGE, Date.valueOf(from), Date.valueOf(to), pageSize);
+        while (!page.isEmpty()) {
+            page.forEach(consumer);
+            count += page.size();
+            if (page.size() < pageSize) {
+                break;
+            }
+            PurchaseRow last = page.getLast();
+            page = queryReadOnly(NEXT_PAGE, Date.valueOf(from), Date.valueOf(to),
+                    Date.valueOf(last.transactionDate()), last.id(), pageSize);
+        }
+        return count;
+    }
+
+    /**
+     * Returns at most {@code limit} purchases matching the criteria, ordered by transaction date
+     * and id, starting right after {@code after} when it is set. Filters left {@code null} are
+     * not applied.
+     */
+    public List<PurchaseRow> search(SearchCriteria criteria, Keyset after, int limit) {
+        List<String> conditions = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+        if (criteria.from() != null) {
+            conditions.add("transaction_date >= ?");
+            args.add(Date.valueOf(criteria.from()));
+        }
+        if (criteria.to() != null) {
+            conditions.add("transaction_date <= ?");
+            args.add(Date.valueOf(criteria.to()));
+        }
+        if (criteria.minAmount() != null) {
+            conditions.add("purchase_amount >= ?");
+            args.add(criteria.minAmount());
+        }
+        if (criteria.maxAmount() != null) {
+            conditions.add("purchase_amount <= ?");
+            args.add(criteria.maxAmount());
+        }
+        if (criteria.descriptionPrefix() != null) {
+            conditions.add("description LIKE ? ESCAPE '\\'");
+            args.add(escapeLike(criteria.descriptionPrefix()) + "%");
+        }
+        if (after != null) {
+            conditions.add("(transaction_date, id) > (?, ?)");
+            args.add(Date.valueOf(after.transactionDate()));
+            args.add(after.id());
+        }
+        StringBuilder sql = new StringBuilder(SEARCH);
+        if (!conditions.isEmpty()) {
+            sql.append("WHERE ").append(String.join(" AND ", conditions)).append('\n');
+        }
+        sql.append("ORDER BY transaction_date, id\nLIMIT ?");
+        args.add(limit);
+        return queryReadOnly(sql.toString(), args.toArray());
+    }
+
+    /**
+     * Totals the purchases of every transaction date in the range, converted to the country's
+     * currency with the rate stored in the exchange_rate table. Returns one row per date that has
+     * purchases, ordered by date.
+     */
+    public List<DailyTotal> sumConvertedByDay(LocalDate from, LocalDate to, String country) {
+        return queryReadOnly(DAILY_CONVERTED_TOTALS, (rs, rowNum) -> new DailyTotal(
+                        rs.getDate("transaction_date").toLocalDate(),
+                        rs.getLong("purchase_count"),
+                        rs.getLong("converted_count"),
+                        rs.getBigDecimal("total_amount"),
+                        rs.getBigDecimal("converted_amount_rounded"),
+                        rs.getBigDecimal("converted_amount_exact")),
+                country, Date.valueOf(from), Date.valueOf(to), Date.valueOf(from), Date.valueOf(to));
+    }
+
+    private static boolean isPostgreSql(DataSource dataSource) {
+        try {
+            String product = JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+            return "PostgreSQL".equalsIgnoreCase(product);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    /**
+     * Purchase search filters, each one optional; the description matches by prefix.
+     */
+    public record SearchCriteria(LocalDate from, LocalDate to, BigDecimal minAmount, BigDecimal maxAmount,
+                                 String descriptionPrefix) {
+    }
+
+    /**
+     * Position of the last purchase of a page, in the (transaction date, id) order.
+     */
+    public record Keyset(LocalDate transactionDate, UUID id) {
+    }
+
+    /**
+     * Purchases of one transaction date. Converted amounts are {@code null} when the date has no
+     * exchange rate; {@code convertedAmountRounded} sums amounts rounded one purchase at a time.
+     */
+    public record DailyTotal(LocalDate transactionDate, long purchaseCount, long convertedCount,
+                             BigDecimal totalAmount, BigDecimal convertedAmountRounded,
+                             BigDecimal convertedAmountExact) {
+    }
+
+    public record PurchaseRow(UUID id, String description, LocalDate transactionDate, BigDecimal purchaseAmount) {
+    }
+
+    /**
+     * Told about each row {@link #insertAllOrEach} could not store, by its position in the batch.
+     */
+    @FunctionalInterface
+    public interface NotStoredHandler {
+        void accept(int index, RuntimeException error);
+    }
+}
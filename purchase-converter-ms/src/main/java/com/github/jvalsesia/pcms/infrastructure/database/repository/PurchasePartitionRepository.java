@@ -0,0 +1,194 @@
+package com.github.jvalsesia.pcms.infrastructure.database.repository;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Maintenance of the monthly purchase_pYYYY_MM partitions created by the V7 migration.
+ * Partitions are created by the create_purchase_partitions database function, which also moves
+ * in any rows the default partition holds for the new months.
+ */
+@Repository
+public class PurchasePartitionRepository {
+
+    private static final Pattern PARTITION_NAME = Pattern.compile("purchase_p(\\d{4})_(\\d{2})");
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+    private static final DateTimeFormatter ARCHIVE_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+    private static final String IS_PARTITIONED = """
+            SELECT count(*) FROM pg_partitioned_table WHERE partrelid = to_regclass('purchase')
+            """;
+
+    private static final String PARTITIONS = """
+            SELECT c.relname
+            FROM pg_inherits i
+            JOIN pg_class c ON c.oid = i.inhrelid
+            WHERE i.inhparent = to_regclass('purchase')
+            ORDER BY c.relname
+            """;
+
+    private static final String DEFAULT_PARTITION_MONTHS = """
+            SELECT DISTINCT CAST(date_trunc('month', transaction_date) AS date)
+            FROM purchase_default
+            """;
+
+    private static final String IS_ARCHIVED = """
+            SELECT to_regclass('purchase_archive.' || ?) IS NOT NULL
+            """;
+
+    private static final String INDEXES = """
+            SELECT c.relname
+            FROM pg_index i
+            JOIN pg_class c ON c.oid = i.indexrelid
+            WHERE i.indrelid = to_regclass(?)
+            ORDER BY c.relname
+            """;
+
+    // Session-level, so it holds across the transactions of one maintenance run
+    private static final String TRY_MAINTENANCE_LOCK = """
+            SELECT pg_try_advisory_lock(hashtext('purchase_partition_maintenance'))
+            """;
+
+    private static final String MAINTENANCE_UNLOCK = """
+            SELECT pg_advisory_unlock(hashtext('purchase_partition_maintenance'))
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSource dataSource;
+    private final TransactionTemplate transactionTemplate;
+
+    public PurchasePartitionRepository(JdbcTemplate jdbcTemplate, DataSource dataSource,
+                                       TransactionTemplate transactionTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dataSource = dataSource;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * Whether purchase is a partitioned PostgreSQL table; the H2 schema of dev and tests is not.
+     */
+    public boolean isPartitioned() {
+        try {
+            String product = JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+            if (!"PostgreSQL".equalsIgnoreCase(product)) {
+                return false;
+            }
+        } catch (Exception e) {
+            return false;
+        }
+        Integer count = jdbcTemplate.queryForObject(IS_PARTITIONED, Integer.class);
+        return count != null && count > 0;
+    }
+
+    /**
+     * Runs the maintenance while holding a database-wide advisory lock, so nodes sharing the
+     * database never create, archive or drop partitions at the same time. Returns false, without
+     * running it, when another node holds the lock. The lock is held by a connection kept aside
+     * for the run and is released with it even if the node dies.
+     */
+    public boolean withMaintenanceLock(Runnable maintenance) {
+        return Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(TRY_MAINTENANCE_LOCK);
+                 ResultSet result = statement.executeQuery()) {
+                if (!result.next() || !result.getBoolean(1)) {
+                    return false;
+                }
+            }
+            try {
+                maintenance.run();
+                return true;
+            } finally {
+                try (PreparedStatement statement = connection.prepareStatement(MAINTENANCE_UNLOCK)) {
+                    statement.execute();
+                }
+            }
+        }));
+    }
+
+    /**
+     * Creates the missing monthly partitions from one month to another, both included, and
+     * returns how many were created.
+     */
+    public int createPartitions(YearMonth from, YearMonth to) {
+        Integer created = jdbcTemplate.queryForObject("SELECT create_purchase_partitions(?, ?)", Integer.class,
+                from.atDay(1), to.atDay(1));
+        return created == null ? 0 : created;
+    }
+
+    /**
+     * The months that have a partition attached to purchase, oldest first.
+     */
+    public List<YearMonth> findPartitionMonths() {
+        return jdbcTemplate.queryForList(PARTITIONS, String.class).stream()
+                .map(PARTITION_NAME::matcher)
+                .filter(Matcher::matches)
+                .map(matcher -> YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2))))
+                .toList();
+    }
+
+    /**
+     * Detaches the partition of a month and moves it to the purchase_archive schema, where it can
+     * be dumped or queried on its own, and returns its name there. A month archived before, whose
+     * partition was made again for purchases that arrived later, gets a timestamp suffix. Both
+     * steps run in one transaction, so a failure leaves the partition attached.
+     */
+    public String archivePartition(YearMonth month) {
+        String name = partitionName(month);
+        return transactionTemplate.execute(status -> {
+            jdbcTemplate.execute("ALTER TABLE purchase DETACH PARTITION " + name);
+            String archivedName = name;
+            if (Boolean.TRUE.equals(jdbcTemplate.queryForObject(IS_ARCHIVED, Boolean.class, name))) {
+                archivedName = name + "_" + LocalDateTime.now().format(ARCHIVE_SUFFIX);
+                // Its indexes move along and are named after the partition too, like those archived before
+                List<String> indexes = jdbcTemplate.queryForList(INDEXES, String.class, name);
+                for (int i = 0; i < indexes.size(); i++) {
+                    jdbcTemplate.execute("ALTER INDEX \"" + indexes.get(i) + "\" RENAME TO " + archivedName + "_idx" + (i + 1));
+                }
+                jdbcTemplate.execute("ALTER TABLE " + name + " RENAME TO " + archivedName);
+            }
+            jdbcTemplate.execute("ALTER TABLE " + archivedName + " SET SCHEMA purchase_archive");
+            return archivedName;
+        });
+    }
+
+    /**
+     * Detaches and drops the partition of a month, in one transaction.
+     */
+    public void dropPartition(YearMonth month) {
+        String name = partitionName(month);
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.execute("ALTER TABLE purchase DETACH PARTITION " + name);
+            jdbcTemplate.execute("DROP TABLE " + name);
+        });
+    }
+
+    /**
+     * The months of the purchases stored in the default partition, because they had no partition
+     * of their own when they were inserted.
+     */
+    public List<YearMonth> findDefaultPartitionMonths() {
+        return jdbcTemplate.queryForList(DEFAULT_PARTITION_MONTHS, LocalDate.class).stream()
+                .map(YearMonth::from)
+                .toList();
+    }
+
+    // Built from a YearMonth, never from outside input, so it is safe to put in DDL
+    private static String partitionName(YearMonth month) {
+        return "purchase_p" + month.format(PARTITION_SUFFIX);
+    }
+}
@@ -0,0 +1,37 @@
+package com.github.jvalsesia.pcms.infrastructure.database.routing;
+
+import java.util.function.Supplier;
+
+/**
+ * Sends the read-only connections opened by the current thread to the primary instead of a
+ * replica, for reads that must see a write the replicas may not have replayed yet.
+ */
+public final class PrimaryReads {
+
+    private static final ThreadLocal<Boolean> FORCED = new ThreadLocal<>();
+
+    private PrimaryReads() {
+    }
+
+    /**
+     * Runs the reads on the primary. Only connections opened inside take the primary: in a
+     * transaction, the reads must start with its first statement.
+     */
+    public static <T> T call(Supplier<T> reads) {
+        Boolean previous = FORCED.get();
+        FORCED.set(Boolean.TRUE);
+        try {
+            return reads.get();
+        } finally {
+            if (previous == null) {
+                FORCED.remove();
+            } else {
+                FORCED.set(previous);
+            }
+        }
+    }
+
+    public static boolean isForced() {
+        return Boolean.TRUE.equals(FORCED.get());
+    }
+}
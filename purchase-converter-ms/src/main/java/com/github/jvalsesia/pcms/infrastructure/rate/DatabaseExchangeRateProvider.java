@@ -0,0 +1,39 @@
+package com.github.jvalsesia.pcms.infrastructure.rate;
+
+import com.github.jvalsesia.pcms.domain.service.ExchangeRateProvider;
+import com.github.jvalsesia.pcms.domain.service.ExchangeRateQuote;
+import com.github.jvalsesia.pcms.infrastructure.database.entity.ExchangeRate;
+import com.github.jvalsesia.pcms.infrastructure.database.repository.ExchangeRateRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Resolves every conversion with one indexed query against the local exchange_rate table.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "exchange-rate", name = "provider", havingValue = "database")
+public class DatabaseExchangeRateProvider implements ExchangeRateProvider {
+
+    private final ExchangeRateRepository exchangeRateRepository;
+
+    @Override
+    public Optional<ExchangeRateQuote> findExchangeRate(String country, LocalDate transactionDate) {
+        return exchangeRateRepository
+                .findFirstByCountryAndEffectiveDateBetweenOrderByEffectiveDateDesc(
+                        country, transactionDate.minusMonths(6), transactionDate)
+                .map(rate -> ExchangeRateQuote.fresh(rate.getExchangeRate(), age(rate)));
+    }
+
+    // Time since the row was last written by the sync
+    private Duration age(ExchangeRate rate) {
+        LocalDateTime retrievedAt = rate.getUpdatedAt() != null ? rate.getUpdatedAt() : rate.getCreatedAt();
+        return retrievedAt != null ? Duration.between(retrievedAt, LocalDateTime.now()) : Duration.ZERO;
+    }
+}
@@ -0,0 +1,152 @@
+package com.github.jvalsesia.pcms.infrastructure.rate;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Immutable per-country time series of exchange rates.
+ * <p>
+ * Each country keeps its effective dates as sorted epoch days in an {@code int[]} and the
+ * matching rates packed into a {@code long[]} (unscaled value in the high bits, scale in the
+ * low 8 bits), so a lookup is one binary search with no boxing and no remote call. A third
+ * {@code long[]} keeps when each rate was retrieved from Treasury, in epoch millis.
+ */
+public final class ExchangeRateIndex {
+
+    private static final int SCALE_BITS = 8;
+    private static final int SCALE_MASK = (1 << SCALE_BITS) - 1;
+    private static final int MAX_UNSCALED_BITS = Long.SIZE - SCALE_BITS - 1;
+
+    private static final ExchangeRateIndex EMPTY = new ExchangeRateIndex(Map.of());
+
+    private final Map<String, Series> series;
+
+    private ExchangeRateIndex(Map<String, Series> series) {
+        this.series = series;
+    }
+
+    // Wraps series that are already sorted, as read back from an ExchangeRateSnapshot
+    static ExchangeRateIndex of(Map<String, Series> series) {
+        return series.isEmpty() ? EMPTY : new ExchangeRateIndex(Map.copyOf(series));
+    }
+
+    public static ExchangeRateIndex empty() {
+        return EMPTY;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Latest rate effective on or before the transaction date and no older than 6 months.
+     */
+    public Optional<BigDecimal> findExchangeRate(String country, LocalDate transactionDate) {
+        return findRate(country, transactionDate).map(Rate::rate);
+    }
+
+    /**
+     * Same lookup as {@link #findExchangeRate}, along with when the rate was retrieved.
+     */
+    public Optional<Rate> findRate(String country, LocalDate transactionDate) {
+        Series countrySeries = series.get(country);
+        if (countrySeries == null) {
+            return Optional.empty();
+        }
+        int position = countrySeries.floor((int) transactionDate.toEpochDay());
+        if (position < 0 || countrySeries.epochDays[position] < transactionDate.minusMonths(6).toEpochDay()) {
+            return Optional.empty();
+        }
+        return Optional.of(new Rate(unpack(countrySeries.packedRates[position]),
+                Instant.ofEpochMilli(countrySeries.retrievedAt[position])));
+    }
+
+    public Set<String> countries() {
+        return series.keySet();
+    }
+
+    Map<String, Series> series() {
+        return series;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Series countrySeries : series.values()) {
+            size += countrySeries.epochDays.length;
+        }
+        return size;
+    }
+
+    static long pack(BigDecimal rate) {
+        BigDecimal normalized = rate.stripTrailingZeros();
+        if (normalized.scale() < 0) {
+            normalized = normalized.setScale(0);
+        }
+        BigInteger unscaled = normalized.unscaledValue();
+        if (normalized.scale() > SCALE_MASK || unscaled.bitLength() > MAX_UNSCALED_BITS) {
+            throw new IllegalArgumentException("Exchange rate cannot be packed: " + rate);
+        }
+        return (unscaled.longValue() << SCALE_BITS) | normalized.scale();
+    }
+
+    static BigDecimal unpack(long packed) {
+        return BigDecimal.valueOf(packed >> SCALE_BITS, (int) (packed & SCALE_MASK));
+    }
+
+    /**
+     * @param rate        the exchange rate
+     * @param retrievedAt when the rate was last written by the sync
+     */
+    public record Rate(BigDecimal rate, Instant retrievedAt) {
+    }
+
+    record Series(int[] epochDays, long[] packedRates, long[] retrievedAt) {
+
+        // Index of the last entry <= epochDay, or -1
+        int floor(int epochDay) {
+            int position = Arrays.binarySearch(epochDays, epochDay);
+            return position >= 0 ? position : -position - 2;
+        }
+    }
+
+    public static final class Builder {
+
+        private final Map<String, TreeMap<Integer, Stored>> rates = new HashMap<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Adds a rate; a later rate for the same country and date replaces the earlier one.
+         */
+        public Builder add(String country, LocalDate effectiveDate, BigDecimal rate, Instant retrievedAt) {
+            rates.computeIfAbsent(country, key -> new TreeMap<>())
+                    .put((int) effectiveDate.toEpochDay(), new Stored(pack(rate), retrievedAt.toEpochMilli()));
+            return this;
+        }
+
+        public ExchangeRateIndex build() {
+            Map<String, Series> series = new HashMap<>(rates.size() * 2);
+            rates.forEach((country, byDay) -> {
+                int[] epochDays = new int[byDay.size()];
+                long[] packedRates = new long[byDay.size()];
+                long[] retrievedAt = new long[byDay.size()];
+                int i = 0;
+                for (Map.Entry<Integer, Stored> entry : byDay.entrySet()) {
+                    epochDays[i] = entry.getKey();
+                    packedRates[i] = entry.getValue().packedRate();
+                    retrievedAt[i] = entry.getValue().retrievedAt();
+                    i++;
+                }
+                series.put(country, new Series(epochDays, packedRates, retrievedAt));
+            });
+            return new ExchangeRateIndex(Map.copyOf(series));
+        }
+
+        private record Stored(long packedRate, long retrievedAt) {
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.github.jvalsesia.pcms.infrastructure.rate;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary copy of an {@link ExchangeRateIndex}, read through a memory-mapped file so a
+ * node can serve conversions right after boot without the database or the Treasury API.
+ * <p>
+ * Layout, big-endian: magic, version, creation time in epoch millis, country count and rate
+ * count; then the country dictionary (UTF-8 name and number of rates per country); then the
+ * epoch-day column, the packed rate column and the retrieval time column in epoch millis, each
+ * country's rates stored contiguously in dictionary order.
+ *
+ * @param index     the rates
+ * @param createdAt when the rates were loaded from the exchange_rate table
+ */
+public record ExchangeRateSnapshot(ExchangeRateIndex index, Instant createdAt) {
+
+    private static final int MAGIC = 0x50435253; // "PCRS"
+    private static final int VERSION = 2;
+
+    public static ExchangeRateSnapshot read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public static ExchangeRateSnapshot read(ByteBuffer buffer) throws IOException {
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not an exchange rate snapshot");
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported exchange rate snapshot version " + version);
+            }
+            Instant createdAt = Instant.ofEpochMilli(buffer.getLong());
+            int countryCount = buffer.getInt();
+            int rateCount = buffer.getInt();
+            if (countryCount < 0 || rateCount < 0) {
+                throw new IOException("Corrupt exchange rate snapshot");
+            }
+
+            List<String> countries = new ArrayList<>(countryCount);
+            int[] countryRates = new int[countryCount];
+            for (int i = 0; i < countryCount; i++) {
+                byte[] name = new byte[Short.toUnsignedInt(buffer.getShort())];
+                buffer.get(name);
+                countries.add(new String(name, StandardCharsets.UTF_8));
+                countryRates[i] = buffer.getInt();
+            }
+
+            // Columns are read straight from the mapping, one country slice at a time
+            IntBuffer epochDays = buffer.asIntBuffer();
+            LongBuffer packedRates = buffer.position(buffer.position() + rateCount * Integer.BYTES).asLongBuffer();
+            LongBuffer retrievedAt = buffer.position(buffer.position() + rateCount * Long.BYTES).asLongBuffer();
+            if (epochDays.remaining() < rateCount || packedRates.remaining() < rateCount
+                    || retrievedAt.remaining() < rateCount) {
+                throw new IOException("Truncated exchange rate snapshot");
+            }
+
+            Map<String, ExchangeRateIndex.Series> series = new HashMap<>(countryCount * 2);
+            int total = 0;
+            for (int i = 0; i < countryCount; i++) {
+                total += countryRates[i];
+                if (countryRates[i] < 0 || total > rateCount) {
+                    throw new IOException("Corrupt exchange rate snapshot");
+                }
+                int[] countryEpochDays = new int[countryRates[i]];
+                long[] countryPackedRates = new long[countryRates[i]];
+                long[] countryRetrievedAt = new long[countryRates[i]];
+                epochDays.get(countryEpochDays);
+                packedRates.get(countryPackedRates);
+                retrievedAt.get(countryRetrievedAt);
+                series.put(countries.get(i),
+                        new ExchangeRateIndex.Series(countryEpochDays, countryPackedRates, countryRetrievedAt));
+            }
+            return new ExchangeRateSnapshot(ExchangeRateIndex.of(series), createdAt);
+
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Truncated exchange rate snapshot", e);
+        }
+    }
+
+    /**
+     * Writes the snapshot next to the target and moves it into place, so a reader never sees
+     * a partial file.
+     */
+    public void write(Path path) throws IOException {
+        Map<String, ExchangeRateIndex.Series> series = index.series();
+        List<byte[]> names = new ArrayList<>(series.size());
+        List<ExchangeRateIndex.Series> columns = new ArrayList<>(series.size());
+        int size = 4 * Integer.BYTES + Long.BYTES;
+        int rateCount = 0;
+        for (Map.Entry<String, ExchangeRateIndex.Series> entry : series.entrySet()) {
+            byte[] name = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            names.add(name);
+            columns.add(entry.getValue());
+            size += Short.BYTES + name.length + Integer.BYTES;
+            rateCount += entry.getValue().epochDays().length;
+        }
+        size += rateCount * (Integer.BYTES + 2 * Long.BYTES);
+
+        ByteBuffer buffer = ByteBuffer.allocate(size)
+                .putInt(MAGIC)
+                .putInt(VERSION)
+                .putLong(createdAt.toEpochMilli())
+                .putInt(names.size())
+                .putInt(rateCount);
+        for (int i = 0; i < names.size(); i++) {
+            buffer.putShort((short) names.get(i).length).put(names.get(i)).putInt(columns.get(i).epochDays().length);
+        }
+        for (ExchangeRateIndex.Series column : columns) {
+            for (int epochDay : column.epochDays()) {
+                buffer.putInt(epochDay);
+            }
+        }
+        for (ExchangeRateIndex.Series column : columns) {
+            for (long packedRate : column.packedRates()) {
+                buffer.putLong(packedRate);
+            }
+        }
+        for (ExchangeRateIndex.Series column : columns) {
+            for (long retrievedAt : column.retrievedAt()) {
+                buffer.putLong(retrievedAt);
+            }
+        }
+        buffer.flip();
+
+        Path directory = path.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.github.jvalsesia.pcms.infrastructure.rate;
+
+import com.github.jvalsesia.pcms.domain.service.ExchangeRateProvider;
+import com.github.jvalsesia.pcms.domain.service.ExchangeRateQuote;
+import com.github.jvalsesia.pcms.domain.service.ExchangeRatesUpdatedEvent;
+import com.github.jvalsesia.pcms.infrastructure.database.repository.ExchangeRateJdbcRepository;
+import com.github.jvalsesia.pcms.infrastructure.rate.config.ExchangeRateSnapshotConfiguration;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Resolves conversions from an in-memory {@link ExchangeRateIndex} built from the local
+ * exchange_rate table. The index is rebuilt after every sync and swapped atomically,
+ * so lookups never touch the database or the network. Refreshes run one at a time and read
+ * the primary, so an index is never replaced by one built from older rows.
+ * <p>
+ * Every rebuilt index is also written as an {@link ExchangeRateSnapshot}. The snapshot, or the
+ * one bundled with the application, is loaded while the bean is created, so conversions are
+ * served before the first sync and even when neither the database nor Treasury has rates.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "exchange-rate", name = "provider", havingValue = "index", matchIfMissing = true)
+public class IndexedExchangeRateProvider implements ExchangeRateProvider {
+
+    private final ExchangeRateJdbcRepository exchangeRateJdbcRepository;
+    private final ExchangeRateSnapshotConfiguration snapshotConfiguration;
+
+    private final AtomicReference<LoadedIndex> index = new AtomicReference<>(
+            new LoadedIndex(ExchangeRateIndex.empty(), Instant.now()));
+    private final ReentrantLock refreshLock = new ReentrantLock();
+
+    @Override
+    public Optional<ExchangeRateQuote> findExchangeRate(String country, LocalDate transactionDate) {
+        return index.get().index().findRate(country, transactionDate)
+                .map(rate -> ExchangeRateQuote.fresh(rate.rate(), Duration.between(rate.retrievedAt(), Instant.now())));
+    }
+
+    @PostConstruct
+    public void loadSnapshot() {
+        if (!snapshotConfiguration.isEnabled()) {
+            return;
+        }
+        try {
+            Optional<ExchangeRateSnapshot> snapshot = readSnapshot();
+            if (snapshot.isPresent()) {
+                ExchangeRateIndex loaded = snapshot.get().index();
+                index.set(new LoadedIndex(loaded, snapshot.get().createdAt()));
+                log.info("Exchange rate index loaded from snapshot: {} rates for {} countries, created {}",
+                        loaded.size(), loaded.countries().size(), snapshot.get().createdAt());
+            }
+        } catch (IOException e) {
+            // The index is rebuilt from the database once the application is ready
+            log.warn("Exchange rate snapshot could not be read: {}", e.getMessage());
+        }
+    }
+
+    // Load whatever is already stored before the startup sync runs
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        refresh();
+    }
+
+    // Local syncs, remote announcements and resyncs all land here; the primary already has their rows
+    @EventListener
+    public void onExchangeRatesUpdated(ExchangeRatesUpdatedEvent event) {
+        refresh();
+    }
+
+    public void refresh() {
+        // A refresh that started later read later rows, so it must also be the one installed last
+        refreshLock.lock();
+        try {
+            ExchangeRateIndex.Builder builder = ExchangeRateIndex.builder();
+            exchangeRateJdbcRepository.forEachRate(rate ->
+                    builder.add(rate.country(), rate.effectiveDate(), rate.exchangeRate(), rate.retrievedAt()));
+            ExchangeRateIndex refreshed = builder.build();
+            if (refreshed.size() == 0 && index.get().index().size() > 0) {
+                // Nothing stored yet, e.g. a fresh in-memory database: keep serving the snapshot
+                log.info("No exchange rates stored yet, keeping the snapshot index");
+                return;
+            }
+            LoadedIndex loaded = new LoadedIndex(refreshed, Instant.now());
+            index.set(loaded);
+            log.info("Exchange rate index loaded: {} rates for {} countries",
+                    refreshed.size(), refreshed.countries().size());
+            writeSnapshot(loaded);
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    private Optional<ExchangeRateSnapshot> readSnapshot() throws IOException {
+        Path path = snapshotConfiguration.getPath();
+        if (Files.isRegularFile(path)) {
+            return Optional.of(ExchangeRateSnapshot.read(path));
+        }
+        Resource bundled = snapshotConfiguration.getBundled();
+        if (bundled == null || !bundled.exists()) {
+            return Optional.empty();
+        }
+        if (bundled.isFile()) {
+            return Optional.of(ExchangeRateSnapshot.read(bundled.getFile().toPath()));
+        }
+        // A snapshot packaged inside the jar cannot be mapped, it is read into memory instead
+        return Optional.of(ExchangeRateSnapshot.read(ByteBuffer.wrap(bundled.getContentAsByteArray())));
+    }
+
+    private void writeSnapshot(LoadedIndex loaded) {
+        if (!snapshotConfiguration.isEnabled() || loaded.index().size() == 0) {
+            return;
+        }
+        try {
+            new ExchangeRateSnapshot(loaded.index(), loaded.loadedAt()).write(snapshotConfiguration.getPath());
+        } catch (IOException e) {
+            log.warn("Exchange rate snapshot could not be written to {}: {}",
+                    snapshotConfiguration.getPath(), e.getMessage());
+        }
+    }
+
+    private record LoadedIndex(ExchangeRateIndex index, Instant loadedAt) {
+    }
+}
@@ -0,0 +1,19 @@
+package com.github.jvalsesia.pcms.infrastructure.rate.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "exchange-rate.lookup")
+@Component
+@Getter
+@Setter
+public class ExchangeRateLookupConfiguration {
+    // Countries accepted by one multi-currency conversion
+    private int maxCountries = 50;
+    // Overall budget of the concurrent rate lookups of one multi-currency conversion
+    private Duration fanOutDeadline = Duration.ofSeconds(5);
+}
@@ -0,0 +1,21 @@
+package com.github.jvalsesia.pcms.infrastructure.rate.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+
+@ConfigurationProperties(prefix = "exchange-rate.snapshot")
+@Component
+@Getter
+@Setter
+public class ExchangeRateSnapshotConfiguration {
+    private boolean enabled = true;
+    // Rewritten after every sync, read first on startup
+    private Path path = Path.of("data", "exchange-rates.snapshot");
+    // Shipped with the application, used when there is no snapshot at path yet
+    private Resource bundled;
+}
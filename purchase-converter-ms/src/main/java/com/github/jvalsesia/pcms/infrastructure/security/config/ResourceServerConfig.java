@@ -2,7 +2,6 @@ package com.github.jvalsesia.pcms.infrastructure.security.config;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.http.HttpMethod;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
@@ -27,10 +26,12 @@ public class ResourceServerConfig {
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers("/swagger-ui/**", "/v3/api-docs/**", "/swagger-ui.html")
                         .permitAll()
-                        .requestMatchers(HttpMethod.GET, "/api/purchases/{id}")
-                        .hasAnyAuthority("SCOPE_purchase")
-                        .requestMatchers(HttpMethod.POST, "/api/purchases")
-                        .hasAnyAuthority("SCOPE_purchase")
+                        // Every purchase endpoint, including bulk ingest, listing, export, report and conversions
+                        .requestMatchers("/api/purchases", "/api/purchases/**")
+                        .hasAuthority("SCOPE_purchase")
+                        // Imports files from the server's disk: administrators only
+                        .requestMatchers("/actuator/purchaseimport")
+                        .hasAuthority("SCOPE_purchase.admin")
                         .anyRequest().authenticated());
 
         return httpSecurity.build();
@@ -1,13 +1,17 @@
 package com.github.jvalsesia.pcms.infrastructure.treasury;
 
+import com.github.jvalsesia.pcms.infrastructure.concurrent.SingleFlight;
 import com.github.jvalsesia.pcms.infrastructure.treasury.config.TreasuryApiConfiguration;
+import com.github.jvalsesia.pcms.infrastructure.treasury.config.TreasuryHttpConfiguration;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientResponseException;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @Slf4j
 @Service
@@ -17,17 +21,27 @@ public class TreasuryApiClient {
 
     private final RestClient restClient;
 
-    public TreasuryApiClient(RestClient restClient, TreasuryApiConfiguration treasuryApiConfiguration) {
+    private final TreasuryHttpConfiguration treasuryHttpConfiguration;
+
+    private final TreasuryCallExecutor callExecutor;
+
+    // Concurrent lookups for the same country and look-back window share one request
+    private final SingleFlight<LookbackWindow, Optional<BigDecimal>> inFlightLookups = new SingleFlight<>();
+
+    public TreasuryApiClient(RestClient restClient, TreasuryApiConfiguration treasuryApiConfiguration,
+                             TreasuryHttpConfiguration treasuryHttpConfiguration, TreasuryCallExecutor callExecutor) {
         this.restClient = restClient;
         this.treasuryApiConfiguration = treasuryApiConfiguration;
+        this.treasuryHttpConfiguration = treasuryHttpConfiguration;
+        this.callExecutor = callExecutor;
     }
 
 
     public Optional<BigDecimal> getExchangeRatesFiltered(String country, LocalDate purchaseDate) {
         // log url
-        log.info("{}://{}{}", treasuryApiConfiguration.getScheme(),
+        log.debug("{}://{}{}", treasuryApiConfiguration.getScheme(),
                 treasuryApiConfiguration.getHost(),
-                treasuryApiConfiguration.getHost());
+                treasuryApiConfiguration.getPath());
 
         // check future date
         if (purchaseDate.isAfter(LocalDate.now())) {
@@ -35,26 +49,47 @@ public class TreasuryApiClient {
         }
 
         // check 6 months
-       LocalDate sixMonthsAgo = purchaseDate.minusMonths(6);
+        LocalDate sixMonthsAgo = purchaseDate.minusMonths(6);
+
+        return inFlightLookups.execute(new LookbackWindow(country, sixMonthsAgo, purchaseDate),
+                () -> fetchExchangeRate(country, purchaseDate, sixMonthsAgo));
+    }
+
+    /**
+     * Number of lookups answered by an identical request that was already in flight.
+     */
+    public long getCoalescedRequestCount() {
+        return inFlightLookups.getCoalescedCount();
+    }
 
+    private Optional<BigDecimal> fetchExchangeRate(String country, LocalDate purchaseDate, LocalDate sixMonthsAgo) {
         try {
-            TreasuryApiResponse response = restClient.get()
-                    .uri(uriBuilder -> uriBuilder
-                            .scheme(treasuryApiConfiguration.getScheme())
-                            .host(treasuryApiConfiguration.getHost())
-                            .path(treasuryApiConfiguration.getPath())
-                            .queryParam("fields", "effective_date,country,currency,exchange_rate")
-                            .queryParam("sort", "-effective_date")
-                            .queryParam("filter", String.format(
-                                    "country:eq:%s,effective_date:lte:%s,effective_date:gte:%s", country, purchaseDate, sixMonthsAgo))
-                            .build())
-                    .retrieve()
-                    .body(TreasuryApiResponse.class);
-
-            if (response != null && response.getData() != null && !response.getData().isEmpty()) {
-                BigDecimal rate = response.getData().getFirst().getExchangeRate();
-                log.info("Found exchange rate: {} for country: {}", rate, country);
-                log.info("Exchange rate data: {}", response.getData());
+            // Only the newest record of the window is needed: ask for a single one and stop reading after it
+            Optional<TreasuryApiResponse.ExchangeRateData> newest = callExecutor.execute(
+                    treasuryHttpConfiguration.getLookupDeadline(), true,
+                    () -> restClient.get()
+                            .uri(uriBuilder -> uriBuilder
+                                    .scheme(treasuryApiConfiguration.getScheme())
+                                    .host(treasuryApiConfiguration.getHost())
+                                    .port(treasuryApiConfiguration.getPort())
+                                    .path(treasuryApiConfiguration.getPath())
+                                    .queryParam("fields", "effective_date,exchange_rate")
+                                    .queryParam("sort", "-effective_date")
+                                    .queryParam("filter", String.format(
+                                            "country:eq:%s,effective_date:lte:%s,effective_date:gte:%s", country, purchaseDate, sixMonthsAgo))
+                                    .queryParam("page[size]", 1)
+                                    .build())
+                            .exchange((request, response) -> {
+                                if (response.getStatusCode().isError()) {
+                                    throw new RestClientResponseException("Treasury API returned " + response.getStatusCode(),
+                                            response.getStatusCode(), response.getStatusText(), response.getHeaders(), null, null);
+                                }
+                                return TreasuryRateStreamParser.parseFirst(response.getBody());
+                            }));
+
+            if (newest.isPresent() && newest.get().getExchangeRate() != null) {
+                BigDecimal rate = newest.get().getExchangeRate();
+                log.debug("Found exchange rate: {} effective {} for country: {}", rate, newest.get().getEffectiveDate(), country);
                 return Optional.of(rate);
             }
 
@@ -62,10 +97,52 @@ public class TreasuryApiClient {
             return Optional.empty();
 
 
+        } catch (TreasuryApiException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error fetching exchange rate from Treasury API", e);
             throw new TreasuryApiException("Failed to fetch exchange rate: " + e.getMessage(), e);
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * Streams one page of the rate records effective on or after the given date, oldest first,
+     * and returns the total number of pages. A retried page is streamed again from its first
+     * record, so the consumer must tolerate repeated records.
+     */
+    public int streamExchangeRatesPage(LocalDate effectiveDateFrom, int pageNumber, int pageSize,
+                                       Consumer<TreasuryApiResponse.ExchangeRateData> consumer) {
+        try {
+            return callExecutor.execute(treasuryHttpConfiguration.getPageDeadline(), false,
+                    () -> restClient.get()
+                            .uri(uriBuilder -> uriBuilder
+                                    .scheme(treasuryApiConfiguration.getScheme())
+                                    .host(treasuryApiConfiguration.getHost())
+                                    .port(treasuryApiConfiguration.getPort())
+                                    .path(treasuryApiConfiguration.getPath())
+                                    .queryParam("fields", "effective_date,country,currency,exchange_rate")
+                                    .queryParam("sort", "effective_date,country,currency")
+                                    .queryParam("filter", String.format("effective_date:gte:%s", effectiveDateFrom))
+                                    .queryParam("page[number]", pageNumber)
+                                    .queryParam("page[size]", pageSize)
+                                    .build())
+                            .exchange((request, response) -> {
+                                if (response.getStatusCode().isError()) {
+                                    throw new RestClientResponseException("Treasury API returned " + response.getStatusCode(),
+                                            response.getStatusCode(), response.getStatusText(), response.getHeaders(), null, null);
+                                }
+                                return TreasuryRateStreamParser.parse(response.getBody(), consumer);
+                            }));
+
+        } catch (TreasuryApiException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Error fetching exchange rates page {} from Treasury API", pageNumber, e);
+            throw new TreasuryApiException("Failed to fetch exchange rates: " + e.getMessage(), e);
+        }
+    }
+
+    private record LookbackWindow(String country, LocalDate from, LocalDate to) {
+    }
+
+}
@@ -0,0 +1,66 @@
+package com.github.jvalsesia.pcms.infrastructure.treasury;
+
+import com.github.jvalsesia.pcms.infrastructure.concurrent.Bulkhead;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes Treasury API client statistics on the actuator metrics/prometheus endpoints.
+ */
+@Component
+@RequiredArgsConstructor
+public class TreasuryApiMetrics implements MeterBinder {
+
+    private final TreasuryApiClient treasuryApiClient;
+    private final TreasuryExchangeRateCache treasuryExchangeRateCache;
+    private final TreasuryCallExecutor treasuryCallExecutor;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("treasury.api.requests.coalesced", treasuryApiClient,
+                        TreasuryApiClient::getCoalescedRequestCount)
+                .description("Exchange rate lookups answered by an identical in-flight Treasury request")
+                .register(registry);
+
+        FunctionCounter.builder("treasury.api.requests.retried", treasuryCallExecutor,
+                        TreasuryCallExecutor::getRetryCount)
+                .description("Treasury API attempts repeated after a transient failure")
+                .register(registry);
+
+        FunctionCounter.builder("treasury.api.requests.hedged", treasuryCallExecutor,
+                        TreasuryCallExecutor::getHedgeCount)
+                .description("Second Treasury API requests sent because the first exceeded the p95 latency")
+                .register(registry);
+
+        FunctionCounter.builder("treasury.api.requests.rejected", treasuryCallExecutor,
+                        TreasuryCallExecutor::getRejectedCount)
+                .description("Treasury API calls refused while the circuit breaker was open")
+                .register(registry);
+
+        // 0 closed, 1 half-open, 2 open
+        Gauge.builder("treasury.api.circuit.state", treasuryCallExecutor,
+                        executor -> executor.getCircuitState().ordinal())
+                .description("Treasury API circuit breaker state")
+                .register(registry);
+
+        treasuryCallExecutor.getBulkhead().ifPresent(bulkhead -> {
+            Gauge.builder("treasury.api.bulkhead.active", bulkhead, Bulkhead::getActiveCount)
+                    .description("Treasury API calls in flight")
+                    .register(registry);
+            Gauge.builder("treasury.api.bulkhead.waiting", bulkhead, Bulkhead::getWaitingCount)
+                    .description("Treasury API calls queued for a bulkhead slot")
+                    .register(registry);
+            FunctionCounter.builder("treasury.api.bulkhead.rejected", bulkhead, Bulkhead::getRejectedCount)
+                    .description("Treasury API calls refused after waiting max-wait for a bulkhead slot")
+                    .register(registry);
+        });
+
+        // cache.gets{result=hit|miss}, cache.evictions, cache.size, ...
+        CaffeineCacheMetrics.monitor(registry, treasuryExchangeRateCache.getCache(), "treasury.exchange-rates");
+    }
+}
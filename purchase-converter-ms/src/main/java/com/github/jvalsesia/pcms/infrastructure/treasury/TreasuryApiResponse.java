@@ -11,6 +11,8 @@ import java.util.List;
 public class TreasuryApiResponse {
     private List<ExchangeRateData> data;
 
+    private Meta meta;
+
     @Data
     public static class ExchangeRateData {
         @JsonProperty("effective_date")
@@ -28,4 +30,13 @@ public class TreasuryApiResponse {
         @JsonProperty("exchange_rate")
         private BigDecimal exchangeRate;
     }
-}
\ No newline at end of file
+
+    @Data
+    public static class Meta {
+        @JsonProperty("total-count")
+        private Integer totalCount;
+
+        @JsonProperty("total-pages")
+        private Integer totalPages;
+    }
+}
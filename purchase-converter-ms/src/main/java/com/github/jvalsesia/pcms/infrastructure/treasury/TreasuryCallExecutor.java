@@ -0,0 +1,272 @@
+package com.github.jvalsesia.pcms.infrastructure.treasury;
+
+import com.github.jvalsesia.pcms.infrastructure.concurrent.Bulkhead;
+import com.github.jvalsesia.pcms.infrastructure.concurrent.BulkheadFullException;
+import com.github.jvalsesia.pcms.infrastructure.concurrent.CircuitBreaker;
+import com.github.jvalsesia.pcms.infrastructure.concurrent.LatencyWindow;
+import com.github.jvalsesia.pcms.infrastructure.treasury.config.TreasuryHttpConfiguration;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Runs Treasury API calls under a deadline, with jittered retries of transient failures,
+ * a circuit breaker that fails fast while the API keeps failing, and optional hedging.
+ * <p>
+ * A bulkhead caps the calls in flight. Callers past the cap wait for a slot for up to
+ * {@code bulkhead.max-wait} and are refused after that, so a slow API holds up a bounded number
+ * of requests rather than every request thread.
+ * <p>
+ * Each attempt runs on a virtual thread; when the deadline passes the attempt is interrupted,
+ * which closes its socket. A hedged call starts a second identical request once the first one
+ * has been outstanding for the observed p95 latency and returns whichever answers first, so it
+ * must only be used for idempotent requests whose result can be discarded.
+ */
+@Slf4j
+@Component
+public class TreasuryCallExecutor {
+
+    private static final double HEDGE_PERCENTILE = 0.95;
+
+    private final TreasuryHttpConfiguration httpConfiguration;
+    private final CircuitBreaker circuitBreaker;
+    // Null when disabled
+    private final Bulkhead bulkhead;
+    private final LatencyWindow latencies = new LatencyWindow(256, 20);
+    private final ExecutorService attemptExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    @Autowired
+    public TreasuryCallExecutor(TreasuryHttpConfiguration httpConfiguration) {
+        this(httpConfiguration, new CircuitBreaker(httpConfiguration.getCircuitBreaker().getFailureThreshold(),
+                httpConfiguration.getCircuitBreaker().getOpenDuration()));
+    }
+
+    TreasuryCallExecutor(TreasuryHttpConfiguration httpConfiguration, CircuitBreaker circuitBreaker) {
+        this.httpConfiguration = httpConfiguration;
+        this.circuitBreaker = circuitBreaker;
+        TreasuryHttpConfiguration.Bulkhead bulkheadConfiguration = httpConfiguration.getBulkhead();
+        this.bulkhead = bulkheadConfiguration.isEnabled() ? new Bulkhead(bulkheadConfiguration.getMaxConcurrentCalls()) : null;
+    }
+
+    public <T> T execute(Duration deadline, boolean hedged, Supplier<T> call) {
+        long deadlineNanos = System.nanoTime() + deadline.toNanos();
+        if (bulkhead == null) {
+            return execute(deadlineNanos, hedged, call);
+        }
+        // Taken before the circuit breaker, which expects to hear back from every call it lets through
+        acquire(deadlineNanos);
+        try {
+            return execute(deadlineNanos, hedged, call);
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    private <T> T execute(long deadlineNanos, boolean hedged, Supplier<T> call) {
+        if (!circuitBreaker.tryAcquire()) {
+            rejected.increment();
+            throw new TreasuryApiException("Treasury API circuit breaker is open");
+        }
+
+        TreasuryHttpConfiguration.Retry retry = httpConfiguration.getRetry();
+        boolean reported = false;
+        try {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    T result = attempt(call, deadlineNanos, hedged && httpConfiguration.getHedge().isEnabled());
+                    reported = true;
+                    circuitBreaker.onSuccess();
+                    return result;
+                } catch (RuntimeException e) {
+                    if (!isRetryable(e)) {
+                        // The API answered, it is just not an answer worth repeating
+                        reported = true;
+                        if (e instanceof RestClientResponseException) {
+                            circuitBreaker.onSuccess();
+                        } else {
+                            circuitBreaker.onFailure();
+                        }
+                        throw e;
+                    }
+                    long backoffNanos = backoff(attempt, retry).toNanos();
+                    if (attempt >= retry.getMaxAttempts() || System.nanoTime() + backoffNanos >= deadlineNanos) {
+                        reported = true;
+                        circuitBreaker.onFailure();
+                        throw e;
+                    }
+                    retries.increment();
+                    log.warn("Treasury API attempt {} failed, retrying in {} ms: {}",
+                            attempt, TimeUnit.NANOSECONDS.toMillis(backoffNanos), e.getMessage());
+                    sleep(backoffNanos);
+                }
+            }
+        } finally {
+            // Interrupted while backing off, or an Error: a half-open trial that never reports
+            // back would keep the circuit refusing every call
+            if (!reported) {
+                circuitBreaker.onFailure();
+            }
+        }
+    }
+
+    public CircuitBreaker.State getCircuitState() {
+        return circuitBreaker.getState();
+    }
+
+    public long getRetryCount() {
+        return retries.sum();
+    }
+
+    public long getHedgeCount() {
+        return hedges.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * The bulkhead capping the calls in flight, empty when disabled.
+     */
+    public Optional<Bulkhead> getBulkhead() {
+        return Optional.ofNullable(bulkhead);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        attemptExecutor.shutdownNow();
+    }
+
+    // Transport errors, 5xx and 429; anything else would fail the same way again
+    static boolean isRetryable(RuntimeException e) {
+        if (e instanceof ResourceAccessException) {
+            return true;
+        }
+        return e instanceof RestClientResponseException response
+                && (response.getStatusCode().is5xxServerError()
+                || response.getStatusCode().value() == HttpStatus.TOO_MANY_REQUESTS.value());
+    }
+
+    // Full jitter: uniformly random between zero and the exponential backoff cap
+    static Duration backoff(int attempt, TreasuryHttpConfiguration.Retry retry) {
+        long initial = retry.getInitialBackoff().toNanos();
+        long cap = Math.min(retry.getMaxBackoff().toNanos(), initial << Math.min(attempt - 1, 20));
+        return Duration.ofNanos(ThreadLocalRandom.current().nextLong(cap + 1));
+    }
+
+    private void acquire(long deadlineNanos) {
+        long maxWait = Math.min(httpConfiguration.getBulkhead().getMaxWait().toNanos(), remaining(deadlineNanos));
+        try {
+            if (!bulkhead.tryAcquire(Duration.ofNanos(maxWait))) {
+                throw new TreasuryApiException("Treasury API bulkhead is full",
+                        new BulkheadFullException("Treasury API is busy, retry later"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TreasuryApiException("Interrupted while waiting for a Treasury API slot", e);
+        }
+    }
+
+    private <T> T attempt(Supplier<T> call, long deadlineNanos, boolean hedged) {
+        CompletionService<T> completion = new ExecutorCompletionService<>(attemptExecutor);
+        List<Future<T>> started = new ArrayList<>(2);
+        try {
+            started.add(completion.submit(() -> timed(call)));
+            int outstanding = 1;
+            if (hedged) {
+                Future<T> first = completion.poll(Math.min(hedgeDelay().toNanos(), remaining(deadlineNanos)),
+                        TimeUnit.NANOSECONDS);
+                if (first != null) {
+                    return first.get();
+                }
+                if (remaining(deadlineNanos) > 0) {
+                    hedges.increment();
+                    started.add(completion.submit(() -> timed(call)));
+                    outstanding++;
+                }
+            }
+
+            ExecutionException failure = null;
+            while (outstanding > 0) {
+                Future<T> done = completion.poll(remaining(deadlineNanos), TimeUnit.NANOSECONDS);
+                if (done == null) {
+                    throw new ResourceAccessException("Treasury API call exceeded its deadline");
+                }
+                outstanding--;
+                try {
+                    return done.get();
+                } catch (ExecutionException e) {
+                    failure = e;
+                }
+            }
+            throw unwrap(failure);
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TreasuryApiException("Interrupted while calling the Treasury API", e);
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } finally {
+            started.forEach(future -> future.cancel(true));
+        }
+    }
+
+    private <T> T timed(Supplier<T> call) {
+        long start = System.nanoTime();
+        T result = call.get();
+        latencies.record(Duration.ofNanos(System.nanoTime() - start));
+        return result;
+    }
+
+    private Duration hedgeDelay() {
+        TreasuryHttpConfiguration.Hedge hedge = httpConfiguration.getHedge();
+        Duration p95 = latencies.percentile(HEDGE_PERCENTILE).orElse(hedge.getInitialDelay());
+        return p95.compareTo(hedge.getMinDelay()) < 0 ? hedge.getMinDelay() : p95;
+    }
+
+    private static long remaining(long deadlineNanos) {
+        return Math.max(0, deadlineNanos - System.nanoTime());
+    }
+
+    private static RuntimeException unwrap(ExecutionException e) {
+        if (e.getCause() instanceof RuntimeException runtimeException) {
+            return runtimeException;
+        }
+        if (e.getCause() instanceof Error error) {
+            throw error;
+        }
+        return new TreasuryApiException("Treasury API call failed: " + e.getCause().getMessage(), e.getCause());
+    }
+
+    private static void sleep(long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TreasuryApiException("Interrupted while waiting to retry the Treasury API", e);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.github.jvalsesia.pcms.infrastructure.treasury;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.jvalsesia.pcms.domain.service.ExchangeRateQuote;
+import com.github.jvalsesia.pcms.domain.service.ExchangeRatesUpdatedEvent;
+import com.github.jvalsesia.pcms.infrastructure.treasury.config.TreasuryCacheConfiguration;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Size-bounded cache in front of {@link TreasuryApiClient}, keyed by normalized country and
+ * transaction date. Empty results are cached too, for a shorter time, so repeated conversions
+ * without a rate in the 6-month window do not repeat the remote call.
+ * Failures are never cached. Every entry is dropped once a sync, on any node, stored new or
+ * corrected rates, since Treasury has published them.
+ * <p>
+ * With {@code treasury.cache.stale-while-revalidate} enabled, an entry past its freshness
+ * lifetime is returned immediately, flagged as stale, while a background call refreshes it.
+ * If that call fails the stale entry keeps being served until it is older than
+ * {@code treasury.cache.max-stale}.
+ */
+@Slf4j
+@Component
+public class TreasuryExchangeRateCache {
+
+    private final TreasuryApiClient treasuryApiClient;
+    private final TreasuryCacheConfiguration cacheConfiguration;
+    private final Ticker ticker;
+    private final Executor refreshExecutor;
+
+    private final Cache<RateKey, CachedRate> cache;
+    private final Set<RateKey> refreshing = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public TreasuryExchangeRateCache(TreasuryApiClient treasuryApiClient, TreasuryCacheConfiguration cacheConfiguration) {
+        this(treasuryApiClient, cacheConfiguration, Ticker.systemTicker(), Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    TreasuryExchangeRateCache(TreasuryApiClient treasuryApiClient, TreasuryCacheConfiguration cacheConfiguration,
+                              Ticker ticker, Executor refreshExecutor) {
+        this.treasuryApiClient = treasuryApiClient;
+        this.cacheConfiguration = cacheConfiguration;
+        this.ticker = ticker;
+        this.refreshExecutor = refreshExecutor;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(cacheConfiguration.getMaximumSize())
+                .expireAfter(new RateExpiry())
+                .ticker(ticker)
+                .recordStats()
+                .build();
+    }
+
+    public Optional<ExchangeRateQuote> getExchangeRate(String country, LocalDate transactionDate) {
+        RateKey key = new RateKey(normalize(country), transactionDate);
+        CachedRate cached = cache.get(key, this::load);
+
+        Duration age = Duration.ofNanos(ticker.read() - cached.loadedAtNanos());
+        boolean stale = age.compareTo(freshness(key, cached.rate())) >= 0;
+        if (stale) {
+            refreshInBackground(key);
+        }
+        return cached.rate().map(rate -> new ExchangeRateQuote(rate, age, stale));
+    }
+
+    @EventListener
+    public void onExchangeRatesUpdated(ExchangeRatesUpdatedEvent event) {
+        cache.invalidateAll();
+    }
+
+    Cache<RateKey, CachedRate> getCache() {
+        return cache;
+    }
+
+    // Trims and collapses whitespace; Treasury country names are matched case-sensitively
+    static String normalize(String country) {
+        return country.strip().replaceAll("\\s+", " ");
+    }
+
+    private CachedRate load(RateKey key) {
+        return new CachedRate(treasuryApiClient.getExchangeRatesFiltered(key.country(), key.transactionDate()),
+                ticker.read());
+    }
+
+    private void refreshInBackground(RateKey key) {
+        if (!refreshing.add(key)) {
+            return;
+        }
+        CompletableFuture.runAsync(() -> cache.put(key, load(key)), refreshExecutor)
+                .whenComplete((ignored, failure) -> {
+                    refreshing.remove(key);
+                    if (failure != null) {
+                        log.warn("Serving stale exchange rate for {} on {}, refresh failed: {}",
+                                key.country(), key.transactionDate(), failure.getMessage());
+                    }
+                });
+    }
+
+    private Duration freshness(RateKey key, Optional<BigDecimal> rate) {
+        if (rate.isEmpty()) {
+            return cacheConfiguration.getNegativeTtl();
+        }
+        return key.transactionDate().isBefore(LocalDate.now())
+                ? cacheConfiguration.getPastDateTtl()
+                : cacheConfiguration.getCurrentDateTtl();
+    }
+
+    record RateKey(String country, LocalDate transactionDate) {
+    }
+
+    record CachedRate(Optional<BigDecimal> rate, long loadedAtNanos) {
+    }
+
+    // Entries live for their freshness lifetime, plus max-stale when stale entries may be served
+    private class RateExpiry implements Expiry<RateKey, CachedRate> {
+
+        @Override
+        public long expireAfterCreate(RateKey key, CachedRate cached, long currentTime) {
+            Duration lifetime = freshness(key, cached.rate());
+            if (cacheConfiguration.isStaleWhileRevalidate()) {
+                lifetime = lifetime.plus(cacheConfiguration.getMaxStale());
+            }
+            return lifetime.toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(RateKey key, CachedRate cached, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, cached, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(RateKey key, CachedRate cached, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
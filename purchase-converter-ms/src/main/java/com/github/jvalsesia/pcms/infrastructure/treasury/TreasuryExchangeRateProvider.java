@@ -0,0 +1,26 @@
+package com.github.jvalsesia.pcms.infrastructure.treasury;
+
+import com.github.jvalsesia.pcms.domain.service.ExchangeRateProvider;
+import com.github.jvalsesia.pcms.domain.service.ExchangeRateQuote;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+/**
+ * Resolves conversions with remote calls to the Treasury API, through {@link TreasuryExchangeRateCache}.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "exchange-rate", name = "provider", havingValue = "treasury")
+public class TreasuryExchangeRateProvider implements ExchangeRateProvider {
+
+    private final TreasuryExchangeRateCache treasuryExchangeRateCache;
+
+    @Override
+    public Optional<ExchangeRateQuote> findExchangeRate(String country, LocalDate transactionDate) {
+        return treasuryExchangeRateCache.getExchangeRate(country, transactionDate);
+    }
+}
@@ -0,0 +1,108 @@
+package com.github.jvalsesia.pcms.infrastructure.treasury;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Streaming parser for a Treasury rates of exchange response page. Records are handed to the
+ * consumer one by one as they are read, so a page is never materialized as a list.
+ */
+final class TreasuryRateStreamParser {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private TreasuryRateStreamParser() {
+    }
+
+    /**
+     * Parses a response body and returns the total number of pages reported in its meta section.
+     */
+    static int parse(InputStream body, Consumer<TreasuryApiResponse.ExchangeRateData> consumer) throws IOException {
+        int totalPages = 1;
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Unexpected Treasury API response");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("data".equals(field) && value == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        consumer.accept(readRecord(parser));
+                    }
+                } else if ("meta".equals(field) && value == JsonToken.START_OBJECT) {
+                    totalPages = readTotalPages(parser, totalPages);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return totalPages;
+    }
+
+    /**
+     * Reads the first record of a response body and stops there, leaving the rest of the body unread.
+     */
+    static Optional<TreasuryApiResponse.ExchangeRateData> parseFirst(InputStream body) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Unexpected Treasury API response");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("data".equals(field) && value == JsonToken.START_ARRAY) {
+                    return parser.nextToken() == JsonToken.START_OBJECT
+                            ? Optional.of(readRecord(parser))
+                            : Optional.empty();
+                }
+                parser.skipChildren();
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static TreasuryApiResponse.ExchangeRateData readRecord(JsonParser parser) throws IOException {
+        TreasuryApiResponse.ExchangeRateData data = new TreasuryApiResponse.ExchangeRateData();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            String text = parser.currentToken() == JsonToken.VALUE_NULL ? null : parser.getValueAsString();
+            if (text == null) {
+                parser.skipChildren();
+                continue;
+            }
+            switch (field) {
+                case "effective_date" -> data.setEffectiveDate(LocalDate.parse(text));
+                case "country" -> data.setCountry(text);
+                case "currency" -> data.setCurrency(text);
+                case "country_currency_desc" -> data.setCountryCurrencyDesc(text);
+                case "exchange_rate" -> data.setExchangeRate(new BigDecimal(text));
+                default -> parser.skipChildren();
+            }
+        }
+        return data;
+    }
+
+    private static int readTotalPages(JsonParser parser, int defaultTotalPages) throws IOException {
+        int totalPages = defaultTotalPages;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            if ("total-pages".equals(field)) {
+                totalPages = parser.getValueAsInt(defaultTotalPages);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return totalPages;
+    }
+}
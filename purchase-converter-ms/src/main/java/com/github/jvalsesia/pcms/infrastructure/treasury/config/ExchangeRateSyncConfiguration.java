@@ -0,0 +1,24 @@
+package com.github.jvalsesia.pcms.infrastructure.treasury.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+
+@ConfigurationProperties(prefix = "exchange-rate.sync")
+@Component
+@Getter
+@Setter
+public class ExchangeRateSyncConfiguration {
+    private boolean enabled = true;
+    private String cron = "0 0 6 * * *";
+    // Watermark of the first sync, which imports the records effective on or after this date
+    private LocalDate initialDate = LocalDate.of(2000, 12, 31);
+    // Largest page size accepted by the Treasury API
+    private int pageSize = 10000;
+    private int maxConcurrentPages = 4;
+    // Rows per JDBC upsert batch
+    private int batchSize = 1000;
+}
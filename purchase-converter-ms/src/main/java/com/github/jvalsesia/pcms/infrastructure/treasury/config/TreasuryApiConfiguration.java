@@ -12,5 +12,7 @@ import org.springframework.stereotype.Component;
 public class TreasuryApiConfiguration {
     private String scheme;
     private String host;
+    // -1 uses the scheme's default port
+    private int port = -1;
     private String path;
 }
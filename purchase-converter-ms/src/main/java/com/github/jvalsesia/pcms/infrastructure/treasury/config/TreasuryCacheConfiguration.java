@@ -0,0 +1,26 @@
+package com.github.jvalsesia.pcms.infrastructure.treasury.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "treasury.cache")
+@Component
+@Getter
+@Setter
+public class TreasuryCacheConfiguration {
+    private long maximumSize = 10_000;
+    // Rates for past transaction dates are only replaced by a Treasury correction
+    private Duration pastDateTtl = Duration.ofDays(7);
+    // A rate for today may still be published later in the day
+    private Duration currentDateTtl = Duration.ofHours(1);
+    // "No rate within 6 months" results
+    private Duration negativeTtl = Duration.ofMinutes(10);
+    // Serve expired entries while they are refreshed in the background
+    private boolean staleWhileRevalidate = false;
+    // How long past its TTL an entry may still be served when refreshes keep failing
+    private Duration maxStale = Duration.ofDays(1);
+}
@@ -0,0 +1,64 @@
+package com.github.jvalsesia.pcms.infrastructure.treasury.config;
+
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestClient;
+
+import java.time.Duration;
+
+/**
+ * Outbound HTTP client for the Treasury API: a pooled keep-alive connection manager with
+ * bounded connect, pool and response timeouts. Retries are left to {@code TreasuryCallExecutor}.
+ */
+@Configuration
+public class TreasuryHttpClientConfig {
+    private final TreasuryHttpConfiguration treasuryHttpConfiguration;
+
+    public TreasuryHttpClientConfig(TreasuryHttpConfiguration treasuryHttpConfiguration) {
+        this.treasuryHttpConfiguration = treasuryHttpConfiguration;
+    }
+
+    @Bean
+    public HttpComponentsClientHttpRequestFactory treasuryRequestFactory() {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(treasuryHttpConfiguration.getMaxConnections())
+                .setMaxConnPerRoute(treasuryHttpConfiguration.getMaxConnectionsPerRoute())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(timeout(treasuryHttpConfiguration.getConnectTimeout()))
+                        .setSocketTimeout(timeout(treasuryHttpConfiguration.getResponseTimeout()))
+                        .setTimeToLive(TimeValue.ofMilliseconds(treasuryHttpConfiguration.getConnectionTimeToLive().toMillis()))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+
+        return new HttpComponentsClientHttpRequestFactory(HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(timeout(treasuryHttpConfiguration.getConnectionRequestTimeout()))
+                        .setResponseTimeout(timeout(treasuryHttpConfiguration.getResponseTimeout()))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(treasuryHttpConfiguration.getIdleTimeout().toMillis()))
+                .disableAutomaticRetries()
+                .build());
+    }
+
+    @Bean
+    public RestClient restClient(HttpComponentsClientHttpRequestFactory treasuryRequestFactory) {
+        return RestClient.builder()
+                .requestFactory(treasuryRequestFactory)
+                .build();
+    }
+
+    private static Timeout timeout(Duration duration) {
+        return Timeout.ofMilliseconds(duration.toMillis());
+    }
+}
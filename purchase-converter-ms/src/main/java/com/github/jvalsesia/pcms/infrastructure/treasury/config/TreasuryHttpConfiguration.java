@@ -0,0 +1,69 @@
+package com.github.jvalsesia.pcms.infrastructure.treasury.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "treasury.http")
+@Component
+@Getter
+@Setter
+public class TreasuryHttpConfiguration {
+    private int maxConnections = 50;
+    private int maxConnectionsPerRoute = 20;
+    private Duration connectTimeout = Duration.ofSeconds(2);
+    // Longest wait for a free pooled connection
+    private Duration connectionRequestTimeout = Duration.ofSeconds(1);
+    // Longest gap between two packets of a response
+    private Duration responseTimeout = Duration.ofSeconds(10);
+    private Duration idleTimeout = Duration.ofSeconds(30);
+    private Duration connectionTimeToLive = Duration.ofMinutes(5);
+    // Overall budget of a single exchange rate lookup, retries and hedges included
+    private Duration lookupDeadline = Duration.ofSeconds(5);
+    // Overall budget of a single sync page, retries included
+    private Duration pageDeadline = Duration.ofMinutes(2);
+    private Retry retry = new Retry();
+    private CircuitBreaker circuitBreaker = new CircuitBreaker();
+    private Hedge hedge = new Hedge();
+    private Bulkhead bulkhead = new Bulkhead();
+
+    @Getter
+    @Setter
+    public static class Retry {
+        // Attempts per call, the first one included
+        private int maxAttempts = 3;
+        private Duration initialBackoff = Duration.ofMillis(100);
+        private Duration maxBackoff = Duration.ofSeconds(2);
+    }
+
+    @Getter
+    @Setter
+    public static class CircuitBreaker {
+        // Consecutive failed calls that open the circuit
+        private int failureThreshold = 5;
+        private Duration openDuration = Duration.ofSeconds(30);
+    }
+
+    @Getter
+    @Setter
+    public static class Hedge {
+        private boolean enabled = false;
+        // Used until enough latencies have been observed to compute the p95
+        private Duration initialDelay = Duration.ofMillis(500);
+        private Duration minDelay = Duration.ofMillis(50);
+    }
+
+    @Getter
+    @Setter
+    public static class Bulkhead {
+        // Cap the Treasury calls in flight, so a slow API cannot tie up every request waiting on it
+        private boolean enabled = true;
+        // Calls in flight at once; a call keeps its slot through its retries and hedge
+        private int maxConcurrentCalls = 20;
+        // Longest wait for a free slot, within the call's own deadline
+        private Duration maxWait = Duration.ofSeconds(1);
+    }
+}
@@ -0,0 +1,20 @@
+-- The original exchange_rate table stored converted purchases and was never used.
+-- Replace it with a local copy of the Treasury rates of exchange dataset.
+DROP TABLE IF EXISTS exchange_rate;
+
+CREATE TABLE IF NOT EXISTS exchange_rate
+(
+    id             UUID           NOT NULL,
+    created_at     TIMESTAMP WITHOUT TIME ZONE,
+    created_by     VARCHAR(255),
+    updated_at     TIMESTAMP WITHOUT TIME ZONE,
+    updated_by     VARCHAR(255),
+    country        VARCHAR(100)   NOT NULL,
+    currency       VARCHAR(100)   NOT NULL,
+    effective_date date           NOT NULL,
+    exchange_rate  DECIMAL(19, 6) NOT NULL,
+    CONSTRAINT pk_exchange_rate PRIMARY KEY (id),
+    CONSTRAINT uk_exchange_rate_country_currency_date UNIQUE (country, currency, effective_date)
+);
+
+CREATE INDEX IF NOT EXISTS idx_exchange_rate_country_effective_date ON exchange_rate(country, effective_date);
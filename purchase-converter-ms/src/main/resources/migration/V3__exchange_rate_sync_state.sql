@@ -0,0 +1,16 @@
+CREATE TABLE IF NOT EXISTS exchange_rate_sync_state
+(
+    name       VARCHAR(50) NOT NULL,
+    created_at TIMESTAMP WITHOUT TIME ZONE,
+    created_by VARCHAR(255),
+    updated_at TIMESTAMP WITHOUT TIME ZONE,
+    updated_by VARCHAR(255),
+    watermark  date        NOT NULL,
+    CONSTRAINT pk_exchange_rate_sync_state PRIMARY KEY (name)
+);
+
+-- Resume from the rates already imported
+INSERT INTO exchange_rate_sync_state (name, created_at, watermark)
+SELECT 'treasury', now(), max(effective_date)
+FROM exchange_rate
+HAVING max(effective_date) IS NOT NULL;
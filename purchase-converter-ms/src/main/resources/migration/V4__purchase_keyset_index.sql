@@ -0,0 +1,5 @@
+-- Keyset pagination orders purchases by (transaction_date, id): include id in the index
+-- so each page is a single range scan with no sort.
+DROP INDEX IF EXISTS idx_purchase_transaction_date;
+
+CREATE INDEX IF NOT EXISTS idx_purchase_transaction_date ON purchase(transaction_date, id);
@@ -0,0 +1,15 @@
+-- Purchase search pages by (transaction_date, id). Covering the filtered columns lets the
+-- amount and description filters run on an index-only scan of that order.
+DROP INDEX IF EXISTS idx_purchase_transaction_date;
+
+CREATE INDEX IF NOT EXISTS idx_purchase_transaction_date
+    ON purchase (transaction_date, id) INCLUDE (description, purchase_amount);
+
+-- Selective description prefixes seek here first; the pattern operator class makes LIKE 'abc%'
+-- usable as an index range whatever the database collation.
+CREATE INDEX IF NOT EXISTS idx_purchase_description_prefix
+    ON purchase (description varchar_pattern_ops, transaction_date, id);
+
+-- Narrow amount ranges seek here first.
+CREATE INDEX IF NOT EXISTS idx_purchase_amount
+    ON purchase (purchase_amount, transaction_date, id);
@@ -0,0 +1,95 @@
+-- Partition purchase by month of transaction_date: date range scans only read the months they
+-- cover, each month is vacuumed on its own, and old months can be detached instead of deleted.
+-- The primary key has to include the partition key; lookups by id alone still use it, probing
+-- each partition's index.
+ALTER TABLE purchase RENAME TO purchase_unpartitioned;
+ALTER TABLE purchase_unpartitioned RENAME CONSTRAINT pk_purchase TO pk_purchase_unpartitioned;
+
+DROP INDEX IF EXISTS idx_purchase_transaction_date;
+DROP INDEX IF EXISTS idx_purchase_description_prefix;
+DROP INDEX IF EXISTS idx_purchase_amount;
+DROP INDEX IF EXISTS idx_purchase_created_at;
+
+CREATE TABLE purchase
+(
+    id               UUID           NOT NULL,
+    created_at       TIMESTAMP WITHOUT TIME ZONE,
+    created_by       VARCHAR(255),
+    updated_at       TIMESTAMP WITHOUT TIME ZONE,
+    updated_by       VARCHAR(255),
+    description      VARCHAR(50)    NOT NULL,
+    transaction_date date           NOT NULL,
+    purchase_amount  DECIMAL(19, 2) NOT NULL,
+    CONSTRAINT pk_purchase PRIMARY KEY (id, transaction_date)
+) PARTITION BY RANGE (transaction_date);
+
+-- Catches purchases of months without a partition yet, such as backfills older than the first month
+CREATE TABLE purchase_default PARTITION OF purchase DEFAULT;
+
+CREATE INDEX idx_purchase_transaction_date
+    ON purchase (transaction_date, id) INCLUDE (description, purchase_amount);
+CREATE INDEX idx_purchase_description_prefix
+    ON purchase (description varchar_pattern_ops, transaction_date, id);
+CREATE INDEX idx_purchase_amount
+    ON purchase (purchase_amount, transaction_date, id);
+CREATE INDEX idx_purchase_created_at ON purchase (created_at);
+
+-- Old partitions are moved here by the retention policy when they are archived rather than dropped
+CREATE SCHEMA IF NOT EXISTS purchase_archive;
+
+-- Creates the purchase_pYYYY_MM partition of a month, moving in the rows the default partition
+-- already holds for it. Returns false when the partition exists.
+CREATE OR REPLACE FUNCTION create_purchase_partition(target_month date) RETURNS boolean
+    LANGUAGE plpgsql AS
+$$
+DECLARE
+    start_date     date := date_trunc('month', target_month)::date;
+    end_date       date := (date_trunc('month', target_month) + INTERVAL '1 month')::date;
+    partition_name text := 'purchase_p' || to_char(target_month, 'YYYY_MM');
+BEGIN
+    IF to_regclass(partition_name) IS NOT NULL THEN
+        RETURN false;
+    END IF;
+    EXECUTE format('CREATE TABLE %I (LIKE purchase INCLUDING DEFAULTS INCLUDING CONSTRAINTS)', partition_name);
+    -- Matching check constraint: the attach trusts it instead of scanning the new table
+    EXECUTE format('ALTER TABLE %I ADD CONSTRAINT %I CHECK (transaction_date >= %L AND transaction_date < %L)',
+                   partition_name, partition_name || '_range', start_date, end_date);
+    EXECUTE format('WITH moved AS (DELETE FROM purchase_default WHERE transaction_date >= %L AND transaction_date < %L RETURNING *) '
+                       || 'INSERT INTO %I SELECT * FROM moved', start_date, end_date, partition_name);
+    EXECUTE format('ALTER TABLE purchase ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+                   partition_name, start_date, end_date);
+    EXECUTE format('ALTER TABLE %I DROP CONSTRAINT %I', partition_name, partition_name || '_range');
+    RETURN true;
+END;
+$$;
+
+-- Creates the missing monthly partitions from the month of from_date to the month of until_date
+-- and returns how many were created.
+CREATE OR REPLACE FUNCTION create_purchase_partitions(from_date date, until_date date) RETURNS integer
+    LANGUAGE plpgsql AS
+$$
+DECLARE
+    next_month date := date_trunc('month', from_date)::date;
+    created    integer := 0;
+BEGIN
+    WHILE next_month <= until_date LOOP
+        IF create_purchase_partition(next_month) THEN
+            created := created + 1;
+        END IF;
+        next_month := (next_month + INTERVAL '1 month')::date;
+    END LOOP;
+    RETURN created;
+END;
+$$;
+
+-- Months already stored, up to three months ahead; the application keeps creating months ahead
+SELECT create_purchase_partitions(
+               coalesce((SELECT min(transaction_date) FROM purchase_unpartitioned), current_date),
+               (current_date + INTERVAL '3 months')::date);
+
+INSERT INTO purchase (id, created_at, created_by, updated_at, updated_by, description, transaction_date,
+                      purchase_amount)
+SELECT id, created_at, created_by, updated_at, updated_by, description, transaction_date, purchase_amount
+FROM purchase_unpartitioned;
+
+DROP TABLE purchase_unpartitioned;
@@ -0,0 +1,3 @@
+-- Bumped by every sync that stores rates, so a node that missed the cross-node notification of a
+-- sync can tell its rates are stale once it reconnects
+ALTER TABLE exchange_rate_sync_state ADD COLUMN rates_version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,31 @@
+-- A purchase_pYYYY_MM table only counts as the month's partition while it is attached to purchase.
+-- One left detached, such as by an archive interrupted between its steps before they shared a
+-- transaction, is attached again with its rows instead of leaving the month in the default partition.
+CREATE OR REPLACE FUNCTION create_purchase_partition(target_month date) RETURNS boolean
+    LANGUAGE plpgsql AS
+$$
+DECLARE
+    start_date     date := date_trunc('month', target_month)::date;
+    end_date       date := (date_trunc('month', target_month) + INTERVAL '1 month')::date;
+    partition_name text := 'purchase_p' || to_char(target_month, 'YYYY_MM');
+BEGIN
+    IF EXISTS (SELECT 1
+               FROM pg_inherits
+               WHERE inhparent = 'purchase'::regclass
+                 AND inhrelid = to_regclass(partition_name)) THEN
+        RETURN false;
+    END IF;
+    IF to_regclass(partition_name) IS NULL THEN
+        EXECUTE format('CREATE TABLE %I (LIKE purchase INCLUDING DEFAULTS INCLUDING CONSTRAINTS)', partition_name);
+    END IF;
+    -- Matching check constraint: the attach trusts it instead of scanning the new table
+    EXECUTE format('ALTER TABLE %I ADD CONSTRAINT %I CHECK (transaction_date >= %L AND transaction_date < %L)',
+                   partition_name, partition_name || '_range', start_date, end_date);
+    EXECUTE format('WITH moved AS (DELETE FROM purchase_default WHERE transaction_date >= %L AND transaction_date < %L RETURNING *) '
+                       || 'INSERT INTO %I SELECT * FROM moved', start_date, end_date, partition_name);
+    EXECUTE format('ALTER TABLE purchase ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+                   partition_name, start_date, end_date);
+    EXECUTE format('ALTER TABLE %I DROP CONSTRAINT %I', partition_name, partition_name || '_range');
+    RETURN true;
+END;
+$$;
@@ -0,0 +1,281 @@
+package com.github.jvalsesia.pcms;
+
+import com.github.jvalsesia.pcms.infrastructure.database.id.UuidV7;
+import com.github.jvalsesia.pcms.infrastructure.database.repository.PurchaseJdbcRepository;
+import com.github.jvalsesia.pcms.infrastructure.database.repository.PurchaseJdbcRepository.PurchaseRow;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Serves the same conversion load with Tomcat's platform thread pool and with virtual threads,
+ * and compares throughput and p99 latency. Every conversion reads its purchase from PostgreSQL
+ * (purchase cache off) and its rate from a local Treasury stub answering after
+ * {@code TREASURY_LATENCY} (rate cache off), so each request blocks on both downstreams.
+ * {@code CLIENTS} closed-loop clients send requests with a signed token. The Treasury bulkhead is
+ * opened up to the client count, so what is compared is the serving threads rather than load
+ * shedding; 503s are reported anyway. Not picked up by the default test run; start it with
+ * {@code ./mvnw test -Dtest=ServingThreadsBenchmark} (needs Docker).
+ */
+@Testcontainers
+class ServingThreadsBenchmark {
+
+    private static final int CLIENTS = 1000;
+    private static final int PURCHASES = 1000;
+    private static final Duration TREASURY_LATENCY = Duration.ofMillis(50);
+    private static final Duration WARMUP = Duration.ofSeconds(10);
+    private static final Duration MEASURED = Duration.ofSeconds(30);
+
+    private static final String RATE_BODY = """
+            {"data":[{"effective_date":"2024-03-31","exchange_rate":"4.977"}],"meta":{"total-pages":1}}
+            """;
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>(DockerImageName.parse("postgres:latest"));
+
+    private static HttpServer stub;
+    private static String token;
+    private static final List<UUID> ids = new ArrayList<>();
+
+    // Stands for both the Treasury API and the authorization server's key set
+    @BeforeAll
+    static void startStub() throws IOException, JOSEException {
+        RSAKey key = new RSAKeyGenerator(2048).keyID("benchmark").generate();
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).build(),
+                new JWTClaimsSet.Builder()
+                        .subject("benchmark")
+                        .claim("scope", "purchase")
+                        .expirationTime(Date.from(Instant.now().plus(Duration.ofHours(1))))
+                        .build());
+        jwt.sign(new RSASSASigner(key));
+        token = jwt.serialize();
+        String keySet = new JWKSet(key.toPublicJWK()).toString();
+
+        stub = HttpServer.create(new InetSocketAddress("localhost", 0), CLIENTS * 2);
+        stub.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        stub.createContext("/.well-known/jwks.json", exchange -> respond(exchange, keySet));
+        stub.createContext("/rates", exchange -> {
+            try {
+                Thread.sleep(TREASURY_LATENCY);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(exchange, RATE_BODY);
+        });
+        stub.start();
+    }
+
+    @AfterAll
+    static void stopStub() {
+        stub.stop(0);
+    }
+
+    @Test
+    void virtualThreadsServeMoreConversionsThanThePlatformPool() throws Exception {
+        Result platform = run(false);
+        Result virtual = run(true);
+
+        System.out.printf("%-9s %12s %10s %10s %8s %8s%n", "threads", "requests/s", "p50 ms", "p99 ms", "503s", "errors");
+        print("platform", platform);
+        print("virtual", virtual);
+
+        assertThat(virtual.requestsPerSecond()).isGreaterThan(platform.requestsPerSecond());
+    }
+
+    private Result run(boolean virtualThreads) throws Exception {
+        try (ConfigurableApplicationContext application = new SpringApplicationBuilder(PurchaseConverterMsApplication.class)
+                .run(arguments(virtualThreads))) {
+            if (ids.isEmpty()) {
+                seed(application.getBean(PurchaseJdbcRepository.class));
+            }
+            int port = ((WebServerApplicationContext) application).getWebServer().getPort();
+            load(port, WARMUP);
+            return load(port, MEASURED);
+        }
+    }
+
+    // Command line arguments, since default properties would lose to application.yml
+    private static String[] arguments(boolean virtualThreads) {
+        int stubPort = stub.getAddress().getPort();
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("spring.threads.virtual.enabled", virtualThreads);
+        properties.put("server.port", 0);
+        properties.put("server.ssl.enabled", false);
+        properties.put("spring.docker.compose.enabled", false);
+        properties.put("spring.datasource.url", POSTGRES.getJdbcUrl());
+        properties.put("spring.datasource.username", POSTGRES.getUsername());
+        properties.put("spring.datasource.password", POSTGRES.getPassword());
+        properties.put("spring.datasource.driver-class-name", "org.postgresql.Driver");
+        properties.put("spring.datasource.hikari.maximum-pool-size", 10);
+        properties.put("spring.jpa.database-platform", "org.hibernate.dialect.PostgreSQLDialect");
+        properties.put("spring.jpa.hibernate.ddl-auto", "validate");
+        properties.put("spring.flyway.enabled", true);
+        properties.put("spring.flyway.locations", "classpath:migration");
+        properties.put("issuer.uri.protocol", "http");
+        properties.put("issuer.uri.host", "localhost");
+        properties.put("issuer.uri.port", stubPort);
+        properties.put("exchange-rate.provider", "treasury");
+        properties.put("exchange-rate.sync.enabled", false);
+        properties.put("exchange-rate.snapshot.enabled", false);
+        properties.put("treasury.api.scheme", "http");
+        properties.put("treasury.api.host", "localhost");
+        properties.put("treasury.api.port", stubPort);
+        properties.put("treasury.api.path", "/rates");
+        properties.put("treasury.cache.maximum-size", 0);
+        properties.put("treasury.http.max-connections", CLIENTS);
+        properties.put("treasury.http.max-connections-per-route", CLIENTS);
+        properties.put("treasury.http.bulkhead.max-concurrent-calls", CLIENTS);
+        properties.put("purchase.cache.enabled", false);
+        properties.put("cache-invalidation.enabled", false);
+        properties.put("logging.level.com.github.jvalsesia.pcms", "ERROR");
+        return properties.entrySet().stream()
+                .map(property -> "--" + property.getKey() + "=" + property.getValue())
+                .toArray(String[]::new);
+    }
+
+    private static void seed(PurchaseJdbcRepository purchaseJdbcRepository) {
+        List<PurchaseRow> rows = new ArrayList<>(PURCHASES);
+        for (int i = 0; i < PURCHASES; i++) {
+            UUID id = UuidV7.next();
+            ids.add(id);
+            // One date per purchase, so concurrent lookups are not coalesced into one Treasury request
+            rows.add(new PurchaseRow(id, "Benchmark purchase " + i, LocalDate.of(2022, 1, 1).plusDays(i),
+                    new BigDecimal("42.00")));
+        }
+        purchaseJdbcRepository.insertAll(rows);
+    }
+
+    private static Result load(int port, Duration duration) throws Exception {
+        List<Future<Client>> clients = new ArrayList<>(CLIENTS);
+        try (HttpClient http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+             ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            long deadline = System.nanoTime() + duration.toNanos();
+            for (int i = 0; i < CLIENTS; i++) {
+                clients.add(executor.submit(() -> client(http, port, deadline)));
+            }
+
+            List<Long> latencies = new ArrayList<>();
+            long ok = 0;
+            long shed = 0;
+            long failed = 0;
+            for (Future<Client> future : clients) {
+                Client client = future.get();
+                latencies.addAll(client.latencies());
+                ok += client.ok();
+                shed += client.shed();
+                failed += client.failed();
+            }
+            latencies.sort(null);
+            return new Result(ok / (duration.toNanos() / 1e9), percentile(latencies, 0.50), percentile(latencies, 0.99),
+                    shed, failed);
+        }
+    }
+
+    private static Client client(HttpClient http, int port, long deadline) {
+        List<Long> latencies = new ArrayList<>();
+        long ok = 0;
+        long shed = 0;
+        long failed = 0;
+        while (System.nanoTime() < deadline) {
+            UUID id = ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+            HttpRequest request = HttpRequest.newBuilder(
+                            URI.create("http://localhost:" + port + "/api/purchases/" + id + "/convert?country=Brazil"))
+                    .header("Authorization", "Bearer " + token)
+                    .build();
+            long start = System.nanoTime();
+            try {
+                int status = http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                latencies.add(System.nanoTime() - start);
+                if (status == 200) {
+                    ok++;
+                } else if (status == 503) {
+                    shed++;
+                } else {
+                    failed++;
+                }
+            } catch (IOException e) {
+                failed++;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return new Client(latencies, ok, shed, failed);
+    }
+
+    private static double percentile(List<Long> sortedNanos, double percentile) {
+        if (sortedNanos.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sortedNanos.size()) - 1;
+        return sortedNanos.get(Math.max(0, index)) / 1e6;
+    }
+
+    private static void print(String threads, Result result) {
+        System.out.printf("%-9s %12.0f %10.1f %10.1f %8d %8d%n", threads, result.requestsPerSecond(),
+                result.p50Millis(), result.p99Millis(), result.shed(), result.failed());
+    }
+
+    private static void respond(HttpExchange exchange, String body) throws IOException {
+        try (exchange) {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    private record Client(List<Long> latencies, long ok, long shed, long failed) {
+    }
+
+    private record Result(double requestsPerSecond, double p50Millis, double p99Millis, long shed, long failed) {
+    }
+}
@@ -1,10 +1,15 @@
 package com.github.jvalsesia.pcms.api.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.jvalsesia.pcms.api.dto.BatchConversionRequest;
 import com.github.jvalsesia.pcms.api.dto.PurchaseRequest;
+import com.github.jvalsesia.pcms.infrastructure.database.entity.ExchangeRate;
 import com.github.jvalsesia.pcms.infrastructure.database.entity.Purchase;
+import com.github.jvalsesia.pcms.infrastructure.database.repository.ExchangeRateRepository;
 import com.github.jvalsesia.pcms.infrastructure.database.repository.PurchaseRepository;
+import com.github.jvalsesia.pcms.infrastructure.rate.IndexedExchangeRateProvider;
 import com.github.jvalsesia.pcms.infrastructure.treasury.TreasuryApiClient;
+import com.jayway.jsonpath.JsonPath;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,25 +19,32 @@ import org.springframework.http.MediaType;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
-import java.util.Optional;
+import java.util.List;
 import java.util.UUID;
 
-import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.eq;
-import static org.mockito.Mockito.when;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.hamcrest.Matchers.startsWith;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
 @AutoConfigureMockMvc
 class PurchaseControllerIntegrationTest {
 
+    // A valid token that was not granted the purchase scope
+    private static final SimpleGrantedAuthority OTHER_SCOPE = new SimpleGrantedAuthority("SCOPE_profile");
+
     @Autowired
     private MockMvc mockMvc;
 
@@ -42,12 +54,20 @@ class PurchaseControllerIntegrationTest {
     @Autowired
     private PurchaseRepository purchaseRepository;
 
+    @Autowired
+    private ExchangeRateRepository exchangeRateRepository;
+
+    @Autowired
+    private IndexedExchangeRateProvider indexedExchangeRateProvider;
+
+    // Keeps the startup exchange rate sync away from the real Treasury API
     @MockitoBean
     private TreasuryApiClient treasuryApiClient;
 
     @BeforeEach
     void setUp() {
         purchaseRepository.deleteAll();
+        exchangeRateRepository.deleteAll();
     }
 
     @Test
@@ -106,8 +126,7 @@ class PurchaseControllerIntegrationTest {
         purchase.setPurchaseAmount(new BigDecimal("100.00"));
         Purchase saved = purchaseRepository.save(purchase);
 
-        when(treasuryApiClient.getExchangeRatesFiltered(eq("Brazil"), any(LocalDate.class)))
-                .thenReturn(Optional.of(new BigDecimal("5.0")));
+        saveExchangeRate("Brazil", LocalDate.of(2023, 12, 31), new BigDecimal("5.0"));
 
         mockMvc.perform(get("/api/purchases/{id}/convert", saved.getId())
                         .param("country", "Brazil")
@@ -117,7 +136,8 @@ class PurchaseControllerIntegrationTest {
                 .andExpect(jsonPath("$.originalAmount").value(100.00))
                 .andExpect(jsonPath("$.exchangeRate").value(5.0))
                 .andExpect(jsonPath("$.convertedAmount").value(500.00))
-                .andExpect(jsonPath("$.targetCurrency").value("Brazil"));
+                .andExpect(jsonPath("$.targetCurrency").value("Brazil"))
+                .andExpect(jsonPath("$.staleExchangeRate").value(false));
     }
 
     @Test
@@ -139,8 +159,8 @@ class PurchaseControllerIntegrationTest {
         purchase.setPurchaseAmount(new BigDecimal("100.00"));
         Purchase saved = purchaseRepository.save(purchase);
 
-        when(treasuryApiClient.getExchangeRatesFiltered(eq("Brazil"), any(LocalDate.class)))
-                .thenReturn(Optional.empty());
+        // Older than 6 months before the transaction date
+        saveExchangeRate("Brazil", LocalDate.of(2023, 6, 30), new BigDecimal("5.0"));
 
         mockMvc.perform(get("/api/purchases/{id}/convert", saved.getId())
                         .param("country", "Brazil")
@@ -148,4 +168,366 @@ class PurchaseControllerIntegrationTest {
                 .andExpect(status().isBadRequest())
                 .andExpect(jsonPath("$.error").value("Currency Conversion Error"));
     }
+
+    @Test
+    void convertPurchases_MixedItems_ReturnsPerItemResults() throws Exception {
+        Purchase purchase = new Purchase();
+        purchase.setDescription("Test Purchase");
+        purchase.setTransactionDate(LocalDate.of(2024, 1, 15));
+        purchase.setPurchaseAmount(new BigDecimal("100.00"));
+        Purchase saved = purchaseRepository.save(purchase);
+        UUID missingId = UUID.randomUUID();
+
+        saveExchangeRate("Brazil", LocalDate.of(2023, 12, 31), new BigDecimal("5.0"));
+
+        BatchConversionRequest request = new BatchConversionRequest();
+        request.setItems(List.of(
+                new BatchConversionRequest.Item(saved.getId(), "Brazil"),
+                new BatchConversionRequest.Item(missingId, "Brazil"),
+                new BatchConversionRequest.Item(saved.getId(), "Canada")));
+
+        mockMvc.perform(post("/api/purchases/convert/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request))
+                        .with(jwt().authorities(new SimpleGrantedAuthority("SCOPE_purchase"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.converted").value(1))
+                .andExpect(jsonPath("$.failed").value(2))
+                .andExpect(jsonPath("$.results[0].status").value(200))
+                .andExpect(jsonPath("$.results[0].conversion.convertedAmount").value(500.00))
+                .andExpect(jsonPath("$.results[1].purchaseId").value(missingId.toString()))
+                .andExpect(jsonPath("$.results[1].status").value(404))
+                .andExpect(jsonPath("$.results[1].error").value("Not Found"))
+                .andExpect(jsonPath("$.results[2].status").value(400))
+                .andExpect(jsonPath("$.results[2].error").value("Currency Conversion Error"));
+    }
+
+    @Test
+    void getPurchaseInCurrencies_ReturnsOneResultPerCountry() throws Exception {
+        Purchase purchase = new Purchase();
+        purchase.setDescription("Test Purchase");
+        purchase.setTransactionDate(LocalDate.of(2024, 1, 15));
+        purchase.setPurchaseAmount(new BigDecimal("100.00"));
+        Purchase saved = purchaseRepository.save(purchase);
+
+        saveExchangeRate("Brazil", LocalDate.of(2023, 12, 31), new BigDecimal("5.0"));
+
+        mockMvc.perform(get("/api/purchases/{id}/convert", saved.getId())
+                        .param("countries", "Brazil,Canada")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("SCOPE_purchase"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.converted").value(1))
+                .andExpect(jsonPath("$.results[0].country").value("Brazil"))
+                .andExpect(jsonPath("$.results[0].conversion.convertedAmount").value(500.00))
+                .andExpect(jsonPath("$.results[1].country").value("Canada"))
+                .andExpect(jsonPath("$.results[1].status").value(400));
+    }
+
+    @Test
+    void createPurchase_RetriedWithIdempotencyKey_ReplaysTheOriginalPurchase() throws Exception {
+        PurchaseRequest request = new PurchaseRequest();
+        request.setDescription("Retried purchase");
+        request.setTransactionDate(LocalDate.of(2024, 1, 15));
+        request.setPurchaseAmount(new BigDecimal("42.00"));
+        String body = objectMapper.writeValueAsString(request);
+
+        String id = JsonPath.read(mockMvc.perform(post("/api/purchases")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header("Idempotency-Key", "order-1")
+                        .content(body)
+                        .with(jwt().authorities(new SimpleGrantedAuthority("SCOPE_purchase"))))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Idempotent-Replayed", "false"))
+                .andReturn().getResponse().getContentAsString(), "$.id");
+
+        mockMvc.perform(post("/api/purchases")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header("Idempotency-Key", "order-1")
+                        .content(body)
+                        .with(jwt().authorities(new SimpleGrantedAuthority("SCOPE_purchase"))))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Idempotent-Replayed", "true"))
+                .andExpect(jsonPath("$.id").value(id));
+
+        assertThat(purchaseRepository.count()).isEqualTo(1);
+    }
+
+    @Test
+    void createPurchase_IdempotencyKeyReusedForAnotherPurchase_ReturnsUnprocessableEntity() throws Exception {
+        PurchaseRequest request = new PurchaseRequest();
+        request.setDescription("First purchase");
+        request.setTransactionDate(LocalDate.of(2024, 1, 15));
+        request.setPurchaseAmount(new BigDecimal("42.00"));
+
+        mockMvc.perform(post("/api/purchases")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header("Idempotency-Key", "order-2")
+                        .content(objectMapper.writeValueAsString(request))
+                        .with(jwt().authorities(new SimpleGrantedAuthority("SCOPE_purchase"))))
+                .andExpect(status().isCreated());
+
+        request.setPurchaseAmount(new BigDecimal("43.00"));
+        mockMvc.perform(post("/api/purchases")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header("Idempotency-Key", "order-2")
+                        .content(objectMapper.writeValueAsString(request))
+                        .with(jwt().authorities(new SimpleGrantedAuthority("SCOPE_purchase"))))
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(jsonPath("$.error").value("Unprocessable Entity"));
+
+        assertThat(purchaseRepository.count()).isEqualTo(1);
+    }
+
+    @Test
+    void createPurchases_JsonArray_StoresValidRowsAndReportsRejectedOnes() throws Exception {
+        String body = """
+                [
+                  {"description": "Laptop", "transactionDate": "2024-01-15", "purchaseAmount": 1000.00},
+                  {"description": "", "transactionDate": "2024-01-15", "purchaseAmount": 10.00},
+                  {"description": "Mouse", "transactionDate": "not-a-date", "purchaseAmount": 25.00},
+                  {"description": "Keyboard", "transactionDate": "2024-01-16", "purchaseAmount": 75.555}
+                ]
+                """;
+
+        mockMvc.perform(post("/api/purchases/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body)
+                        .with(jwt().authorities(new SimpleGrantedAuthority("SCOPE_purchase"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.received").value(4))
+                .andExpect(jsonPath("$.inserted").value(2))
+                .andExpect(jsonPath("$.rejected").value(2))
+                .andExpect(jsonPath("$.errors[0].row").value(2))
+                .andExpect(jsonPath("$.errors[0].message").value("description: Description is required"))
+                .andExpect(jsonPath("$.errors[1].row").value(3));
+
+        assertThat(purchaseRepository.findAll())
+                .extracting(Purchase::getDescription, purchase -> purchase.getPurchaseAmount().toPlainString())
+                .containsExactlyInAnyOrder(tuple("Laptop", "1000.00"), tuple("Keyboard", "75.56"));
+    }
+
+    @Test
+    void createPurchases_Ndjson_StoresEveryLine() throws Exception {
+        String body = """
+                {"description": "Coffee", "transactionDate": "2024-01-15", "purchaseAmount": 4.50}
+                {"description": "Tea", "transactionDate": "2024-01-16", "purchaseAmount": 3.20}
+                """;
+
+        mockMvc.perform(post("/api/purchases/bulk")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(body)
+                        .with(jwt().authorities(new SimpleGrantedAuthority("SCOPE_purchase"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.received").value(2))
+                .andExpect(jsonPath("$.inserted").value(2))
+                .andExpect(jsonPath("$.rejected").value(0));
+
+        assertThat(purchaseRepository.count()).isEqualTo(2);
+    }
+
+    @Test
+    void searchPurchases_FollowsTheCursorToTheLastPage() throws Exception {
+        savePurchase("Book", LocalDate.of(2024, 1, 1), "15.00");
+        savePurchase("Book stand", LocalDate.of(2024, 1, 2), "25.00");
+        savePurchase("Bookmark", LocalDate.of(2024, 1, 3), "2.00");
+        savePurchase("Lamp", LocalDate.of(2024, 1, 4), "40.00");
+
+        String cursor = JsonPath.read(mockMvc.perform(get("/api/purchases")
+                        .param("description", "Book")
+                        .param("limit", "2")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("SCOPE_purchase"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(2))
+                .andExpect(jsonPath("$.items[0].description").value("Book"))
+                .andExpect(jsonPath("$.items[1].description").value("Book stand"))
+                .andReturn().getResponse().getContentAsString(), "$.nextCursor");
+
+        mockMvc.perform(get("/api/purchases")
+                        .param("description", "Book")
+                        .param("limit", "2")
+                        .param("cursor", cursor)
+                        .with(jwt().authorities(new SimpleGrantedAuthority("SCOPE_purchase"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(1))
+                .andExpect(jsonPath("$.items[0].description").value("Bookmark"))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    void searchPurchases_InvalidCursor_ReturnsBadRequest() throws Exception {
+        mockMvc.perform(get("/api/purchases")
+                        .param("cursor", "not-a-cursor")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("SCOPE_purchase"))))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Bad Request"));
+    }
+
+    @Test
+    void reportPurchases_Monthly_TotalsConvertedAmountsPerMonth() throws Exception {
+        savePurchase("January 1", LocalDate.of(2024, 1, 10), "0.01");
+        savePurchase("January 2", LocalDate.of(2024, 1, 20), "0.01");
+        savePurchase("January 3", LocalDate.of(2024, 1, 31), "0.01");
+        savePurchase("March", LocalDate.of(2024, 3, 5), "10.00");
+
+        saveExchangeRate("Brazil", LocalDate.of(2023, 12, 31), new BigDecimal("1.5"));
+
+        mockMvc.perform(get("/api/purchases/report")
+                        .param("from", "2024-01-01")
+                        .param("to", "2024-12-31")
+                        .param("country", "Brazil")
+                        .param("granularity", "month")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("SCOPE_purchase"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.buckets.length()").value(2))
+                .andExpect(jsonPath("$.buckets[0].start").value("2024-01-01"))
+                .andExpect(jsonPath("$.buckets[0].purchaseCount").value(3))
+                .andExpect(jsonPath("$.buckets[0].totalAmount").value(0.03))
+                // Matches the sum of the single conversions: 0.02 each
+                .andExpect(jsonPath("$.buckets[0].convertedAmount").value(0.06))
+                .andExpect(jsonPath("$.buckets[1].start").value("2024-03-01"))
+                .andExpect(jsonPath("$.buckets[1].convertedAmount").value(15.00));
+
+        mockMvc.perform(get("/api/purchases/report")
+                        .param("from", "2024-01-01")
+                        .param("to", "2024-01-31")
+                        .param("country", "Brazil")
+                        .param("rounding", "bucket")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("SCOPE_purchase"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.buckets[0].convertedAmount").value(0.05));
+    }
+
+    @Test
+    void reportPurchases_UnknownGranularity_ReturnsBadRequest() throws Exception {
+        mockMvc.perform(get("/api/purchases/report")
+                        .param("from", "2024-01-01")
+                        .param("to", "2024-12-31")
+                        .param("country", "Brazil")
+                        .param("granularity", "hour")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("SCOPE_purchase"))))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Bad Request"));
+    }
+
+    @Test
+    void exportPurchases_Csv_StreamsConvertedRowsInDateOrder() throws Exception {
+        savePurchase("Later, with comma", LocalDate.of(2024, 2, 10), "20.00");
+        savePurchase("Earlier", LocalDate.of(2024, 1, 15), "100.00");
+        savePurchase("Out of range", LocalDate.of(2024, 3, 1), "1.00");
+
+        saveExchangeRate("Brazil", LocalDate.of(2023, 12, 31), new BigDecimal("5.0"));
+
+        MvcResult result = mockMvc.perform(get("/api/purchases/export")
+                        .param("from", "2024-01-01")
+                        .param("to", "2024-02-29")
+                        .param("country", "Brazil")
+                        .param("format", "csv")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("SCOPE_purchase"))))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", startsWith("text/csv")))
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(body.lines().toList()).hasSize(3);
+        assertThat(body.lines().skip(1).toList()).satisfiesExactly(
+                line -> assertThat(line).contains(",Earlier,2024-01-15,100.00,5.0,500.00,Brazil,"),
+                line -> assertThat(line).contains(",\"Later, with comma\",2024-02-10,20.00,5.0,100.00,Brazil,"));
+    }
+
+    @Test
+    void exportPurchases_InvalidRange_ReturnsBadRequest() throws Exception {
+        mockMvc.perform(get("/api/purchases/export")
+                        .param("from", "2024-02-01")
+                        .param("to", "2024-01-01")
+                        .param("country", "Brazil")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("SCOPE_purchase"))))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Bad Request"));
+    }
+
+    @Test
+    void convertPurchases_EmptyItems_ReturnsBadRequest() throws Exception {
+        mockMvc.perform(post("/api/purchases/convert/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"items\":[]}")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("SCOPE_purchase"))))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Validation Error"));
+    }
+
+    @Test
+    void ingestPurchases_TokenWithoutPurchaseScope_ReturnsForbidden() throws Exception {
+        mockMvc.perform(post("/api/purchases/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"description\": \"Laptop\", \"transactionDate\": \"2024-01-15\", \"purchaseAmount\": 10.00}]")
+                        .with(jwt().authorities(OTHER_SCOPE)))
+                .andExpect(status().isForbidden());
+
+        assertThat(purchaseRepository.count()).isZero();
+    }
+
+    @Test
+    void listPurchases_TokenWithoutPurchaseScope_ReturnsForbidden() throws Exception {
+        mockMvc.perform(get("/api/purchases")
+                        .with(jwt().authorities(OTHER_SCOPE)))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void exportPurchases_TokenWithoutPurchaseScope_ReturnsForbidden() throws Exception {
+        mockMvc.perform(get("/api/purchases/export")
+                        .param("from", "2024-01-01")
+                        .param("to", "2024-01-31")
+                        .param("country", "Brazil")
+                        .with(jwt().authorities(OTHER_SCOPE)))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void reportPurchases_TokenWithoutPurchaseScope_ReturnsForbidden() throws Exception {
+        mockMvc.perform(get("/api/purchases/report")
+                        .param("from", "2024-01-01")
+                        .param("to", "2024-01-31")
+                        .param("country", "Brazil")
+                        .with(jwt().authorities(OTHER_SCOPE)))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void convertPurchases_TokenWithoutPurchaseScope_ReturnsForbidden() throws Exception {
+        mockMvc.perform(post("/api/purchases/convert/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"items\":[]}")
+                        .with(jwt().authorities(OTHER_SCOPE)))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void convertPurchase_TokenWithoutPurchaseScope_ReturnsForbidden() throws Exception {
+        mockMvc.perform(get("/api/purchases/" + UUID.randomUUID() + "/convert")
+                        .param("country", "Brazil")
+                        .with(jwt().authorities(OTHER_SCOPE)))
+                .andExpect(status().isForbidden());
+    }
+
+    private void savePurchase(String description, LocalDate transactionDate, String amount) {
+        Purchase purchase = new Purchase();
+        purchase.setDescription(description);
+        purchase.setTransactionDate(transactionDate);
+        purchase.setPurchaseAmount(new BigDecimal(amount));
+        purchaseRepository.save(purchase);
+    }
+
+    private void saveExchangeRate(String country, LocalDate effectiveDate, BigDecimal rate) {
+        ExchangeRate exchangeRate = new ExchangeRate();
+        exchangeRate.setCountry(country);
+        exchangeRate.setCurrency("Real");
+        exchangeRate.setEffectiveDate(effectiveDate);
+        exchangeRate.setExchangeRate(rate);
+        exchangeRateRepository.save(exchangeRate);
+        indexedExchangeRateProvider.refresh();
+    }
 }
\ No newline at end of file
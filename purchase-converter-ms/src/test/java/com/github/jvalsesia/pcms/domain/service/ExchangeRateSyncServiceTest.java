@@ -0,0 +1,190 @@
+package com.github.jvalsesia.pcms.domain.service;
+
+import com.github.jvalsesia.pcms.infrastructure.database.entity.ExchangeRateSyncState;
+import com.github.jvalsesia.pcms.infrastructure.database.repository.ExchangeRateJdbcRepository;
+import com.github.jvalsesia.pcms.infrastructure.database.repository.ExchangeRateSyncStateRepository;
+import com.github.jvalsesia.pcms.infrastructure.treasury.TreasuryApiClient;
+import com.github.jvalsesia.pcms.infrastructure.treasury.TreasuryApiException;
+import com.github.jvalsesia.pcms.infrastructure.treasury.TreasuryApiResponse;
+import com.github.jvalsesia.pcms.infrastructure.treasury.config.ExchangeRateSyncConfiguration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ExchangeRateSyncServiceTest {
+
+    private static final LocalDate WATERMARK = LocalDate.of(2024, 3, 31);
+
+    @Mock
+    private ExchangeRateSyncStateRepository syncStateRepository;
+
+    @Mock
+    private ExchangeRateJdbcRepository exchangeRateJdbcRepository;
+
+    @Mock
+    private TreasuryApiClient treasuryApiClient;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private ExchangeRateSyncConfiguration syncConfiguration;
+
+    private ExchangeRateSyncService exchangeRateSyncService;
+
+    private final List<TreasuryApiResponse.ExchangeRateData> upserted = Collections.synchronizedList(new ArrayList<>());
+
+    // Stands for the exchange_rate table: an upsert only writes a rate it does not hold yet
+    private final Map<String, BigDecimal> table = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        syncConfiguration = new ExchangeRateSyncConfiguration();
+        syncConfiguration.setBatchSize(2);
+        exchangeRateSyncService = new ExchangeRateSyncService(syncStateRepository, exchangeRateJdbcRepository,
+                treasuryApiClient, syncConfiguration, eventPublisher);
+        lenient().when(exchangeRateJdbcRepository.upsertAll(any())).thenAnswer(invocation -> {
+            List<TreasuryApiResponse.ExchangeRateData> rates = invocation.getArgument(0);
+            upserted.addAll(rates);
+            int written = 0;
+            for (TreasuryApiResponse.ExchangeRateData rate : rates) {
+                String key = rate.getCountry() + "|" + rate.getCurrency() + "|" + rate.getEffectiveDate();
+                if (!rate.getExchangeRate().equals(table.put(key, rate.getExchangeRate()))) {
+                    written++;
+                }
+            }
+            return written;
+        });
+    }
+
+    @Test
+    void synchronize_FetchesAllPagesFromWatermarkAndAdvancesIt() {
+        when(syncStateRepository.findById(ExchangeRateSyncService.SYNC_NAME))
+                .thenReturn(Optional.of(new ExchangeRateSyncState(ExchangeRateSyncService.SYNC_NAME, WATERMARK)));
+        stubPage(1, 3, rateData("Brazil", LocalDate.of(2024, 3, 31)), rateData("Canada", LocalDate.of(2024, 3, 31)),
+                rateData("Mexico", LocalDate.of(2024, 6, 30)));
+        stubPage(2, 3, rateData("Brazil", LocalDate.of(2024, 6, 30)));
+        stubPage(3, 3, rateData("Brazil", LocalDate.of(2024, 9, 30)));
+        // Another node's sync bumped the version in between
+        when(syncStateRepository.advance(ExchangeRateSyncService.SYNC_NAME, LocalDate.of(2024, 9, 30), true))
+                .thenReturn(2L);
+
+        int stored = exchangeRateSyncService.synchronize();
+
+        assertThat(stored).isEqualTo(5);
+        assertThat(upserted).hasSize(5);
+        verify(syncStateRepository, never()).save(any());
+        verify(eventPublisher).publishEvent(new ExchangeRatesUpdatedEvent(5, 2, false));
+    }
+
+    @Test
+    void synchronize_NothingNewOrCorrected_KeepsRatesVersionAndPublishesNothing() {
+        ExchangeRateSyncState syncState = new ExchangeRateSyncState(ExchangeRateSyncService.SYNC_NAME, WATERMARK);
+        when(syncStateRepository.findById(ExchangeRateSyncService.SYNC_NAME)).thenReturn(Optional.of(syncState));
+        stubPage(1, 1, rateData("Brazil", LocalDate.of(2024, 3, 31)), rateData("Canada", LocalDate.of(2024, 3, 31)));
+        when(syncStateRepository.advance(ExchangeRateSyncService.SYNC_NAME, LocalDate.of(2024, 3, 31), true))
+                .thenReturn(1L);
+        exchangeRateSyncService.synchronize();
+        clearInvocations(eventPublisher);
+
+        int stored = exchangeRateSyncService.synchronize();
+
+        assertThat(stored).isZero();
+        assertThat(upserted).hasSize(4);
+        verify(syncStateRepository).advance(ExchangeRateSyncService.SYNC_NAME, LocalDate.of(2024, 3, 31), false);
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void synchronize_NoState_StartsFromInitialDate() {
+        when(syncStateRepository.findById(ExchangeRateSyncService.SYNC_NAME)).thenReturn(Optional.empty());
+        when(treasuryApiClient.streamExchangeRatesPage(eq(syncConfiguration.getInitialDate()), eq(1), anyInt(), any()))
+                .thenReturn(1);
+
+        int stored = exchangeRateSyncService.synchronize();
+
+        assertThat(stored).isZero();
+        ArgumentCaptor<ExchangeRateSyncState> state = ArgumentCaptor.forClass(ExchangeRateSyncState.class);
+        verify(syncStateRepository).save(state.capture());
+        assertThat(state.getValue().getWatermark()).isEqualTo(syncConfiguration.getInitialDate());
+        assertThat(state.getValue().getRatesVersion()).isZero();
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void synchronize_PageFailure_KeepsWatermark() {
+        when(syncStateRepository.findById(ExchangeRateSyncService.SYNC_NAME))
+                .thenReturn(Optional.of(new ExchangeRateSyncState(ExchangeRateSyncService.SYNC_NAME, WATERMARK)));
+        stubPage(1, 2, rateData("Brazil", LocalDate.of(2024, 6, 30)));
+        when(treasuryApiClient.streamExchangeRatesPage(eq(WATERMARK), eq(2), anyInt(), any()))
+                .thenThrow(new TreasuryApiException("Treasury down"));
+
+        assertThatThrownBy(() -> exchangeRateSyncService.synchronize())
+                .isInstanceOf(TreasuryApiException.class);
+
+        verify(syncStateRepository, never()).save(any());
+        verify(syncStateRepository, never()).advance(any(), any(), anyBoolean());
+    }
+
+    @Test
+    void scheduledSync_TreasuryFailure_IsSwallowed() {
+        when(syncStateRepository.findById(ExchangeRateSyncService.SYNC_NAME)).thenReturn(Optional.empty());
+        when(treasuryApiClient.streamExchangeRatesPage(any(LocalDate.class), anyInt(), anyInt(), any()))
+                .thenThrow(new TreasuryApiException("Treasury down"));
+
+        exchangeRateSyncService.scheduledSync();
+
+        verify(syncStateRepository, never()).save(any());
+    }
+
+    @Test
+    void scheduledSync_Disabled_DoesNothing() {
+        syncConfiguration.setEnabled(false);
+
+        exchangeRateSyncService.scheduledSync();
+
+        verifyNoInteractions(treasuryApiClient, syncStateRepository, exchangeRateJdbcRepository);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void stubPage(int pageNumber, int totalPages, TreasuryApiResponse.ExchangeRateData... records) {
+        when(treasuryApiClient.streamExchangeRatesPage(eq(WATERMARK), eq(pageNumber), anyInt(), any()))
+                .thenAnswer(invocation -> {
+                    Consumer<TreasuryApiResponse.ExchangeRateData> consumer = invocation.getArgument(3);
+                    for (TreasuryApiResponse.ExchangeRateData record : records) {
+                        consumer.accept(record);
+                    }
+                    return totalPages;
+                });
+    }
+
+    private TreasuryApiResponse.ExchangeRateData rateData(String country, LocalDate date) {
+        TreasuryApiResponse.ExchangeRateData data = new TreasuryApiResponse.ExchangeRateData();
+        data.setCountry(country);
+        data.setCurrency("Currency");
+        data.setEffectiveDate(date);
+        data.setExchangeRate(new BigDecimal("5.434"));
+        return data;
+    }
+}
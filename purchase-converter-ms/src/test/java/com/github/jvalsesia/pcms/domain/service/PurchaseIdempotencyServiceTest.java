@@ -0,0 +1,131 @@
+package com.github.jvalsesia.pcms.domain.service;
+
+import com.github.jvalsesia.pcms.api.dto.PurchaseRequest;
+import com.github.jvalsesia.pcms.api.dto.PurchaseResponse;
+import com.github.jvalsesia.pcms.domain.exception.IdempotencyKeyConflictException;
+import com.github.jvalsesia.pcms.infrastructure.database.config.IdempotencyConfiguration;
+import com.github.jvalsesia.pcms.infrastructure.database.entity.IdempotencyKey;
+import com.github.jvalsesia.pcms.infrastructure.database.repository.IdempotencyKeyRepository;
+import com.github.jvalsesia.pcms.infrastructure.database.repository.PurchaseRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PurchaseIdempotencyServiceTest {
+
+    private static final Duration TTL = Duration.ofMillis(400);
+
+    @Mock
+    private PurchaseService purchaseService;
+
+    @Mock
+    private PurchaseRepository purchaseRepository;
+
+    @Mock
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private PurchaseIdempotencyService service;
+
+    @BeforeEach
+    void setUp() {
+        IdempotencyConfiguration configuration = new IdempotencyConfiguration();
+        configuration.setTtl(TTL);
+        service = new PurchaseIdempotencyService(purchaseService, purchaseRepository, idempotencyKeyRepository,
+                new TransactionTemplate(transactionManager), configuration);
+        when(purchaseService.createPurchase(any())).thenAnswer(invocation -> PurchaseResponse.builder()
+                .id(UUID.randomUUID())
+                .description("Laptop")
+                .transactionDate(LocalDate.of(2024, 1, 15))
+                .purchaseAmount(new BigDecimal("1000.00"))
+                .build());
+    }
+
+    @Test
+    void createPurchase_SameKey_ReplaysThePurchaseFromMemory() {
+        PurchaseIdempotencyService.Result first = service.createPurchase(request(), "key-1");
+        PurchaseIdempotencyService.Result second = service.createPurchase(request(), "key-1");
+
+        assertThat(second.replayed()).isTrue();
+        assertThat(second.purchase().getId()).isEqualTo(first.purchase().getId());
+        verify(purchaseService, times(1)).createPurchase(any());
+    }
+
+    @Test
+    void createPurchase_ReplayedKey_StillExpiresTtlAfterItWasStored() throws InterruptedException {
+        PurchaseIdempotencyService.Result first = service.createPurchase(request(), "key-2");
+        Thread.sleep(TTL.toMillis() * 5 / 8);
+        assertThat(service.createPurchase(request(), "key-2").replayed()).isTrue();
+        // Past the key's expiry, though not a full TTL after the replay
+        Thread.sleep(TTL.toMillis() * 5 / 8);
+
+        PurchaseIdempotencyService.Result afterExpiry = service.createPurchase(request(), "key-2");
+
+        assertThat(afterExpiry.replayed()).isFalse();
+        assertThat(afterExpiry.purchase().getId()).isNotEqualTo(first.purchase().getId());
+        verify(purchaseService, times(2)).createPurchase(any());
+    }
+
+    @Test
+    void createPurchase_LiveKeyWhosePurchaseIsGone_ReturnsConflict() {
+        // Another node stored the key for the same request first; its purchase has been retired since
+        AtomicReference<String> requestHash = new AtomicReference<>();
+        doAnswer(invocation -> {
+            requestHash.set(invocation.getArgument(1));
+            throw new DataIntegrityViolationException("Insert failed", new SQLException(
+                    "duplicate key value violates unique constraint \"pk_idempotency_key\"", "23505"));
+        }).when(idempotencyKeyRepository).insert(anyString(), anyString(), any(), any(), any());
+        when(idempotencyKeyRepository.findById("key-3")).thenAnswer(invocation -> Optional.of(new IdempotencyKey(
+                "key-3", requestHash.get(), UUID.randomUUID(), LocalDateTime.now(), LocalDateTime.now().plus(TTL))));
+
+        assertThatThrownBy(() -> service.createPurchase(request(), "key-3"))
+                .isInstanceOf(IdempotencyKeyConflictException.class)
+                .hasMessageContaining("no longer stored");
+    }
+
+    @Test
+    void createPurchase_OtherConstraintViolated_IsNotTakenForAKeyRace() {
+        DataIntegrityViolationException violation = new DataIntegrityViolationException("Insert failed",
+                new SQLException("new row violates check constraint \"chk_purchase_amount\"", "23514"));
+        doThrow(violation).when(idempotencyKeyRepository).insert(anyString(), anyString(), any(), any(), any());
+
+        assertThatThrownBy(() -> service.createPurchase(request(), "key-4")).isSameAs(violation);
+        verify(idempotencyKeyRepository, never()).findById(any());
+    }
+
+    private static PurchaseRequest request() {
+        PurchaseRequest request = new PurchaseRequest();
+        request.setDescription("Laptop");
+        request.setTransactionDate(LocalDate.of(2024, 1, 15));
+        request.setPurchaseAmount(new BigDecimal("1000.00"));
+        return request;
+    }
+}
@@ -0,0 +1,157 @@
+package com.github.jvalsesia.pcms.domain.service;
+
+import com.github.jvalsesia.pcms.api.dto.BulkIngestResponse;
+import com.github.jvalsesia.pcms.api.dto.PurchaseImportStatus;
+import com.github.jvalsesia.pcms.domain.exception.InvalidRequestException;
+import com.github.jvalsesia.pcms.infrastructure.database.config.PurchaseImportConfiguration;
+import com.github.jvalsesia.pcms.infrastructure.database.repository.PurchaseJdbcRepository;
+import com.github.jvalsesia.pcms.infrastructure.database.repository.PurchaseJdbcRepository.PurchaseRow;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PurchaseImportServiceTest {
+
+    @Mock
+    private PurchaseJdbcRepository purchaseJdbcRepository;
+
+    @TempDir
+    private Path directory;
+
+    private final PurchaseImportConfiguration configuration = new PurchaseImportConfiguration();
+    private final List<PurchaseRow> stored = new CopyOnWriteArrayList<>();
+    private PurchaseImportService service;
+
+    @BeforeEach
+    void setUp() {
+        // Tiny chunks and batches, so a few lines already spread over several threads and batches
+        configuration.setChunkSize(DataSize.ofBytes(64));
+        configuration.setBatchSize(2);
+        configuration.setThreads(3);
+        service = new PurchaseImportService(purchaseJdbcRepository, configuration);
+    }
+
+    @Test
+    void run_StoresValidRowsAndReportsInvalidOnesWithTheirLineNumber() throws IOException {
+        recordInserts();
+        Path file = write("""
+                description,transaction_date,purchase_amount
+                Desk,2024-01-05,250
+                "Chair, ""ergonomic\""",2024-01-06,180.505
+
+                Lamp,2024-13-01,20.00
+                Monitor,2024-01-07,-5
+                Keyboard,2024-01-08,49.90\r
+                Cable,2024-01-09
+                ,2024-01-10,1.00
+                Mouse,2024-01-11,abc
+                Headset,2024-01-12,75.00
+                """);
+
+        PurchaseImportStatus status = service.run(file);
+
+        assertThat(status.getState()).isEqualTo("COMPLETED");
+        assertThat(status.getRows()).isEqualTo(9);
+        assertThat(status.getInserted()).isEqualTo(4);
+        assertThat(status.getRejected()).isEqualTo(5);
+        assertThat(status.getBytesRead()).isEqualTo(status.getTotalBytes());
+        assertThat(status.getErrors()).extracting(BulkIngestResponse.RowError::getRow, BulkIngestResponse.RowError::getMessage)
+                .containsExactly(
+                        tuple(5, "transactionDate: Date must be in YYYY-MM-DD format"),
+                        tuple(6, "purchaseAmount: Purchase amount must be positive"),
+                        tuple(8, "Expected 3 columns: description,transaction_date,purchase_amount"),
+                        tuple(9, "description: Description is required"),
+                        tuple(10, "purchaseAmount: not a number"));
+        assertThat(stored).extracting(PurchaseRow::description, PurchaseRow::transactionDate, row -> row.purchaseAmount().toPlainString())
+                .containsExactlyInAnyOrder(
+                        tuple("Desk", LocalDate.of(2024, 1, 5), "250.00"),
+                        tuple("Chair, \"ergonomic\"", LocalDate.of(2024, 1, 6), "180.51"),
+                        tuple("Keyboard", LocalDate.of(2024, 1, 8), "49.90"),
+                        tuple("Headset", LocalDate.of(2024, 1, 12), "75.00"));
+        assertThat(stored).extracting(PurchaseRow::id).doesNotHaveDuplicates();
+        assertThat(service.status()).contains(status);
+    }
+
+    @Test
+    void run_ImportsEveryLineOfALargeFile() throws IOException {
+        recordInserts();
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            csv.append("Purchase ").append(i).append(",2024-02-").append(String.format("%02d", 1 + i % 28))
+                    .append(',').append(i + 1).append(".25\n");
+        }
+
+        PurchaseImportStatus status = service.run(write(csv.toString()));
+
+        assertThat(status.getInserted()).isEqualTo(1000);
+        assertThat(status.getRejected()).isZero();
+        assertThat(stored).extracting(PurchaseRow::description).doesNotHaveDuplicates().hasSize(1000);
+    }
+
+    @Test
+    void run_MissingFile_IsRejected() {
+        assertThatThrownBy(() -> service.run(directory.resolve("missing.csv")))
+                .isInstanceOf(InvalidRequestException.class);
+        assertThat(service.status()).isEmpty();
+    }
+
+    @Test
+    void resolveInImportDirectory_ResolvesNamesInsideTheDirectory() throws IOException {
+        Path importDirectory = Files.createDirectories(directory.resolve("import/2024"));
+        Files.writeString(importDirectory.resolve("purchases.csv"), "Desk,2024-01-05,250\n");
+        configuration.setDirectory(directory.resolve("import"));
+
+        assertThat(service.resolveInImportDirectory("2024/purchases.csv"))
+                .isEqualTo(importDirectory.resolve("purchases.csv").toRealPath());
+        assertThat(service.resolveInImportDirectory("2024/../2024/purchases.csv"))
+                .isEqualTo(importDirectory.resolve("purchases.csv").toRealPath());
+    }
+
+    @Test
+    void resolveInImportDirectory_RejectsNamesLeadingOutOfTheDirectory() throws IOException {
+        Path importDirectory = Files.createDirectories(directory.resolve("import"));
+        Path outside = write("Desk,2024-01-05,250\n");
+        Files.createSymbolicLink(importDirectory.resolve("link.csv"), outside);
+        configuration.setDirectory(importDirectory);
+
+        for (String file : List.of("../purchases.csv", outside.toString(), "link.csv", "missing.csv")) {
+            assertThatThrownBy(() -> service.resolveInImportDirectory(file))
+                    .as(file)
+                    .isInstanceOf(InvalidRequestException.class);
+        }
+        assertThat(service.status()).isEmpty();
+    }
+
+    private void recordInserts() {
+        when(purchaseJdbcRepository.supportsCopy()).thenReturn(false);
+        doAnswer(invocation -> {
+            // The service reuses its batch list
+            stored.addAll(new ArrayList<PurchaseRow>(invocation.getArgument(0)));
+            return null;
+        }).when(purchaseJdbcRepository).insertAll(anyList());
+    }
+
+    private Path write(String content) throws IOException {
+        return Files.writeString(directory.resolve("purchases.csv"), content);
+    }
+}
@@ -0,0 +1,126 @@
+package com.github.jvalsesia.pcms.domain.service;
+
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.github.jvalsesia.pcms.api.dto.BulkIngestResponse;
+import com.github.jvalsesia.pcms.api.dto.PurchaseRequest;
+import com.github.jvalsesia.pcms.infrastructure.database.config.PurchaseIngestConfiguration;
+import com.github.jvalsesia.pcms.infrastructure.database.repository.PurchaseJdbcRepository;
+import com.github.jvalsesia.pcms.infrastructure.database.repository.PurchaseJdbcRepository.PurchaseRow;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class PurchaseIngestServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private DataSource dataSource;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final PurchaseIngestConfiguration configuration = new PurchaseIngestConfiguration();
+    private final List<PurchaseRow> stored = new CopyOnWriteArrayList<>();
+    // The real batch-or-each fallback over stubbed inserts
+    private PurchaseJdbcRepository purchaseJdbcRepository;
+    private PurchaseIngestService service;
+
+    @BeforeEach
+    void setUp() {
+        configuration.setBatchSize(3);
+        purchaseJdbcRepository = spy(new PurchaseJdbcRepository(jdbcTemplate, dataSource,
+                new TransactionTemplate(transactionManager)));
+        service = new PurchaseIngestService(purchaseJdbcRepository, configuration,
+                JsonMapper.builder().findAndAddModules().build());
+        // Stands for a database refusing every purchase described as "Refused", and unreachable
+        // for any batch holding one described as "Unreachable"
+        doAnswer(invocation -> {
+            List<PurchaseRow> rows = invocation.getArgument(0);
+            if (rows.stream().anyMatch(row -> row.description().equals("Unreachable"))) {
+                throw new CannotGetJdbcConnectionException("Connection refused");
+            }
+            if (rows.stream().anyMatch(row -> row.description().equals("Refused"))) {
+                throw new DataIntegrityViolationException("Batch failed",
+                        new SQLException("value violates check constraint \"chk_description\""));
+            }
+            return stored.addAll(rows);
+        }).when(purchaseJdbcRepository).insertAll(anyList());
+    }
+
+    @Test
+    void ingest_StoresEveryBatch() throws IOException {
+        BulkIngestResponse response = service.ingest(body("First", "Second", "Third", "Fourth"));
+
+        assertThat(response.getReceived()).isEqualTo(4);
+        assertThat(response.getInserted()).isEqualTo(4);
+        assertThat(response.getRejected()).isZero();
+        assertThat(stored).extracting(PurchaseRow::description).containsExactly("First", "Second", "Third", "Fourth");
+    }
+
+    @Test
+    void ingest_FailedBatch_IsStoredOneByOneAndOnlyTheRefusedRowsRejected() throws IOException {
+        BulkIngestResponse response = service.ingest(body("First", "Refused", "Third", "Fourth"));
+
+        assertThat(response.getReceived()).isEqualTo(4);
+        assertThat(response.getInserted()).isEqualTo(3);
+        assertThat(response.getRejected()).isEqualTo(1);
+        assertThat(response.getErrors()).containsExactly(new BulkIngestResponse.RowError(2,
+                "Row could not be stored: value violates check constraint \"chk_description\""));
+        assertThat(stored).extracting(PurchaseRow::description).containsExactly("First", "Third", "Fourth");
+    }
+
+    @Test
+    void ingest_InvalidRow_IsRejectedWithTheImportRules() throws IOException {
+        BulkIngestResponse response = service.ingest(new ByteArrayInputStream((
+                "{\"description\":\"First\",\"transactionDate\":\"2024-01-05\",\"purchaseAmount\":10.00}\n"
+                        + "{\"description\":\"Free\",\"transactionDate\":\"2024-01-05\",\"purchaseAmount\":0}\n")
+                .getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(response.getInserted()).isEqualTo(1);
+        assertThat(response.getErrors()).containsExactly(new BulkIngestResponse.RowError(2,
+                "purchaseAmount: " + PurchaseRequest.AMOUNT_NOT_POSITIVE));
+    }
+
+    @Test
+    void ingest_DatabaseUnavailable_RejectsTheBatchWithoutRetryingEachRow() throws IOException {
+        BulkIngestResponse response = service.ingest(body("Unreachable", "Second"));
+
+        assertThat(response.getInserted()).isZero();
+        assertThat(response.getRejected()).isEqualTo(2);
+        verify(purchaseJdbcRepository, times(1)).insertAll(anyList());
+    }
+
+    private static ByteArrayInputStream body(String... descriptions) {
+        StringBuilder ndjson = new StringBuilder();
+        for (String description : descriptions) {
+            ndjson.append("{\"description\":\"").append(description)
+                    .append("\",\"transactionDate\":\"2024-01-05\",\"purchaseAmount\":10.00}\n");
+        }
+        return new ByteArrayInputStream(ndjson.toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,117 @@
+package com.github.jvalsesia.pcms.domain.service;
+
+import com.github.jvalsesia.pcms.infrastructure.database.config.PurchasePartitionConfiguration;
+import com.github.jvalsesia.pcms.infrastructure.database.config.PurchasePartitionConfiguration.RetentionAction;
+import com.github.jvalsesia.pcms.infrastructure.database.repository.PurchasePartitionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PurchasePartitionServiceTest {
+
+    private static final YearMonth CURRENT = YearMonth.of(2025, 6);
+
+    @Mock
+    private PurchasePartitionRepository partitionRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private final PurchasePartitionConfiguration configuration = new PurchasePartitionConfiguration();
+    private PurchasePartitionService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new PurchasePartitionService(partitionRepository, configuration, eventPublisher);
+    }
+
+    @Test
+    void maintain_CreatesTheDefaultPartitionMonthsAndTheMonthsAhead() {
+        when(partitionRepository.findDefaultPartitionMonths()).thenReturn(List.of(YearMonth.of(1999, 3)));
+
+        service.maintain(CURRENT);
+
+        InOrder order = inOrder(partitionRepository);
+        order.verify(partitionRepository).createPartitions(YearMonth.of(1999, 3), YearMonth.of(1999, 3));
+        order.verify(partitionRepository).createPartitions(CURRENT, YearMonth.of(2025, 9));
+        verify(partitionRepository, never()).findPartitionMonths();
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void maintain_ArchivesThePartitionsOlderThanTheRetention() {
+        configuration.setRetentionMonths(12);
+        when(partitionRepository.findPartitionMonths()).thenReturn(List.of(
+                YearMonth.of(2024, 5), YearMonth.of(2024, 6), YearMonth.of(2024, 7), CURRENT));
+
+        service.maintain(CURRENT);
+
+        // Twelve months counting June 2025 start in July 2024
+        verify(partitionRepository).archivePartition(YearMonth.of(2024, 5));
+        verify(partitionRepository).archivePartition(YearMonth.of(2024, 6));
+        verify(partitionRepository, never()).archivePartition(YearMonth.of(2024, 7));
+        verify(partitionRepository, never()).dropPartition(any());
+        verify(eventPublisher).publishEvent(
+                new PurchasesRetiredEvent(List.of(YearMonth.of(2024, 5), YearMonth.of(2024, 6)), false));
+    }
+
+    @Test
+    void maintain_DropsRetiredPartitionsWhenConfigured() {
+        configuration.setRetentionMonths(1);
+        configuration.setRetentionAction(RetentionAction.DROP);
+        when(partitionRepository.findPartitionMonths()).thenReturn(List.of(YearMonth.of(2025, 5), CURRENT));
+
+        service.maintain(CURRENT);
+
+        verify(partitionRepository).dropPartition(YearMonth.of(2025, 5));
+        verify(partitionRepository, never()).archivePartition(any());
+    }
+
+    @Test
+    void scheduledMaintenance_HoldingTheLock_MaintainsThePartitions() {
+        when(partitionRepository.isPartitioned()).thenReturn(true);
+        when(partitionRepository.withMaintenanceLock(any())).thenAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return true;
+        });
+
+        service.scheduledMaintenance();
+
+        verify(partitionRepository).createPartitions(any(), any());
+    }
+
+    @Test
+    void scheduledMaintenance_LockHeldByAnotherNode_SkipsTheRun() {
+        when(partitionRepository.isPartitioned()).thenReturn(true);
+        when(partitionRepository.withMaintenanceLock(any())).thenReturn(false);
+
+        service.scheduledMaintenance();
+
+        verify(partitionRepository, never()).createPartitions(any(), any());
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void scheduledMaintenance_SkipsAnUnpartitionedTable() {
+        when(partitionRepository.isPartitioned()).thenReturn(false);
+
+        service.scheduledMaintenance();
+
+        verify(partitionRepository, never()).createPartitions(any(), any());
+    }
+}
@@ -1,22 +1,33 @@
 package com.github.jvalsesia.pcms.domain.service;
 
+import com.github.jvalsesia.pcms.api.dto.BatchConversionRequest;
+import com.github.jvalsesia.pcms.api.dto.BatchConversionResponse;
 import com.github.jvalsesia.pcms.api.dto.ConvertedPurchaseResponse;
 import com.github.jvalsesia.pcms.api.dto.PurchaseRequest;
 import com.github.jvalsesia.pcms.api.dto.PurchaseResponse;
 import com.github.jvalsesia.pcms.domain.exception.CurrencyConversionException;
 import com.github.jvalsesia.pcms.domain.exception.PurchaseNotFoundException;
+import com.github.jvalsesia.pcms.infrastructure.database.cache.PurchaseCache;
+import com.github.jvalsesia.pcms.infrastructure.database.config.PurchaseCacheConfiguration;
+import com.github.jvalsesia.pcms.infrastructure.database.config.ReplicaRoutingConfiguration;
 import com.github.jvalsesia.pcms.infrastructure.database.entity.Purchase;
+import com.github.jvalsesia.pcms.infrastructure.database.repository.PurchaseJdbcRepository;
+import com.github.jvalsesia.pcms.infrastructure.database.repository.PurchaseJdbcRepository.PurchaseRow;
 import com.github.jvalsesia.pcms.infrastructure.database.repository.PurchaseRepository;
-import com.github.jvalsesia.pcms.infrastructure.treasury.TreasuryApiClient;
+import com.github.jvalsesia.pcms.infrastructure.rate.config.ExchangeRateLookupConfiguration;
+import com.github.jvalsesia.pcms.infrastructure.treasury.TreasuryApiException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -32,7 +43,19 @@ class PurchaseServiceTest {
     private PurchaseRepository purchaseRepository;
 
     @Mock
-    private TreasuryApiClient treasuryApiClient;
+    private PurchaseJdbcRepository purchaseJdbcRepository;
+
+    @Mock
+    private ExchangeRateProvider exchangeRateProvider;
+
+    @Spy
+    private ExchangeRateLookupConfiguration lookupConfiguration = new ExchangeRateLookupConfiguration();
+
+    @Spy
+    private ReplicaRoutingConfiguration routingConfiguration = new ReplicaRoutingConfiguration();
+
+    @Spy
+    private PurchaseCache purchaseCache = new PurchaseCache(new PurchaseCacheConfiguration());
 
     @InjectMocks
     private PurchaseService purchaseService;
@@ -73,9 +96,9 @@ class PurchaseServiceTest {
         UUID purchaseId = savedPurchase.getId();
         BigDecimal exchangeRate = new BigDecimal("5.5");
 
-        when(purchaseRepository.findById(purchaseId)).thenReturn(Optional.of(savedPurchase));
-        when(treasuryApiClient.getExchangeRatesFiltered("Brazil", savedPurchase.getTransactionDate()))
-                .thenReturn(Optional.of(exchangeRate));
+        when(purchaseJdbcRepository.findById(purchaseId)).thenReturn(Optional.of(row(savedPurchase)));
+        when(exchangeRateProvider.findExchangeRate("Brazil", savedPurchase.getTransactionDate()))
+                .thenReturn(Optional.of(ExchangeRateQuote.fresh(exchangeRate, Duration.ofHours(1))));
 
         ConvertedPurchaseResponse response = purchaseService.getPurchaseInCurrency(purchaseId, "Brazil");
 
@@ -85,30 +108,61 @@ class PurchaseServiceTest {
         assertThat(response.getExchangeRate()).isEqualByComparingTo("5.5");
         assertThat(response.getConvertedAmount()).isEqualByComparingTo("550.00");
         assertThat(response.getTargetCurrency()).isEqualTo("Brazil");
+        assertThat(response.getExchangeRateAgeSeconds()).isEqualTo(3600);
+        assertThat(response.isStaleExchangeRate()).isFalse();
 
-        verify(purchaseRepository, times(1)).findById(purchaseId);
-        verify(treasuryApiClient, times(1)).getExchangeRatesFiltered("Brazil", savedPurchase.getTransactionDate());
+        verify(purchaseJdbcRepository, times(1)).findById(purchaseId);
+        verifyNoInteractions(purchaseRepository);
+        verify(exchangeRateProvider, times(1)).findExchangeRate("Brazil", savedPurchase.getTransactionDate());
+    }
+
+    @Test
+    void getPurchaseInCurrency_RepeatedConversions_ReadThePurchaseOnce() {
+        UUID purchaseId = savedPurchase.getId();
+        when(purchaseJdbcRepository.findById(purchaseId)).thenReturn(Optional.of(row(savedPurchase)));
+        when(exchangeRateProvider.findExchangeRate(any(), any()))
+                .thenReturn(Optional.of(ExchangeRateQuote.fresh(new BigDecimal("5.5"), Duration.ZERO)));
+
+        purchaseService.getPurchaseInCurrency(purchaseId, "Brazil");
+        ConvertedPurchaseResponse response = purchaseService.getPurchaseInCurrency(purchaseId, "Canada");
+
+        assertThat(response.getDescription()).isEqualTo("Test Purchase");
+        assertThat(response.getConvertedAmount()).isEqualByComparingTo("550.00");
+        verify(purchaseJdbcRepository, times(1)).findById(purchaseId);
+    }
+
+    @Test
+    void getPurchaseInCurrency_CreatedPurchase_IsServedFromTheCache() {
+        when(purchaseRepository.save(any(Purchase.class))).thenReturn(savedPurchase);
+        when(exchangeRateProvider.findExchangeRate(any(), any()))
+                .thenReturn(Optional.of(ExchangeRateQuote.fresh(new BigDecimal("2"), Duration.ZERO)));
+
+        PurchaseResponse created = purchaseService.createPurchase(validRequest);
+        ConvertedPurchaseResponse response = purchaseService.getPurchaseInCurrency(created.getId(), "Brazil");
+
+        assertThat(response.getConvertedAmount()).isEqualByComparingTo("200.00");
+        verify(purchaseJdbcRepository, never()).findById(any(UUID.class));
     }
 
     @Test
     void getPurchaseInCurrency_PurchaseNotFound() {
         UUID nonExistentId = UUID.randomUUID();
 
-        when(purchaseRepository.findById(nonExistentId)).thenReturn(Optional.empty());
+        when(purchaseJdbcRepository.findById(nonExistentId)).thenReturn(Optional.empty());
 
         assertThatThrownBy(() -> purchaseService.getPurchaseInCurrency(nonExistentId, "Brazil"))
                 .isInstanceOf(PurchaseNotFoundException.class)
                 .hasMessageContaining(nonExistentId.toString());
 
-        verify(treasuryApiClient, never()).getExchangeRatesFiltered(anyString(), any(LocalDate.class));
+        verify(exchangeRateProvider, never()).findExchangeRate(anyString(), any(LocalDate.class));
     }
 
     @Test
     void getPurchaseInCurrency_NoExchangeRateAvailable() {
         UUID purchaseId = savedPurchase.getId();
 
-        when(purchaseRepository.findById(purchaseId)).thenReturn(Optional.of(savedPurchase));
-        when(treasuryApiClient.getExchangeRatesFiltered("Brazil", savedPurchase.getTransactionDate()))
+        when(purchaseJdbcRepository.findById(purchaseId)).thenReturn(Optional.of(row(savedPurchase)));
+        when(exchangeRateProvider.findExchangeRate("Brazil", savedPurchase.getTransactionDate()))
                 .thenReturn(Optional.empty());
 
         assertThatThrownBy(() -> purchaseService.getPurchaseInCurrency(purchaseId, "Brazil"))
@@ -116,17 +170,147 @@ class PurchaseServiceTest {
                 .hasMessageContaining("cannot be converted");
     }
 
+    @Test
+    void getPurchaseInCurrency_StaleRate_IsFlaggedInResponse() {
+        UUID purchaseId = savedPurchase.getId();
+
+        when(purchaseJdbcRepository.findById(purchaseId)).thenReturn(Optional.of(row(savedPurchase)));
+        when(exchangeRateProvider.findExchangeRate("Brazil", savedPurchase.getTransactionDate()))
+                .thenReturn(Optional.of(new ExchangeRateQuote(new BigDecimal("5.5"), Duration.ofDays(8), true)));
+
+        ConvertedPurchaseResponse response = purchaseService.getPurchaseInCurrency(purchaseId, "Brazil");
+
+        assertThat(response.getConvertedAmount()).isEqualByComparingTo("550.00");
+        assertThat(response.isStaleExchangeRate()).isTrue();
+        assertThat(response.getExchangeRateAgeSeconds()).isEqualTo(Duration.ofDays(8).toSeconds());
+    }
+
     @Test
     void getPurchaseInCurrency_RoundingToTwoDecimalPlaces() {
         UUID purchaseId = savedPurchase.getId();
         BigDecimal exchangeRate = new BigDecimal("1.3333");
 
-        when(purchaseRepository.findById(purchaseId)).thenReturn(Optional.of(savedPurchase));
-        when(treasuryApiClient.getExchangeRatesFiltered("Canada", savedPurchase.getTransactionDate()))
-                .thenReturn(Optional.of(exchangeRate));
+        when(purchaseJdbcRepository.findById(purchaseId)).thenReturn(Optional.of(row(savedPurchase)));
+        when(exchangeRateProvider.findExchangeRate("Canada", savedPurchase.getTransactionDate()))
+                .thenReturn(Optional.of(ExchangeRateQuote.fresh(exchangeRate, Duration.ofHours(1))));
 
         ConvertedPurchaseResponse response = purchaseService.getPurchaseInCurrency(purchaseId, "Canada");
 
         assertThat(response.getConvertedAmount()).isEqualByComparingTo("133.33");
     }
-}
\ No newline at end of file
+
+
+    @Test
+    void convertPurchases_LoadsPurchasesOnceAndLooksUpEachRateOnce() {
+        Purchase otherPurchase = new Purchase();
+        otherPurchase.setId(UUID.randomUUID());
+        otherPurchase.setDescription("Other Purchase");
+        otherPurchase.setTransactionDate(LocalDate.of(2024, 1, 15));
+        otherPurchase.setPurchaseAmount(new BigDecimal("10.00"));
+
+        when(purchaseJdbcRepository.findAllById(anyCollection())).thenReturn(List.of(row(savedPurchase), row(otherPurchase)));
+        when(exchangeRateProvider.findExchangeRate("Brazil", LocalDate.of(2024, 1, 15)))
+                .thenReturn(Optional.of(ExchangeRateQuote.fresh(new BigDecimal("5.5"), Duration.ZERO)));
+
+        BatchConversionResponse response = purchaseService.convertPurchases(List.of(
+                new BatchConversionRequest.Item(savedPurchase.getId(), "Brazil"),
+                new BatchConversionRequest.Item(otherPurchase.getId(), "Brazil"),
+                new BatchConversionRequest.Item(savedPurchase.getId(), "Brazil")));
+
+        assertThat(response.getConverted()).isEqualTo(3);
+        assertThat(response.getFailed()).isZero();
+        assertThat(response.getResults()).extracting(result -> result.getConversion().getConvertedAmount())
+                .containsExactly(new BigDecimal("550.00"), new BigDecimal("55.00"), new BigDecimal("550.00"));
+
+        verify(purchaseJdbcRepository, times(1)).findAllById(anyCollection());
+        verify(purchaseJdbcRepository, never()).findById(any(UUID.class));
+        verify(exchangeRateProvider, times(1)).findExchangeRate("Brazil", LocalDate.of(2024, 1, 15));
+    }
+
+    @Test
+    void convertPurchases_FailedItems_AreReportedWithoutFailingTheBatch() {
+        UUID missingId = UUID.randomUUID();
+
+        when(purchaseJdbcRepository.findAllById(anyCollection())).thenReturn(List.of(row(savedPurchase)));
+        when(exchangeRateProvider.findExchangeRate("Brazil", savedPurchase.getTransactionDate()))
+                .thenReturn(Optional.empty());
+        when(exchangeRateProvider.findExchangeRate("Canada", savedPurchase.getTransactionDate()))
+                .thenThrow(new TreasuryApiException("Treasury API circuit breaker is open"));
+
+        BatchConversionResponse response = purchaseService.convertPurchases(List.of(
+                new BatchConversionRequest.Item(missingId, "Brazil"),
+                new BatchConversionRequest.Item(savedPurchase.getId(), "Brazil"),
+                new BatchConversionRequest.Item(savedPurchase.getId(), "Canada")));
+
+        assertThat(response.getConverted()).isZero();
+        assertThat(response.getFailed()).isEqualTo(3);
+        assertThat(response.getResults()).extracting(BatchConversionResponse.Item::getStatus)
+                .containsExactly(404, 400, 503);
+        assertThat(response.getResults().get(1).getMessage()).contains("cannot be converted");
+        assertThat(response.getResults()).allSatisfy(result -> assertThat(result.getConversion()).isNull());
+    }
+
+    @Test
+    void getPurchaseInCurrencies_LoadsPurchaseOnceAndReturnsPartialResults() {
+        UUID purchaseId = savedPurchase.getId();
+        LocalDate transactionDate = savedPurchase.getTransactionDate();
+
+        when(purchaseJdbcRepository.findById(purchaseId)).thenReturn(Optional.of(row(savedPurchase)));
+        when(exchangeRateProvider.findExchangeRate("Brazil", transactionDate))
+                .thenReturn(Optional.of(ExchangeRateQuote.fresh(new BigDecimal("5.5"), Duration.ZERO)));
+        when(exchangeRateProvider.findExchangeRate("Canada", transactionDate))
+                .thenReturn(Optional.of(ExchangeRateQuote.fresh(new BigDecimal("1.35"), Duration.ZERO)));
+        when(exchangeRateProvider.findExchangeRate("Atlantis", transactionDate)).thenReturn(Optional.empty());
+
+        BatchConversionResponse response = purchaseService.getPurchaseInCurrencies(purchaseId,
+                List.of("Brazil", "Atlantis", "Canada", "Brazil"));
+
+        assertThat(response.getConverted()).isEqualTo(2);
+        assertThat(response.getFailed()).isEqualTo(1);
+        assertThat(response.getResults()).extracting(BatchConversionResponse.Item::getCountry)
+                .containsExactly("Brazil", "Atlantis", "Canada");
+        assertThat(response.getResults()).extracting(BatchConversionResponse.Item::getStatus)
+                .containsExactly(200, 400, 200);
+        assertThat(response.getResults().get(2).getConversion().getConvertedAmount()).isEqualByComparingTo("135.00");
+
+        verify(purchaseJdbcRepository, times(1)).findById(purchaseId);
+        verify(exchangeRateProvider, times(1)).findExchangeRate("Brazil", transactionDate);
+    }
+
+    @Test
+    void getPurchaseInCurrencies_SlowLookup_TimesOutAtDeadline() {
+        UUID purchaseId = savedPurchase.getId();
+        lookupConfiguration.setFanOutDeadline(Duration.ofMillis(200));
+
+        when(purchaseJdbcRepository.findById(purchaseId)).thenReturn(Optional.of(row(savedPurchase)));
+        when(exchangeRateProvider.findExchangeRate("Brazil", savedPurchase.getTransactionDate()))
+                .thenReturn(Optional.of(ExchangeRateQuote.fresh(new BigDecimal("5.5"), Duration.ZERO)));
+        when(exchangeRateProvider.findExchangeRate("Canada", savedPurchase.getTransactionDate()))
+                .thenAnswer(invocation -> {
+                    Thread.sleep(5_000);
+                    return Optional.empty();
+                });
+
+        long start = System.nanoTime();
+        BatchConversionResponse response = purchaseService.getPurchaseInCurrencies(purchaseId, List.of("Brazil", "Canada"));
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(2));
+        assertThat(response.getResults()).extracting(BatchConversionResponse.Item::getStatus)
+                .containsExactly(200, 504);
+    }
+
+    @Test
+    void getPurchaseInCurrencies_TooManyCountries_Throws() {
+        lookupConfiguration.setMaxCountries(1);
+
+        assertThatThrownBy(() -> purchaseService.getPurchaseInCurrencies(savedPurchase.getId(), List.of("Brazil", "Canada")))
+                .isInstanceOf(CurrencyConversionException.class);
+
+        verify(purchaseJdbcRepository, never()).findById(any(UUID.class));
+    }
+
+    private static PurchaseRow row(Purchase purchase) {
+        return new PurchaseRow(purchase.getId(), purchase.getDescription(), purchase.getTransactionDate(),
+                purchase.getPurchaseAmount());
+    }
+}
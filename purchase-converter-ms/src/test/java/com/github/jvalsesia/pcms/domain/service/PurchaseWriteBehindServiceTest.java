@@ -0,0 +1,175 @@
+package com.github.jvalsesia.pcms.domain.service;
+
+import com.github.jvalsesia.pcms.api.dto.PurchaseRequest;
+import com.github.jvalsesia.pcms.domain.exception.ServiceOverloadedException;
+import com.github.jvalsesia.pcms.infrastructure.database.config.PurchaseWriteBehindConfiguration;
+import com.github.jvalsesia.pcms.infrastructure.database.config.PurchaseWriteBehindConfiguration.Acknowledgment;
+import com.github.jvalsesia.pcms.infrastructure.database.repository.PurchaseJdbcRepository;
+import com.github.jvalsesia.pcms.infrastructure.database.repository.PurchaseJdbcRepository.PurchaseRow;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.spy;
+
+@ExtendWith(MockitoExtension.class)
+class PurchaseWriteBehindServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private DataSource dataSource;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    // The real batch-or-each fallback over stubbed inserts
+    private PurchaseJdbcRepository purchaseJdbcRepository;
+
+    private final PurchaseWriteBehindConfiguration configuration = new PurchaseWriteBehindConfiguration();
+    private final List<PurchaseRow> stored = new CopyOnWriteArrayList<>();
+    private PurchaseWriteBehindService service;
+
+    @BeforeEach
+    void setUp() {
+        configuration.setEnabled(true);
+        purchaseJdbcRepository = spy(new PurchaseJdbcRepository(jdbcTemplate, dataSource,
+                new TransactionTemplate(transactionManager)));
+        service = new PurchaseWriteBehindService(purchaseJdbcRepository, configuration);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        service.stop();
+    }
+
+    @Test
+    void submit_CommittedAcknowledgment_AnswersOnceTheBatchIsStored() {
+        recordInserts(null, null);
+        service.start();
+
+        PurchaseWriteBehindService.Submission submission = service.submit(request("Laptop", "1000.005"));
+
+        assertThat(submission.committed()).isTrue();
+        assertThat(submission.purchase().getPurchaseAmount()).isEqualByComparingTo("1000.01");
+        assertThat(stored).extracting(PurchaseRow::id).containsExactly(submission.purchase().getId());
+    }
+
+    @Test
+    void submit_FullQueue_RejectsUntilTheWriterCatchesUp() throws InterruptedException {
+        configuration.setQueueCapacity(1);
+        configuration.setAcknowledgment(Acknowledgment.QUEUED);
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        recordInserts(writing, release);
+        service.start();
+
+        service.submit(request("First", "1.00"));
+        assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+        // The writer is busy with the first purchase: one more fills the queue
+        service.submit(request("Second", "2.00"));
+
+        assertThatThrownBy(() -> service.submit(request("Third", "3.00")))
+                .isInstanceOf(ServiceOverloadedException.class);
+
+        release.countDown();
+        service.stop();
+        assertThat(stored).extracting(PurchaseRow::description).containsExactly("First", "Second");
+    }
+
+    @Test
+    void submit_DatabaseBrieflyUnavailable_KeepsTheBatchAndRetriesIt() throws InterruptedException {
+        configuration.setAcknowledgment(Acknowledgment.QUEUED);
+        configuration.setRetryInitialBackoff(Duration.ofMillis(10));
+        AtomicInteger attempts = new AtomicInteger();
+        doAnswer(invocation -> {
+            if (attempts.incrementAndGet() <= 3) {
+                throw new CannotGetJdbcConnectionException("Connection refused");
+            }
+            stored.addAll(invocation.getArgument(0));
+            return null;
+        }).when(purchaseJdbcRepository).insertAll(anyList());
+        service.start();
+
+        PurchaseWriteBehindService.Submission submission = service.submit(request("Laptop", "1000.00"));
+        service.stop();
+
+        assertThat(submission.committed()).isFalse();
+        assertThat(stored).extracting(PurchaseRow::id).containsExactly(submission.purchase().getId());
+        assertThat(service.getRetriedCount()).isEqualTo(3);
+        assertThat(service.getRefusedCount()).isZero();
+    }
+
+    @Test
+    void submit_RefusedPurchase_IsDroppedAndCounted() {
+        doAnswer(invocation -> {
+            List<PurchaseRow> rows = invocation.getArgument(0);
+            if (rows.stream().anyMatch(row -> row.description().equals("Refused"))) {
+                throw new DataIntegrityViolationException("value too long");
+            }
+            stored.addAll(rows);
+            return null;
+        }).when(purchaseJdbcRepository).insertAll(anyList());
+        service.start();
+
+        assertThatThrownBy(() -> service.submit(request("Refused", "1.00")))
+                .isInstanceOf(IllegalStateException.class);
+        service.submit(request("Fine", "2.00"));
+
+        assertThat(stored).extracting(PurchaseRow::description).containsExactly("Fine");
+        assertThat(service.getRefusedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void submit_AfterStop_IsRejected() throws InterruptedException {
+        service.start();
+        service.stop();
+
+        assertThatThrownBy(() -> service.submit(request("Late", "1.00")))
+                .isInstanceOf(ServiceOverloadedException.class);
+        assertThat(service.getQueuedCount()).isZero();
+    }
+
+    // Records every stored row; the first insert waits for release when latches are given
+    private void recordInserts(CountDownLatch writing, CountDownLatch release) {
+        doAnswer(invocation -> {
+            if (writing != null && writing.getCount() > 0) {
+                writing.countDown();
+                release.await(5, TimeUnit.SECONDS);
+            }
+            stored.addAll(invocation.getArgument(0));
+            return null;
+        }).when(purchaseJdbcRepository).insertAll(anyList());
+    }
+
+    private PurchaseRequest request(String description, String amount) {
+        PurchaseRequest request = new PurchaseRequest();
+        request.setDescription(description);
+        request.setTransactionDate(LocalDate.of(2024, 1, 15));
+        request.setPurchaseAmount(new BigDecimal(amount));
+        return request;
+    }
+}
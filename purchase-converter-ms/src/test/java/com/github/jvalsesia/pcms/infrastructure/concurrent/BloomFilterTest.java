@@ -0,0 +1,43 @@
+package com.github.jvalsesia.pcms.infrastructure.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BloomFilterTest {
+
+    @Test
+    void mightContain_NeverMissesAKeyThatWasPut() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+
+        IntStream.range(0, 10_000).forEach(i -> filter.put("key-" + i));
+
+        assertThat(IntStream.range(0, 10_000)).allMatch(i -> filter.mightContain("key-" + i));
+    }
+
+    @Test
+    void mightContain_MatchesUnknownKeysAtAboutTheConfiguredRate() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        IntStream.range(0, 9_999).forEach(i -> filter.put("key-" + i));
+
+        long falsePositives = IntStream.range(0, 100_000).filter(i -> filter.mightContain("other-" + i)).count();
+
+        assertThat(falsePositives).isLessThan(2_000);
+    }
+
+    @Test
+    void put_KeepsThePreviousGenerationAfterRotating() {
+        BloomFilter filter = new BloomFilter(100, 0.01);
+
+        IntStream.range(0, 100).forEach(i -> filter.put("first-" + i));
+        IntStream.range(0, 100).forEach(i -> filter.put("second-" + i));
+        IntStream.range(0, 50).forEach(i -> filter.put("third-" + i));
+
+        assertThat(IntStream.range(0, 100)).allMatch(i -> filter.mightContain("second-" + i));
+        assertThat(IntStream.range(0, 50)).allMatch(i -> filter.mightContain("third-" + i));
+        // The first generation was dropped when the third one started
+        assertThat(IntStream.range(0, 100).filter(i -> filter.mightContain("first-" + i)).count()).isLessThan(20);
+    }
+}
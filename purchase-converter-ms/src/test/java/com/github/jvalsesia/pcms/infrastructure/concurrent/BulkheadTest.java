@@ -0,0 +1,50 @@
+package com.github.jvalsesia.pcms.infrastructure.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BulkheadTest {
+
+    private final Bulkhead bulkhead = new Bulkhead(2);
+
+    @Test
+    void tryAcquire_PastTheCap_IsRefusedAfterWaiting() throws InterruptedException {
+        assertThat(bulkhead.tryAcquire(Duration.ZERO)).isTrue();
+        assertThat(bulkhead.tryAcquire(Duration.ZERO)).isTrue();
+
+        long start = System.nanoTime();
+        assertThat(bulkhead.tryAcquire(Duration.ofMillis(50))).isFalse();
+
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(Duration.ofMillis(50).toNanos());
+        assertThat(bulkhead.getActiveCount()).isEqualTo(2);
+        assertThat(bulkhead.getRejectedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void tryAcquire_WaitingCaller_GetsTheReleasedSlot() throws Exception {
+        bulkhead.tryAcquire(Duration.ZERO);
+        bulkhead.tryAcquire(Duration.ZERO);
+
+        CompletableFuture<Boolean> waiting = new CompletableFuture<>();
+        Thread.ofVirtual().start(() -> {
+            try {
+                waiting.complete(bulkhead.tryAcquire(Duration.ofSeconds(5)));
+            } catch (InterruptedException e) {
+                waiting.completeExceptionally(e);
+            }
+        });
+        while (bulkhead.getWaitingCount() == 0) {
+            Thread.onSpinWait();
+        }
+        bulkhead.release();
+
+        assertThat(waiting.get(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(bulkhead.getActiveCount()).isEqualTo(2);
+        assertThat(bulkhead.getRejectedCount()).isZero();
+    }
+}
@@ -0,0 +1,96 @@
+package com.github.jvalsesia.pcms.infrastructure.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+
+    private static final int CALLERS = 8;
+
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+
+    @Test
+    void execute_ConcurrentCallersForSameKey_ShareOneCall() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<String>> results = runConcurrently(() -> singleFlight.execute("Brazil", () -> {
+            calls.incrementAndGet();
+            await(release);
+            return "5.434";
+        }), release);
+
+        for (Future<String> result : results) {
+            assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("5.434");
+        }
+        assertThat(calls).hasValue(1);
+        assertThat(singleFlight.getCoalescedCount()).isEqualTo(CALLERS - 1);
+    }
+
+    @Test
+    void execute_FailedCall_SharesExceptionWithWaitingCallers() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        IllegalStateException failure = new IllegalStateException("Treasury down");
+
+        List<Future<String>> results = runConcurrently(() -> singleFlight.execute("Brazil", () -> {
+            await(release);
+            throw failure;
+        }), release);
+
+        for (Future<String> result : results) {
+            assertThatThrownBy(() -> result.get(5, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .hasCause(failure);
+        }
+    }
+
+    @Test
+    void execute_SequentialCalls_AreNotCached() {
+        AtomicInteger calls = new AtomicInteger();
+
+        singleFlight.execute("Brazil", () -> String.valueOf(calls.incrementAndGet()));
+        singleFlight.execute("Brazil", () -> String.valueOf(calls.incrementAndGet()));
+
+        assertThat(calls).hasValue(2);
+        assertThat(singleFlight.getCoalescedCount()).isZero();
+    }
+
+    @Test
+    void execute_DifferentKeys_RunIndependently() {
+        assertThat(singleFlight.execute("Brazil", () -> "5.434")).isEqualTo("5.434");
+        assertThat(singleFlight.execute("Canada", () -> "1.35")).isEqualTo("1.35");
+    }
+
+    // Starts every caller, waits until the leader is blocked and the others are queued, then releases it
+    private List<Future<String>> runConcurrently(Callable<String> call, CountDownLatch release) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        CountDownLatch started = new CountDownLatch(CALLERS);
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(executor.submit(() -> {
+                started.countDown();
+                return call.call();
+            }));
+        }
+        started.await(5, TimeUnit.SECONDS);
+        Thread.sleep(200);
+        release.countDown();
+        executor.shutdown();
+        return results;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.github.jvalsesia.pcms.infrastructure.database.bulkhead;
+
+import com.github.jvalsesia.pcms.infrastructure.concurrent.Bulkhead;
+import com.github.jvalsesia.pcms.infrastructure.concurrent.BulkheadFullException;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BulkheadDataSourceTest {
+
+    private final Bulkhead bulkhead = new Bulkhead(1);
+    private final BulkheadDataSource dataSource = new BulkheadDataSource(h2(), bulkhead, Duration.ofMillis(20));
+
+    @Test
+    void getConnection_TakesASlotUntilTheConnectionIsClosed() throws Exception {
+        Connection connection = dataSource.getConnection();
+        assertThat(bulkhead.getActiveCount()).isEqualTo(1);
+
+        connection.close();
+        // Closing twice is allowed and must not give the slot back twice
+        connection.close();
+
+        assertThat(bulkhead.getActiveCount()).isZero();
+        try (Connection again = dataSource.getConnection()) {
+            assertThat(again.isValid(1)).isTrue();
+        }
+    }
+
+    @Test
+    void getConnection_PastTheCap_FailsWithBulkheadFullAsRootCause() throws Exception {
+        try (Connection held = dataSource.getConnection()) {
+            assertThat(held.isValid(1)).isTrue();
+            assertThatThrownBy(dataSource::getConnection)
+                    .isInstanceOf(SQLTransientConnectionException.class)
+                    .hasRootCauseInstanceOf(BulkheadFullException.class);
+            // What the exception handler sees, once Spring has wrapped it
+            assertThatThrownBy(() -> new JdbcTemplate(dataSource).queryForObject("SELECT 1", Integer.class))
+                    .isInstanceOf(CannotGetJdbcConnectionException.class)
+                    .satisfies(e -> assertThat(NestedExceptionUtils.getRootCause(e)).isInstanceOf(BulkheadFullException.class));
+        }
+        assertThat(bulkhead.getRejectedCount()).isEqualTo(2);
+        assertThat(bulkhead.getActiveCount()).isZero();
+    }
+
+    @Test
+    void unwrap_ReachesTheBulkheadAndTheDriverConnection() throws Exception {
+        assertThat(dataSource.isWrapperFor(BulkheadDataSource.class)).isTrue();
+        assertThat(dataSource.unwrap(BulkheadDataSource.class).getBulkhead()).isSameAs(bulkhead);
+        try (Connection connection = dataSource.getConnection()) {
+            assertThat(connection.unwrap(org.h2.jdbc.JdbcConnection.class)).isNotNull();
+        }
+    }
+
+    private static JdbcDataSource h2() {
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:bulkhead;DB_CLOSE_DELAY=-1");
+        h2.setUser("sa");
+        return h2;
+    }
+}
@@ -0,0 +1,126 @@
+package com.github.jvalsesia.pcms.infrastructure.database.cache;
+
+import com.github.jvalsesia.pcms.domain.service.PurchasesRetiredEvent;
+import com.github.jvalsesia.pcms.infrastructure.database.config.PurchaseCacheConfiguration;
+import com.github.jvalsesia.pcms.infrastructure.database.id.UuidV7;
+import com.github.jvalsesia.pcms.infrastructure.database.repository.PurchaseJdbcRepository.PurchaseRow;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.unit.DataSize;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PurchaseCacheTest {
+
+    @Test
+    void get_ReturnsCachedPurchases() {
+        PurchaseCache cache = new PurchaseCache(new PurchaseCacheConfiguration());
+        PurchaseRow purchase = purchase(1);
+
+        cache.put(purchase);
+
+        assertThat(cache.get(purchase.id())).contains(purchase);
+        assertThat(cache.get(UUID.randomUUID())).isEmpty();
+    }
+
+    @Test
+    void get_PurchasesEvictedFromTheHeap_ComeBackFromOffHeap() {
+        PurchaseCacheConfiguration configuration = new PurchaseCacheConfiguration();
+        configuration.setMaximumSize(10);
+        configuration.setOffHeapSize(DataSize.ofMegabytes(1));
+        PurchaseCache cache = new PurchaseCache(configuration);
+        List<PurchaseRow> purchases = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            purchases.add(purchase(i));
+            cache.put(purchases.getLast());
+        }
+        cache.getCache().cleanUp();
+
+        assertThat(cache.getCache().estimatedSize()).isEqualTo(10);
+        // 4096 slots for 100 purchases: a few may share a slot and replace each other
+        assertThat(purchases.stream().filter(purchase -> cache.get(purchase.id()).filter(purchase::equals).isPresent()))
+                .hasSizeGreaterThan(90);
+        assertThat(cache.getOffHeap().hitCount()).isGreaterThan(80);
+    }
+
+    @Test
+    void offHeap_KeepsEveryField() {
+        OffHeapPurchaseStore store = new OffHeapPurchaseStore(DataSize.ofKilobytes(64).toBytes());
+        PurchaseRow purchase = new PurchaseRow(UuidV7.next(), "Caf\u00e9 \"cr\u00e8me\", 2 \u00d7 \u2615",
+                LocalDate.of(1999, 12, 31), new BigDecimal("12345678901234.56"));
+
+        store.put(purchase);
+
+        assertThat(store.get(purchase.id())).contains(purchase);
+        assertThat(store.get(UUID.randomUUID())).isEmpty();
+        assertThat(store.missCount()).isEqualTo(1);
+    }
+
+    @Test
+    void put_InATransaction_WaitsForTheCommit() {
+        PurchaseCache cache = new PurchaseCache(new PurchaseCacheConfiguration());
+        PurchaseRow purchase = purchase(1);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            cache.put(purchase);
+            assertThat(cache.get(purchase.id())).isEmpty();
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(cache.get(purchase.id())).contains(purchase);
+    }
+
+    @Test
+    void onPurchasesRetired_DropsTheRetiredMonthsFromBothTiers() {
+        PurchaseCacheConfiguration configuration = new PurchaseCacheConfiguration();
+        configuration.setMaximumSize(10);
+        configuration.setOffHeapSize(DataSize.ofMegabytes(1));
+        PurchaseCache cache = new PurchaseCache(configuration);
+        List<PurchaseRow> purchases = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            purchases.add(purchase(i));
+            cache.put(purchases.getLast());
+        }
+        cache.getCache().cleanUp();
+
+        cache.onPurchasesRetired(new PurchasesRetiredEvent(List.of(YearMonth.of(2024, 1), YearMonth.of(2024, 4)), true));
+
+        assertThat(purchases).allSatisfy(purchase -> {
+            Month month = purchase.transactionDate().getMonth();
+            if (month == Month.JANUARY || month == Month.APRIL) {
+                assertThat(cache.get(purchase.id())).isEmpty();
+            }
+        });
+        assertThat(purchases.stream().filter(purchase -> cache.get(purchase.id()).isPresent()))
+                .hasSizeGreaterThan(50);
+    }
+
+    @Test
+    void disabled_CachesNothing() {
+        PurchaseCacheConfiguration configuration = new PurchaseCacheConfiguration();
+        configuration.setEnabled(false);
+        PurchaseCache cache = new PurchaseCache(configuration);
+        PurchaseRow purchase = purchase(1);
+
+        cache.put(purchase);
+
+        assertThat(cache.get(purchase.id())).isEmpty();
+    }
+
+    private static PurchaseRow purchase(int number) {
+        return new PurchaseRow(UuidV7.next(), "Purchase " + number, LocalDate.of(2024, 1, 1).plusDays(number),
+                new BigDecimal(number + 1).setScale(2));
+    }
+}
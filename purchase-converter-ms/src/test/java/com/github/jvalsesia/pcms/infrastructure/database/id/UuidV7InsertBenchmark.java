@@ -0,0 +1,89 @@
+package com.github.jvalsesia.pcms.infrastructure.database.id;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Inserts the same purchases keyed by random (v4) and time-ordered (v7) UUIDs into PostgreSQL
+ * and compares throughput and primary key index size. Not picked up by the default test run;
+ * start it with {@code ./mvnw test -Dtest=UuidV7InsertBenchmark} (needs Docker).
+ */
+@Testcontainers
+class UuidV7InsertBenchmark {
+
+    private static final int ROWS = 2_000_000;
+    private static final int BATCH_SIZE = 1000;
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>(DockerImageName.parse("postgres:latest"))
+            .withUrlParam("reWriteBatchedInserts", "true");
+
+    @Test
+    void timeOrderedIdsInsertFasterIntoASmallerIndex() {
+        SingleConnectionDataSource dataSource = new SingleConnectionDataSource(
+                POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword(), true);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+
+        Result v4 = run(jdbcTemplate, "purchase_v4", UUID::randomUUID);
+        Result v7 = run(jdbcTemplate, "purchase_v7", UuidV7::next);
+
+        System.out.printf("%-4s %12s %14s%n", "id", "rows/s", "pk index MB");
+        System.out.printf("%-4s %12.0f %14.1f%n", "v4", v4.rowsPerSecond(), v4.indexBytes() / 1048576.0);
+        System.out.printf("%-4s %12.0f %14.1f%n", "v7", v7.rowsPerSecond(), v7.indexBytes() / 1048576.0);
+        dataSource.destroy();
+
+        assertThat(v7.indexBytes()).isLessThan(v4.indexBytes());
+    }
+
+    private Result run(JdbcTemplate jdbcTemplate, String table, Supplier<UUID> ids) {
+        jdbcTemplate.execute("""
+                CREATE TABLE %s (
+                    id               UUID           NOT NULL,
+                    created_at       TIMESTAMP WITHOUT TIME ZONE,
+                    description      VARCHAR(50)    NOT NULL,
+                    transaction_date date           NOT NULL,
+                    purchase_amount  DECIMAL(19, 2) NOT NULL,
+                    CONSTRAINT pk_%s PRIMARY KEY (id)
+                )""".formatted(table, table));
+        String insert = "INSERT INTO " + table
+                + " (id, created_at, description, transaction_date, purchase_amount) VALUES (?, now(), ?, ?, ?)";
+        Date transactionDate = Date.valueOf(LocalDate.of(2024, 1, 15));
+        BigDecimal amount = new BigDecimal("42.00");
+
+        long start = System.nanoTime();
+        List<UUID> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < ROWS; i++) {
+            batch.add(ids.get());
+            if (batch.size() == BATCH_SIZE) {
+                jdbcTemplate.batchUpdate(insert, batch, BATCH_SIZE, (ps, id) -> {
+                    ps.setObject(1, id);
+                    ps.setString(2, "Benchmark purchase");
+                    ps.setDate(3, transactionDate);
+                    ps.setBigDecimal(4, amount);
+                });
+                batch.clear();
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        Long indexBytes = jdbcTemplate.queryForObject("SELECT pg_relation_size('pk_" + table + "')", Long.class);
+        return new Result(ROWS / seconds, indexBytes);
+    }
+
+    private record Result(double rowsPerSecond, long indexBytes) {
+    }
+}
@@ -0,0 +1,169 @@
+package com.github.jvalsesia.pcms.infrastructure.database.notify;
+
+import com.github.jvalsesia.pcms.domain.service.ExchangeRateSyncService;
+import com.github.jvalsesia.pcms.domain.service.ExchangeRatesUpdatedEvent;
+import com.github.jvalsesia.pcms.domain.service.PurchasesRetiredEvent;
+import com.github.jvalsesia.pcms.infrastructure.database.cache.PurchaseCache;
+import com.github.jvalsesia.pcms.infrastructure.database.config.CacheInvalidationConfiguration;
+import com.github.jvalsesia.pcms.infrastructure.database.config.PurchaseCacheConfiguration;
+import com.github.jvalsesia.pcms.infrastructure.database.config.PurchasePartitionConfiguration;
+import com.github.jvalsesia.pcms.infrastructure.database.repository.ExchangeRateSyncStateRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Two buses on one PostgreSQL container stand for two nodes sharing the database.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class CacheInvalidationBusTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>(DockerImageName.parse("postgres:latest"));
+
+    private final List<HikariDataSource> pools = new ArrayList<>();
+    private final List<CacheInvalidationBus> buses = new ArrayList<>();
+    private final AtomicLong storedRatesVersion = new AtomicLong();
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        for (CacheInvalidationBus bus : buses) {
+            bus.stop();
+        }
+        pools.forEach(HikariDataSource::close);
+    }
+
+    @Test
+    void ratesUpdated_ReachTheOtherNodes() {
+        Node first = node("first");
+        Node second = node("second");
+
+        first.bus.onExchangeRatesUpdated(new ExchangeRatesUpdatedEvent(10, 3, false));
+
+        waitFor(() -> !second.events.isEmpty());
+        assertThat(second.events).containsExactly(new ExchangeRatesUpdatedEvent(0, 3, true));
+        // A node ignores its own notifications, and remote events are not sent back: notifications
+        // arrive in order, so the first node only ever sees the next one from the second node
+        second.bus.onExchangeRatesUpdated((ExchangeRatesUpdatedEvent) second.events.getFirst());
+        second.bus.onExchangeRatesUpdated(new ExchangeRatesUpdatedEvent(10, 4, false));
+        waitFor(() -> !first.events.isEmpty());
+        assertThat(first.events).containsExactly(new ExchangeRatesUpdatedEvent(0, 4, true));
+    }
+
+    @Test
+    void purchasesRetired_ReachTheOtherNodes() {
+        Node first = node("first");
+        Node second = node("second");
+
+        first.bus.onPurchasesRetired(new PurchasesRetiredEvent(List.of(YearMonth.of(2024, 5), YearMonth.of(2024, 6)), false));
+
+        waitFor(() -> !second.events.isEmpty());
+        assertThat(second.events).containsExactly(
+                new PurchasesRetiredEvent(List.of(YearMonth.of(2024, 5), YearMonth.of(2024, 6)), true));
+    }
+
+    @Test
+    void lostConnection_IsReopenedAndTheMissedRatesResynced() throws SQLException {
+        Node first = node("first");
+        Node second = node("second");
+
+        // Stored by a sync while the second node is not listening
+        storedRatesVersion.set(7);
+        terminateConnections("second");
+        waitFor(() -> second.events.contains(new ExchangeRatesUpdatedEvent(0, 7, true)));
+        waitFor(second.bus::isListening);
+
+        first.bus.onExchangeRatesUpdated(new ExchangeRatesUpdatedEvent(10, 8, false));
+
+        waitFor(() -> second.events.contains(new ExchangeRatesUpdatedEvent(0, 8, true)));
+    }
+
+    @Test
+    void listening_TakesNoPooledConnection() {
+        node("first");
+
+        assertThat(pools.getFirst().getHikariPoolMXBean().getActiveConnections()).isZero();
+    }
+
+    private Node node(String name) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName(name);
+        dataSource.setJdbcUrl(POSTGRES.getJdbcUrl());
+        dataSource.setUsername(POSTGRES.getUsername());
+        dataSource.setPassword(POSTGRES.getPassword());
+        dataSource.setMaximumPoolSize(3);
+        dataSource.addDataSourceProperty("ApplicationName", name);
+        pools.add(dataSource);
+        // The listen connection is opened outside the pool, under the same name
+        DataSourceProperties dataSourceProperties = new DataSourceProperties();
+        dataSourceProperties.setUrl(POSTGRES.getJdbcUrl() + (POSTGRES.getJdbcUrl().contains("?") ? "&" : "?")
+                + "ApplicationName=" + name);
+        dataSourceProperties.setUsername(POSTGRES.getUsername());
+        dataSourceProperties.setPassword(POSTGRES.getPassword());
+
+        CacheInvalidationConfiguration configuration = new CacheInvalidationConfiguration();
+        configuration.setPollTimeout(Duration.ofSeconds(1));
+        configuration.setReconnectInitialBackoff(Duration.ofMillis(100));
+        ExchangeRateSyncStateRepository syncStateRepository = mock(ExchangeRateSyncStateRepository.class);
+        when(syncStateRepository.findRatesVersionByName(ExchangeRateSyncService.SYNC_NAME))
+                .thenAnswer(invocation -> Optional.of(storedRatesVersion.get()));
+        List<Object> events = new CopyOnWriteArrayList<>();
+
+        CacheInvalidationBus bus = new CacheInvalidationBus(configuration, dataSource, dataSourceProperties,
+                new JdbcTemplate(dataSource), syncStateRepository, new PurchaseCache(new PurchaseCacheConfiguration()),
+                new PurchasePartitionConfiguration(), events::add);
+        buses.add(bus);
+        bus.start();
+        waitFor(bus::isListening);
+        return new Node(bus, events);
+    }
+
+    private static void terminateConnections(String node) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(),
+                POSTGRES.getPassword());
+             PreparedStatement statement = connection.prepareStatement(
+                     "SELECT pg_terminate_backend(pid) FROM pg_stat_activity WHERE application_name = ?")) {
+            statement.setString(1, node);
+            statement.execute();
+        }
+    }
+
+    private static void waitFor(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition met within 10s").isLessThan(deadline);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private record Node(CacheInvalidationBus bus, List<Object> events) {
+    }
+}
@@ -0,0 +1,67 @@
+package com.github.jvalsesia.pcms.infrastructure.database.repository;
+
+import com.github.jvalsesia.pcms.infrastructure.database.entity.ExchangeRate;
+import com.github.jvalsesia.pcms.infrastructure.treasury.TreasuryApiResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@Import(ExchangeRateJdbcRepository.class)
+class ExchangeRateJdbcRepositoryTest {
+
+    @Autowired
+    private ExchangeRateJdbcRepository exchangeRateJdbcRepository;
+
+    @Autowired
+    private ExchangeRateRepository exchangeRateRepository;
+
+    @Test
+    void upsertAll_InsertsNewRates() {
+        int written = exchangeRateJdbcRepository.upsertAll(List.of(
+                rateData("Brazil", LocalDate.of(2024, 3, 31), "4.977"),
+                rateData("Canada", LocalDate.of(2024, 3, 31), "1.354")));
+
+        assertThat(written).isEqualTo(2);
+        assertThat(exchangeRateRepository.count()).isEqualTo(2);
+    }
+
+    @Test
+    void upsertAll_ExistingRate_IsCorrectedInPlace() {
+        exchangeRateJdbcRepository.upsertAll(List.of(rateData("Brazil", LocalDate.of(2024, 3, 31), "4.977")));
+        int written = exchangeRateJdbcRepository.upsertAll(List.of(rateData("Brazil", LocalDate.of(2024, 3, 31), "4.981")));
+
+        assertThat(written).isEqualTo(1);
+        List<ExchangeRate> rates = exchangeRateRepository.findAll();
+        assertThat(rates).hasSize(1);
+        assertThat(rates.getFirst().getExchangeRate()).isEqualByComparingTo("4.981");
+        assertThat(rates.getFirst().getUpdatedAt()).isNotNull();
+    }
+
+    @Test
+    void upsertAll_UnchangedRate_IsLeftUntouched() {
+        exchangeRateJdbcRepository.upsertAll(List.of(rateData("Brazil", LocalDate.of(2024, 3, 31), "4.977")));
+        int written = exchangeRateJdbcRepository.upsertAll(List.of(rateData("Brazil", LocalDate.of(2024, 3, 31), "4.977")));
+
+        assertThat(written).isZero();
+        List<ExchangeRate> rates = exchangeRateRepository.findAll();
+        assertThat(rates).hasSize(1);
+        assertThat(rates.getFirst().getUpdatedAt()).isNull();
+    }
+
+    private TreasuryApiResponse.ExchangeRateData rateData(String country, LocalDate date, String rate) {
+        TreasuryApiResponse.ExchangeRateData data = new TreasuryApiResponse.ExchangeRateData();
+        data.setCountry(country);
+        data.setCurrency("Currency");
+        data.setEffectiveDate(date);
+        data.setExchangeRate(new BigDecimal(rate));
+        return data;
+    }
+}
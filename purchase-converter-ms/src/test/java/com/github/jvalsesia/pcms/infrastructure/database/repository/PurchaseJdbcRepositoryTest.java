@@ -0,0 +1,215 @@
+package com.github.jvalsesia.pcms.infrastructure.database.repository;
+
+import com.github.jvalsesia.pcms.infrastructure.database.entity.ExchangeRate;
+import com.github.jvalsesia.pcms.infrastructure.database.entity.Purchase;
+import com.github.jvalsesia.pcms.infrastructure.database.repository.PurchaseJdbcRepository.DailyTotal;
+import com.github.jvalsesia.pcms.infrastructure.database.repository.PurchaseJdbcRepository.Keyset;
+import com.github.jvalsesia.pcms.infrastructure.database.repository.PurchaseJdbcRepository.PurchaseRow;
+import com.github.jvalsesia.pcms.infrastructure.database.repository.PurchaseJdbcRepository.SearchCriteria;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+@DataJpaTest
+@Import(PurchaseJdbcRepository.class)
+class PurchaseJdbcRepositoryTest {
+
+    @Autowired
+    private PurchaseJdbcRepository purchaseJdbcRepository;
+
+    @Autowired
+    private PurchaseRepository purchaseRepository;
+
+    @Autowired
+    private ExchangeRateRepository exchangeRateRepository;
+
+    @Test
+    void forEachInDateRange_ReadsEveryRowAcrossPagesInKeysetOrder() {
+        List<Purchase> saved = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            // Several purchases share a date, so pages break inside a date
+            saved.add(purchase(LocalDate.of(2024, 1, 10 + i / 3)));
+        }
+        purchaseRepository.saveAllAndFlush(saved);
+        List<PurchaseRow> rows = new ArrayList<>();
+
+        int count = purchaseJdbcRepository.forEachInDateRange(
+                LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31), 2, rows::add);
+
+        assertThat(count).isEqualTo(7);
+        assertThat(rows).extracting(PurchaseRow::id).doesNotHaveDuplicates()
+                .containsExactlyElementsOf(saved.stream()
+                        // The database orders UUIDs as unsigned bytes, like their text form
+                        .sorted(Comparator.comparing(Purchase::getTransactionDate)
+                                .thenComparing(purchase -> purchase.getId().toString()))
+                        .map(Purchase::getId)
+                        .toList());
+    }
+
+    @Test
+    void forEachInDateRange_OnlyReadsRowsInsideTheRange() {
+        purchaseRepository.saveAllAndFlush(List.of(
+                purchase(LocalDate.of(2023, 12, 31)),
+                purchase(LocalDate.of(2024, 1, 1)),
+                purchase(LocalDate.of(2024, 1, 31)),
+                purchase(LocalDate.of(2024, 2, 1))));
+        List<PurchaseRow> rows = new ArrayList<>();
+
+        purchaseJdbcRepository.forEachInDateRange(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31), 10, rows::add);
+
+        assertThat(rows).extracting(PurchaseRow::transactionDate)
+                .containsExactly(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31));
+        assertThat(rows.getFirst().purchaseAmount()).isEqualByComparingTo("10.00");
+    }
+
+    @Test
+    void insertAll_StoresEveryRowInOneBatch() {
+        List<PurchaseRow> rows = List.of(
+                new PurchaseRow(UUID.randomUUID(), "Desk", LocalDate.of(2024, 1, 5), new BigDecimal("250.00")),
+                new PurchaseRow(UUID.randomUUID(), "Chair, \"ergonomic\"", LocalDate.of(2024, 1, 6), new BigDecimal("180.50")));
+
+        purchaseJdbcRepository.insertAll(rows);
+
+        assertThat(purchaseRepository.findAll())
+                .extracting(Purchase::getId, Purchase::getDescription)
+                .containsExactlyInAnyOrder(
+                        tuple(rows.get(0).id(), "Desk"),
+                        tuple(rows.get(1).id(), "Chair, \"ergonomic\""));
+        assertThat(purchaseJdbcRepository.supportsCopy()).isFalse();
+    }
+
+    @Test
+    void findById_ReadsTheConversionColumns() {
+        Purchase saved = purchaseRepository.saveAndFlush(purchase("Desk", LocalDate.of(2024, 1, 5), "250.00"));
+
+        assertThat(purchaseJdbcRepository.findById(saved.getId()))
+                .contains(new PurchaseRow(saved.getId(), "Desk", LocalDate.of(2024, 1, 5), new BigDecimal("250.00")));
+        assertThat(purchaseJdbcRepository.findById(UUID.randomUUID())).isEmpty();
+    }
+
+    @Test
+    void findAllById_ReadsTheIdsFoundWithOneQuery() {
+        List<Purchase> saved = purchaseRepository.saveAllAndFlush(List.of(
+                purchase(LocalDate.of(2024, 1, 5)), purchase(LocalDate.of(2024, 1, 6)), purchase(LocalDate.of(2024, 1, 7))));
+
+        List<PurchaseRow> rows = purchaseJdbcRepository.findAllById(
+                List.of(saved.get(0).getId(), saved.get(2).getId(), UUID.randomUUID()));
+
+        assertThat(rows).extracting(PurchaseRow::id, PurchaseRow::transactionDate)
+                .containsExactlyInAnyOrder(
+                        tuple(saved.get(0).getId(), LocalDate.of(2024, 1, 5)),
+                        tuple(saved.get(2).getId(), LocalDate.of(2024, 1, 7)));
+        assertThat(purchaseJdbcRepository.findAllById(List.of())).isEmpty();
+    }
+
+    @Test
+    void search_AppliesEveryFilter() {
+        purchaseRepository.saveAllAndFlush(List.of(
+                purchase("Coffee beans", LocalDate.of(2024, 1, 5), "12.00"),
+                purchase("Coffee mug", LocalDate.of(2024, 1, 6), "30.00"),
+                purchase("Coffee filter", LocalDate.of(2023, 12, 1), "12.00"),
+                purchase("Tea", LocalDate.of(2024, 1, 7), "12.00"),
+                purchase("Coffee grinder", LocalDate.of(2024, 1, 8), "99.00")));
+
+        List<PurchaseRow> rows = purchaseJdbcRepository.search(new SearchCriteria(
+                LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31),
+                new BigDecimal("10.00"), new BigDecimal("50.00"), "Coffee"), null, 10);
+
+        assertThat(rows).extracting(PurchaseRow::description).containsExactly("Coffee beans", "Coffee mug");
+    }
+
+    @Test
+    void search_ContinuesAfterTheKeyset() {
+        List<Purchase> saved = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            saved.add(purchase(LocalDate.of(2024, 1, 10 + i / 2)));
+        }
+        purchaseRepository.saveAllAndFlush(saved);
+        SearchCriteria all = new SearchCriteria(null, null, null, null, null);
+        List<PurchaseRow> rows = new ArrayList<>();
+
+        List<PurchaseRow> page = purchaseJdbcRepository.search(all, null, 2);
+        while (!page.isEmpty()) {
+            rows.addAll(page);
+            PurchaseRow last = page.getLast();
+            page = purchaseJdbcRepository.search(all, new Keyset(last.transactionDate(), last.id()), 2);
+        }
+
+        assertThat(rows).extracting(PurchaseRow::id)
+                .containsExactlyInAnyOrderElementsOf(saved.stream().map(Purchase::getId).toList())
+                .doesNotHaveDuplicates();
+        assertThat(rows).extracting(PurchaseRow::transactionDate).isSorted();
+    }
+
+    @Test
+    void search_TreatsLikeWildcardsInThePrefixAsText() {
+        purchaseRepository.saveAllAndFlush(List.of(
+                purchase("50% off", LocalDate.of(2024, 1, 5), "10.00"),
+                purchase("500 pens", LocalDate.of(2024, 1, 5), "10.00")));
+
+        List<PurchaseRow> rows = purchaseJdbcRepository.search(
+                new SearchCriteria(null, null, null, null, "50%"), null, 10);
+
+        assertThat(rows).extracting(PurchaseRow::description).containsExactly("50% off");
+    }
+
+    @Test
+    void sumConvertedByDay_ConvertsEachDayWithItsLatestRateWithinSixMonths() {
+        purchaseRepository.saveAllAndFlush(List.of(
+                purchase("A", LocalDate.of(2024, 1, 10), "0.01"),
+                purchase("B", LocalDate.of(2024, 1, 10), "0.01"),
+                purchase("C", LocalDate.of(2024, 3, 5), "10.00"),
+                purchase("D", LocalDate.of(2024, 12, 1), "10.00")));
+        exchangeRateRepository.saveAllAndFlush(List.of(
+                exchangeRate(LocalDate.of(2023, 12, 31), "1.5"),
+                exchangeRate(LocalDate.of(2024, 3, 1), "2.0")));
+
+        List<DailyTotal> days = purchaseJdbcRepository.sumConvertedByDay(
+                LocalDate.of(2024, 1, 1), LocalDate.of(2024, 12, 31), "Brazil");
+
+        assertThat(days).extracting(DailyTotal::transactionDate)
+                .containsExactly(LocalDate.of(2024, 1, 10), LocalDate.of(2024, 3, 5), LocalDate.of(2024, 12, 1));
+        DailyTotal january = days.get(0);
+        assertThat(january.purchaseCount()).isEqualTo(2);
+        assertThat(january.totalAmount()).isEqualByComparingTo("0.02");
+        // 0.015 rounds up per purchase, 0.03 when summed first
+        assertThat(january.convertedAmountRounded()).isEqualByComparingTo("0.04");
+        assertThat(january.convertedAmountExact()).isEqualByComparingTo("0.03");
+        assertThat(days.get(1).convertedAmountRounded()).isEqualByComparingTo("20.00");
+        // The March rate is more than 6 months older than December
+        assertThat(days.get(2).convertedCount()).isZero();
+        assertThat(days.get(2).convertedAmountRounded()).isNull();
+    }
+
+    private ExchangeRate exchangeRate(LocalDate effectiveDate, String rate) {
+        ExchangeRate exchangeRate = new ExchangeRate();
+        exchangeRate.setCountry("Brazil");
+        exchangeRate.setCurrency("Real");
+        exchangeRate.setEffectiveDate(effectiveDate);
+        exchangeRate.setExchangeRate(new BigDecimal(rate));
+        return exchangeRate;
+    }
+
+    private Purchase purchase(LocalDate transactionDate) {
+        return purchase("Purchase on " + transactionDate, transactionDate, "10.00");
+    }
+
+    private Purchase purchase(String description, LocalDate transactionDate, String amount) {
+        Purchase purchase = new Purchase();
+        purchase.setDescription(description);
+        purchase.setTransactionDate(transactionDate);
+        purchase.setPurchaseAmount(new BigDecimal(amount));
+        return purchase;
+    }
+}
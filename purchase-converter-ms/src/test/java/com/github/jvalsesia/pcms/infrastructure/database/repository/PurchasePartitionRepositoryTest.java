@@ -0,0 +1,133 @@
+package com.github.jvalsesia.pcms.infrastructure.database.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the migrations on a PostgreSQL container; each test works on months of its own.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class PurchasePartitionRepositoryTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>(DockerImageName.parse("postgres:latest"));
+
+    private static HikariDataSource dataSource;
+    private static JdbcTemplate jdbcTemplate;
+    private static PurchasePartitionRepository partitionRepository;
+
+    @BeforeAll
+    static void migrate() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(POSTGRES.getJdbcUrl());
+        dataSource.setUsername(POSTGRES.getUsername());
+        dataSource.setPassword(POSTGRES.getPassword());
+        Flyway.configure().dataSource(dataSource).locations("classpath:migration").load().migrate();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        partitionRepository = new PurchasePartitionRepository(jdbcTemplate, dataSource,
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource)));
+    }
+
+    @AfterAll
+    static void tearDown() {
+        dataSource.close();
+    }
+
+    @Test
+    void archivePartition_MonthArchivedBefore_GetsATimestampSuffix() {
+        YearMonth month = YearMonth.of(2001, 1);
+        partitionRepository.createPartitions(month, month);
+        assertThat(partitionRepository.archivePartition(month)).isEqualTo("purchase_p2001_01");
+        // A late purchase of the archived month lands in the default partition and gets a partition again
+        insertPurchase(month.atDay(15));
+        partitionRepository.createPartitions(month, month);
+
+        String archivedName = partitionRepository.archivePartition(month);
+
+        assertThat(archivedName).matches("purchase_p2001_01_\\d{14}");
+        assertThat(archivedTables()).contains("purchase_p2001_01", archivedName);
+        assertThat(partitionRepository.findPartitionMonths()).doesNotContain(month);
+    }
+
+    @Test
+    void createPartitions_DetachedTableOfTheMonth_IsAttachedAgain() {
+        YearMonth month = YearMonth.of(2002, 2);
+        partitionRepository.createPartitions(month, month);
+        insertPurchase(month.atDay(10));
+        jdbcTemplate.execute("ALTER TABLE purchase DETACH PARTITION purchase_p2002_02");
+        insertPurchase(month.atDay(20));
+
+        int created = partitionRepository.createPartitions(month, month);
+
+        assertThat(created).isEqualTo(1);
+        assertThat(partitionRepository.findPartitionMonths()).contains(month);
+        assertThat(partitionRepository.findDefaultPartitionMonths()).doesNotContain(month);
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM purchase_p2002_02", Integer.class)).isEqualTo(2);
+    }
+
+    @Test
+    void createPartitions_AttachedPartition_IsLeftAlone() {
+        YearMonth month = YearMonth.of(2003, 3);
+        partitionRepository.createPartitions(month, month);
+
+        assertThat(partitionRepository.createPartitions(month, month)).isZero();
+    }
+
+    @Test
+    void dropPartition_DropsTheMonth() {
+        YearMonth month = YearMonth.of(2004, 4);
+        partitionRepository.createPartitions(month, month);
+
+        partitionRepository.dropPartition(month);
+
+        assertThat(partitionRepository.findPartitionMonths()).doesNotContain(month);
+        assertThat(jdbcTemplate.queryForObject("SELECT to_regclass('purchase_p2004_04') IS NULL", Boolean.class)).isTrue();
+    }
+
+    @Test
+    void withMaintenanceLock_HeldByAnotherSession_DoesNotRun() throws SQLException {
+        AtomicBoolean ran = new AtomicBoolean();
+        // Another node's maintenance holds the lock on its own connection
+        try (Connection otherNode = dataSource.getConnection(); Statement statement = otherNode.createStatement()) {
+            statement.execute("SELECT pg_advisory_lock(hashtext('purchase_partition_maintenance'))");
+
+            assertThat(partitionRepository.withMaintenanceLock(() -> ran.set(true))).isFalse();
+            assertThat(ran).isFalse();
+
+            statement.execute("SELECT pg_advisory_unlock(hashtext('purchase_partition_maintenance'))");
+        }
+
+        assertThat(partitionRepository.withMaintenanceLock(() -> ran.set(true))).isTrue();
+        assertThat(ran).isTrue();
+    }
+
+    private static void insertPurchase(LocalDate transactionDate) {
+        jdbcTemplate.update("INSERT INTO purchase (id, description, transaction_date, purchase_amount) "
+                + "VALUES (gen_random_uuid(), 'Late purchase', ?, 10.00)", transactionDate);
+    }
+
+    private static List<String> archivedTables() {
+        return jdbcTemplate.queryForList(
+                "SELECT tablename FROM pg_tables WHERE schemaname = 'purchase_archive'", String.class);
+    }
+}
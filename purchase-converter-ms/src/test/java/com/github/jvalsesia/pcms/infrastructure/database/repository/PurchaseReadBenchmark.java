@@ -0,0 +1,100 @@
+package com.github.jvalsesia.pcms.infrastructure.database.repository;
+
+import com.github.jvalsesia.pcms.infrastructure.database.id.UuidV7;
+import com.github.jvalsesia.pcms.infrastructure.database.repository.PurchaseJdbcRepository.PurchaseRow;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Reads the same purchases by id through {@code PurchaseRepository.findById} (a managed entity in
+ * a read-only transaction) and {@code PurchaseJdbcRepository.findById} (a projection of the
+ * conversion columns) on PostgreSQL, and compares throughput, latency and heap allocated per
+ * read. Not picked up by the default test run; start it with
+ * {@code ./mvnw test -Dtest=PurchaseReadBenchmark} (needs Docker).
+ */
+@Testcontainers
+// application.yml sets the H2 dialect of the in-memory development database
+@DataJpaTest(properties = "spring.jpa.database-platform=org.hibernate.dialect.PostgreSQLDialect")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(PurchaseJdbcRepository.class)
+// Every read runs as in production, not inside one test transaction sharing a persistence context
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PurchaseReadBenchmark {
+
+    private static final int PURCHASES = 10_000;
+    private static final int WARMUP_READS = 50_000;
+    private static final int MEASURED_READS = 200_000;
+
+    @Container
+    @ServiceConnection
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>(DockerImageName.parse("postgres:latest"));
+
+    @Autowired
+    private PurchaseRepository purchaseRepository;
+
+    @Autowired
+    private PurchaseJdbcRepository purchaseJdbcRepository;
+
+    @Test
+    void projectionAllocatesLessPerReadThanEntities() {
+        List<UUID> ids = new ArrayList<>(PURCHASES);
+        List<PurchaseRow> rows = new ArrayList<>(PURCHASES);
+        for (int i = 0; i < PURCHASES; i++) {
+            UUID id = UuidV7.next();
+            ids.add(id);
+            rows.add(new PurchaseRow(id, "Benchmark purchase " + i, LocalDate.of(2024, 1, 1).plusDays(i % 365),
+                    new BigDecimal("42.00")));
+        }
+        purchaseJdbcRepository.insertAll(rows);
+
+        Result entity = run(ids, id -> purchaseRepository.findById(id).orElseThrow());
+        Result projection = run(ids, id -> purchaseJdbcRepository.findById(id).orElseThrow());
+
+        System.out.printf("%-10s %12s %10s %14s%n", "path", "reads/s", "mean us", "bytes/read");
+        System.out.printf("%-10s %12.0f %10.1f %14d%n", "entity", entity.readsPerSecond(), entity.meanMicros(),
+                entity.bytesPerRead());
+        System.out.printf("%-10s %12.0f %10.1f %14d%n", "projection", projection.readsPerSecond(),
+                projection.meanMicros(), projection.bytesPerRead());
+
+        assertThat(projection.bytesPerRead()).isLessThan(entity.bytesPerRead());
+    }
+
+    private Result run(List<UUID> ids, Consumer<UUID> read) {
+        for (int i = 0; i < WARMUP_READS; i++) {
+            read.accept(ids.get(i % ids.size()));
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_READS; i++) {
+            // A stride through the ids, so consecutive reads hit different index pages
+            read.accept(ids.get((int) ((i * 7919L) % ids.size())));
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        return new Result(MEASURED_READS / (elapsed / 1e9), elapsed / 1e3 / MEASURED_READS, allocated / MEASURED_READS);
+    }
+
+    private record Result(double readsPerSecond, double meanMicros, long bytesPerRead) {
+    }
+}
@@ -0,0 +1,176 @@
+package com.github.jvalsesia.pcms.infrastructure.database.routing;
+
+import com.github.jvalsesia.pcms.infrastructure.database.repository.PurchaseJdbcRepository;
+import com.github.jvalsesia.pcms.infrastructure.database.repository.PurchaseJdbcRepository.PurchaseRow;
+import com.github.jvalsesia.pcms.infrastructure.database.repository.PurchaseJdbcRepository.SearchCriteria;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Two independent PostgreSQL containers stand for the primary and a replica; each holds a marker
+ * row naming it, so a query tells which one served it.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class ReadReplicaDataSourceTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> PRIMARY = new PostgreSQLContainer<>(DockerImageName.parse("postgres:latest"));
+
+    @Container
+    private static final PostgreSQLContainer<?> REPLICA = new PostgreSQLContainer<>(DockerImageName.parse("postgres:latest"));
+
+    private final List<HikariDataSource> pools = new ArrayList<>();
+    private ReadReplicaDataSource readReplicaDataSource;
+
+    @BeforeAll
+    static void markNodes() {
+        for (PostgreSQLContainer<?> container : List.of(PRIMARY, REPLICA)) {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(pool(container.getJdbcUrl(), container));
+            jdbcTemplate.execute("CREATE TABLE node (name VARCHAR(20))");
+            jdbcTemplate.update("INSERT INTO node VALUES (?)", container == PRIMARY ? "primary" : "replica");
+            jdbcTemplate.execute("CREATE TABLE purchase (id UUID PRIMARY KEY, created_at TIMESTAMP, "
+                    + "description VARCHAR(50), transaction_date DATE, purchase_amount DECIMAL(19, 2))");
+            jdbcTemplate.update("INSERT INTO purchase VALUES (?, now(), ?, DATE '2024-01-15', 10.00)",
+                    UUID.randomUUID(), container == PRIMARY ? "primary" : "replica");
+            ((HikariDataSource) jdbcTemplate.getDataSource()).close();
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        readReplicaDataSource.close();
+        pools.forEach(HikariDataSource::close);
+    }
+
+    @Test
+    void readOnlyTransactions_ReadFromTheReplica() {
+        Routing routing = routing(Map.of("replica-0", REPLICA.getJdbcUrl()));
+
+        assertThat(routing.read(true)).isEqualTo("replica");
+        assertThat(routing.read(false)).isEqualTo("primary");
+        assertThat(routing.jdbcTemplate.queryForObject("SELECT name FROM node", String.class)).isEqualTo("primary");
+    }
+
+    @Test
+    void purchaseReadsOutsideTransactions_ReadFromTheReplica() {
+        Routing routing = routing(Map.of("replica-0", REPLICA.getJdbcUrl()));
+        PurchaseJdbcRepository purchaseJdbcRepository = new PurchaseJdbcRepository(routing.jdbcTemplate,
+                routing.jdbcTemplate.getDataSource(),
+                new TransactionTemplate(new DataSourceTransactionManager(routing.jdbcTemplate.getDataSource())));
+        List<String> exported = new ArrayList<>();
+
+        List<PurchaseRow> found = purchaseJdbcRepository.search(
+                new SearchCriteria(null, null, null, null, null), null, 10);
+        purchaseJdbcRepository.forEachInDateRange(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31), 10,
+                row -> exported.add(row.description()));
+
+        assertThat(found).extracting(PurchaseRow::description).containsExactly("replica");
+        assertThat(exported).containsExactly("replica");
+        // The connection's read-only flag does not stick to writes that follow
+        assertThat(routing.jdbcTemplate.queryForObject("SELECT name FROM node", String.class)).isEqualTo("primary");
+    }
+
+    @Test
+    void readOnlyTransactions_AlternateBetweenReplicas() {
+        // The primary container doubles as a second replica, so consecutive reads differ
+        Map<String, String> replicas = new LinkedHashMap<>();
+        replicas.put("replica-0", REPLICA.getJdbcUrl());
+        replicas.put("replica-1", PRIMARY.getJdbcUrl());
+        Routing routing = routing(replicas);
+
+        List<String> nodes = List.of(routing.read(true), routing.read(true), routing.read(true), routing.read(true));
+
+        assertThat(nodes).containsExactlyInAnyOrder("replica", "primary", "replica", "primary");
+        assertThat(nodes.get(0)).isNotEqualTo(nodes.get(1));
+    }
+
+    @Test
+    void primaryReads_SendReadOnlyTransactionsToThePrimary() {
+        Routing routing = routing(Map.of("replica-0", REPLICA.getJdbcUrl()));
+
+        assertThat(PrimaryReads.call(() -> routing.read(true))).isEqualTo("primary");
+        assertThat(routing.read(true)).isEqualTo("replica");
+    }
+
+    @Test
+    void unreachableReplica_IsLeftOutAndReadsFallBackToThePrimary() {
+        Map<String, String> replicas = new LinkedHashMap<>();
+        replicas.put("replica-0", "jdbc:postgresql://localhost:1/down");
+        Routing routing = routing(replicas);
+
+        assertThat(routing.read(true)).isEqualTo("primary");
+        readReplicaDataSource.checkHealth();
+        assertThat(readReplicaDataSource.healthyReplicas()).isEmpty();
+        assertThat(routing.read(true)).isEqualTo("primary");
+    }
+
+    @Test
+    void checkHealth_KeepsReachableReplicasInTheRotation() {
+        Map<String, String> replicas = new LinkedHashMap<>();
+        replicas.put("replica-0", REPLICA.getJdbcUrl());
+        replicas.put("replica-1", "jdbc:postgresql://localhost:1/down");
+        routing(replicas);
+
+        readReplicaDataSource.checkHealth();
+
+        assertThat(readReplicaDataSource.healthyReplicas()).containsExactly("replica-0");
+    }
+
+    // Wired like ReplicaDataSourceConfig, with a plain JDBC transaction manager
+    private Routing routing(Map<String, String> replicaUrls) {
+        HikariDataSource primary = pool(PRIMARY.getJdbcUrl(), PRIMARY);
+        pools.add(primary);
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        replicaUrls.forEach((name, url) -> {
+            HikariDataSource replica = pool(url, REPLICA);
+            replica.setReadOnly(true);
+            replicas.put(name, replica);
+        });
+        readReplicaDataSource = new ReadReplicaDataSource(primary, replicas, Duration.ofHours(1), Duration.ofSeconds(10));
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primary);
+        dataSource.setReadOnlyDataSource(readReplicaDataSource);
+        return new Routing(new JdbcTemplate(dataSource), new DataSourceTransactionManager(dataSource));
+    }
+
+    private static HikariDataSource pool(String url, PostgreSQLContainer<?> credentials) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(url);
+        dataSource.setUsername(credentials.getUsername());
+        dataSource.setPassword(credentials.getPassword());
+        dataSource.setMaximumPoolSize(2);
+        dataSource.setConnectionTimeout(250);
+        dataSource.setInitializationFailTimeout(-1);
+        return dataSource;
+    }
+
+    private record Routing(JdbcTemplate jdbcTemplate, DataSourceTransactionManager transactionManager) {
+
+        String read(boolean readOnly) {
+            TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+            transactionTemplate.setReadOnly(readOnly);
+            return transactionTemplate.execute(status -> jdbcTemplate.queryForObject("SELECT name FROM node", String.class));
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.github.jvalsesia.pcms.infrastructure.rate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ExchangeRateIndexTest {
+
+    private static final Instant RETRIEVED_AT = Instant.parse("2024-04-01T08:00:00Z");
+
+    private ExchangeRateIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = ExchangeRateIndex.builder()
+                .add("Brazil", LocalDate.of(2023, 12, 31), new BigDecimal("4.852"), RETRIEVED_AT)
+                .add("Brazil", LocalDate.of(2023, 6, 30), new BigDecimal("4.819"), RETRIEVED_AT)
+                .add("Brazil", LocalDate.of(2024, 3, 31), new BigDecimal("4.977"), RETRIEVED_AT)
+                .add("Indonesia", LocalDate.of(2024, 3, 31), new BigDecimal("15855.000000"), RETRIEVED_AT)
+                .build();
+    }
+
+    @Test
+    void findExchangeRate_ReturnsLatestRateOnOrBeforeTransactionDate() {
+        assertThat(index.findExchangeRate("Brazil", LocalDate.of(2024, 2, 15)))
+                .contains(new BigDecimal("4.852"));
+    }
+
+    @Test
+    void findExchangeRate_ExactEffectiveDate_ReturnsThatRate() {
+        assertThat(index.findExchangeRate("Brazil", LocalDate.of(2024, 3, 31)))
+                .contains(new BigDecimal("4.977"));
+    }
+
+    @Test
+    void findExchangeRate_RateExactlySixMonthsOld_IsUsed() {
+        assertThat(index.findExchangeRate("Brazil", LocalDate.of(2023, 12, 30)))
+                .contains(new BigDecimal("4.819"));
+    }
+
+    @Test
+    void findExchangeRate_RateOlderThanSixMonths_ReturnsEmpty() {
+        assertThat(index.findExchangeRate("Brazil", LocalDate.of(2024, 11, 1))).isEmpty();
+    }
+
+    @Test
+    void findExchangeRate_BeforeFirstRate_ReturnsEmpty() {
+        assertThat(index.findExchangeRate("Brazil", LocalDate.of(2023, 1, 1))).isEmpty();
+    }
+
+    @Test
+    void findExchangeRate_UnknownCountry_ReturnsEmpty() {
+        assertThat(index.findExchangeRate("NonExistentCountry123", LocalDate.of(2024, 1, 1))).isEmpty();
+    }
+
+    @Test
+    void findExchangeRate_PackedRate_KeepsValueWithoutTrailingZeros() {
+        Optional<BigDecimal> rate = index.findExchangeRate("Indonesia", LocalDate.of(2024, 4, 1));
+
+        assertThat(rate).contains(new BigDecimal("15855"));
+    }
+
+    @Test
+    void findRate_ReturnsWhenTheRateWasRetrieved() {
+        Instant corrected = Instant.parse("2024-05-20T14:30:00Z");
+        ExchangeRateIndex retrieved = ExchangeRateIndex.builder()
+                .add("Canada", LocalDate.of(2023, 12, 31), new BigDecimal("1.32"), RETRIEVED_AT)
+                .add("Canada", LocalDate.of(2024, 3, 31), new BigDecimal("1.35"), corrected)
+                .build();
+
+        assertThat(retrieved.findRate("Canada", LocalDate.of(2024, 2, 1)))
+                .contains(new ExchangeRateIndex.Rate(new BigDecimal("1.32"), RETRIEVED_AT));
+        assertThat(retrieved.findRate("Canada", LocalDate.of(2024, 4, 1)))
+                .contains(new ExchangeRateIndex.Rate(new BigDecimal("1.35"), corrected));
+    }
+
+    @Test
+    void builder_SameCountryAndDate_LastRateWins() {
+        ExchangeRateIndex replaced = ExchangeRateIndex.builder()
+                .add("Canada", LocalDate.of(2024, 3, 31), new BigDecimal("1.35"), RETRIEVED_AT)
+                .add("Canada", LocalDate.of(2024, 3, 31), new BigDecimal("1.36"), RETRIEVED_AT)
+                .build();
+
+        assertThat(replaced.size()).isEqualTo(1);
+        assertThat(replaced.findExchangeRate("Canada", LocalDate.of(2024, 4, 1))).contains(new BigDecimal("1.36"));
+    }
+
+    @Test
+    void builder_RateTooLargeToPack_Throws() {
+        assertThatThrownBy(() -> ExchangeRateIndex.builder()
+                .add("Nowhere", LocalDate.of(2024, 3, 31), new BigDecimal("123456789012345678901234567890"), RETRIEVED_AT))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,82 @@
+package com.github.jvalsesia.pcms.infrastructure.rate;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ExchangeRateSnapshotTest {
+
+    private static final Instant RETRIEVED_AT = Instant.parse("2024-04-01T08:00:00Z");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void writeAndRead_RoundTripsEveryCountry() throws IOException {
+        ExchangeRateIndex index = ExchangeRateIndex.builder()
+                .add("Brazil", LocalDate.of(2023, 12, 31), new BigDecimal("4.852"), RETRIEVED_AT)
+                .add("Brazil", LocalDate.of(2024, 3, 31), new BigDecimal("4.977"), RETRIEVED_AT)
+                .add("Côte d'Ivoire", LocalDate.of(2024, 3, 31), new BigDecimal("605.5"), RETRIEVED_AT)
+                .add("Indonesia", LocalDate.of(2024, 3, 31), new BigDecimal("15855.000000"), RETRIEVED_AT)
+                .build();
+        Instant createdAt = Instant.parse("2024-04-01T06:00:00Z");
+        Path path = directory.resolve("snapshots").resolve("exchange-rates.snapshot");
+
+        new ExchangeRateSnapshot(index, createdAt).write(path);
+        ExchangeRateSnapshot read = ExchangeRateSnapshot.read(path);
+
+        assertThat(read.createdAt()).isEqualTo(createdAt);
+        assertThat(read.index().size()).isEqualTo(4);
+        assertThat(read.index().countries()).containsExactlyInAnyOrder("Brazil", "Côte d'Ivoire", "Indonesia");
+        assertThat(read.index().findExchangeRate("Brazil", LocalDate.of(2024, 2, 15))).contains(new BigDecimal("4.852"));
+        assertThat(read.index().findExchangeRate("Brazil", LocalDate.of(2024, 4, 1))).contains(new BigDecimal("4.977"));
+        assertThat(read.index().findExchangeRate("Côte d'Ivoire", LocalDate.of(2024, 4, 1))).contains(new BigDecimal("605.5"));
+        assertThat(read.index().findExchangeRate("Indonesia", LocalDate.of(2024, 4, 1))).contains(new BigDecimal("15855"));
+        assertThat(read.index().findRate("Brazil", LocalDate.of(2024, 4, 1)))
+                .map(ExchangeRateIndex.Rate::retrievedAt).contains(RETRIEVED_AT);
+        try (var files = Files.list(path.getParent())) {
+            assertThat(files).containsExactly(path);
+        }
+    }
+
+    @Test
+    void writeAndRead_EmptyIndex() throws IOException {
+        Path path = directory.resolve("exchange-rates.snapshot");
+
+        new ExchangeRateSnapshot(ExchangeRateIndex.empty(), Instant.EPOCH).write(path);
+
+        assertThat(ExchangeRateSnapshot.read(path).index().size()).isZero();
+    }
+
+    @Test
+    void read_NotASnapshot_Throws() {
+        assertThatThrownBy(() -> ExchangeRateSnapshot.read(ByteBuffer.wrap("{\"data\":[]}".getBytes())))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Not an exchange rate snapshot");
+    }
+
+    @Test
+    void read_TruncatedSnapshot_Throws() throws IOException {
+        ExchangeRateIndex index = ExchangeRateIndex.builder()
+                .add("Brazil", LocalDate.of(2024, 3, 31), new BigDecimal("4.977"), RETRIEVED_AT)
+                .build();
+        Path path = directory.resolve("exchange-rates.snapshot");
+        new ExchangeRateSnapshot(index, Instant.EPOCH).write(path);
+        byte[] bytes = Files.readAllBytes(path);
+
+        assertThatThrownBy(() -> ExchangeRateSnapshot.read(ByteBuffer.wrap(Arrays.copyOf(bytes, bytes.length - 4))))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Truncated");
+    }
+}
@@ -0,0 +1,280 @@
+package com.github.jvalsesia.pcms.infrastructure.treasury;
+
+import com.github.jvalsesia.pcms.infrastructure.concurrent.BulkheadFullException;
+import com.github.jvalsesia.pcms.infrastructure.concurrent.CircuitBreaker;
+import com.github.jvalsesia.pcms.infrastructure.treasury.config.TreasuryApiConfiguration;
+import com.github.jvalsesia.pcms.infrastructure.treasury.config.TreasuryHttpClientConfig;
+import com.github.jvalsesia.pcms.infrastructure.treasury.config.TreasuryHttpConfiguration;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Exercises the pooled client, deadlines, retries, bulkhead, circuit breaker and hedging against a
+ * local HTTP stub of the Treasury API.
+ */
+class TreasuryApiClientStubTest {
+
+    private static final String RATE_BODY = """
+            {"data":[{"effective_date":"2024-03-31","country":"Brazil","currency":"Real","exchange_rate":"4.977"}],
+             "meta":{"total-pages":1}}
+            """;
+
+    private HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile StubHandler handler;
+
+    private TreasuryHttpConfiguration httpConfiguration;
+    private HttpComponentsClientHttpRequestFactory requestFactory;
+    private TreasuryApiClient treasuryApiClient;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/rates", exchange -> {
+            try (exchange) {
+                int n = requests.incrementAndGet();
+                handler.handle(n, exchange);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        server.start();
+
+        httpConfiguration = new TreasuryHttpConfiguration();
+        httpConfiguration.setLookupDeadline(Duration.ofSeconds(1));
+        httpConfiguration.getRetry().setInitialBackoff(Duration.ofMillis(10));
+        httpConfiguration.getRetry().setMaxBackoff(Duration.ofMillis(20));
+        httpConfiguration.getCircuitBreaker().setFailureThreshold(2);
+        httpConfiguration.getHedge().setInitialDelay(Duration.ofMillis(100));
+        createClient();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        requestFactory.destroy();
+        server.stop(0);
+    }
+
+    @Test
+    void getExchangeRatesFiltered_RequestsOnlyNewestRecord() {
+        List<String> queries = new ArrayList<>();
+        handler = (request, exchange) -> {
+            queries.add(exchange.getRequestURI().getQuery());
+            respond(exchange, 200, RATE_BODY);
+        };
+
+        Optional<BigDecimal> rate = treasuryApiClient.getExchangeRatesFiltered("Brazil", LocalDate.of(2024, 6, 15));
+
+        assertThat(rate).contains(new BigDecimal("4.977"));
+        assertThat(queries).singleElement().satisfies(query -> assertThat(query)
+                .contains("fields=effective_date,exchange_rate")
+                .contains("sort=-effective_date")
+                .contains("page[size]=1"));
+    }
+
+    @Test
+    void getExchangeRatesFiltered_ServerError_IsRetried() {
+        handler = (request, exchange) -> respond(exchange, request == 1 ? 503 : 200, RATE_BODY);
+
+        Optional<BigDecimal> rate = treasuryApiClient.getExchangeRatesFiltered("Brazil", LocalDate.of(2024, 6, 15));
+
+        assertThat(rate).contains(new BigDecimal("4.977"));
+        assertThat(requests).hasValue(2);
+    }
+
+    @Test
+    void getExchangeRatesFiltered_ClientError_IsNotRetried() {
+        handler = (request, exchange) -> respond(exchange, 400, "{}");
+
+        assertThatThrownBy(() -> treasuryApiClient.getExchangeRatesFiltered("Brazil", LocalDate.of(2024, 6, 15)))
+                .isInstanceOf(TreasuryApiException.class);
+
+        assertThat(requests).hasValue(1);
+    }
+
+    @Test
+    void getExchangeRatesFiltered_HungServer_FailsAtDeadline() {
+        handler = (request, exchange) -> {
+            Thread.sleep(5_000);
+            respond(exchange, 200, RATE_BODY);
+        };
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> treasuryApiClient.getExchangeRatesFiltered("Brazil", LocalDate.of(2024, 6, 15)))
+                .isInstanceOf(TreasuryApiException.class)
+                .hasMessageContaining("deadline");
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(3));
+    }
+
+    @Test
+    void getExchangeRatesFiltered_RepeatedFailures_OpenCircuit() {
+        handler = (request, exchange) -> respond(exchange, 503, "{}");
+
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> treasuryApiClient.getExchangeRatesFiltered("Brazil", LocalDate.of(2024, 6, 15)))
+                    .isInstanceOf(TreasuryApiException.class);
+        }
+        int requestsBeforeOpen = requests.get();
+
+        assertThatThrownBy(() -> treasuryApiClient.getExchangeRatesFiltered("Brazil", LocalDate.of(2024, 6, 15)))
+                .isInstanceOf(TreasuryApiException.class)
+                .hasMessageContaining("circuit breaker is open");
+        assertThat(requests).hasValue(requestsBeforeOpen);
+    }
+
+    @Test
+    void execute_HalfOpenTrialInterruptedWhileBackingOff_ReopensTheCircuit() throws Exception {
+        AtomicLong clock = new AtomicLong();
+        CircuitBreaker circuitBreaker = new CircuitBreaker(1, Duration.ofSeconds(1), clock::get);
+        httpConfiguration.getRetry().setInitialBackoff(Duration.ofSeconds(10));
+        httpConfiguration.getRetry().setMaxBackoff(Duration.ofSeconds(10));
+        httpConfiguration.getRetry().setMaxAttempts(100);
+        TreasuryCallExecutor executor = new TreasuryCallExecutor(httpConfiguration, circuitBreaker);
+        circuitBreaker.onFailure();
+        clock.addAndGet(Duration.ofSeconds(2).toNanos());
+
+        // The half-open trial fails once and backs off before retrying
+        AtomicReference<RuntimeException> thrown = new AtomicReference<>();
+        Thread trial = Thread.ofVirtual().start(() -> {
+            try {
+                executor.execute(Duration.ofSeconds(30), false, () -> {
+                    throw new ResourceAccessException("Treasury down");
+                });
+            } catch (RuntimeException e) {
+                thrown.set(e);
+            }
+        });
+        long waitUntil = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (executor.getRetryCount() == 0 && System.nanoTime() < waitUntil) {
+            Thread.sleep(10);
+        }
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        trial.interrupt();
+        trial.join(5_000);
+
+        assertThat(thrown.get()).isInstanceOf(TreasuryApiException.class).hasMessageContaining("Interrupted");
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        clock.addAndGet(Duration.ofSeconds(2).toNanos());
+        assertThat(circuitBreaker.tryAcquire()).isTrue();
+        executor.shutdown();
+    }
+
+    @Test
+    void getExchangeRatesFiltered_FullBulkhead_FailsWithoutCallingTheApi() throws Exception {
+        httpConfiguration.getBulkhead().setMaxConcurrentCalls(1);
+        httpConfiguration.getBulkhead().setMaxWait(Duration.ofMillis(50));
+        createClient();
+        CountDownLatch release = new CountDownLatch(1);
+        handler = (request, exchange) -> {
+            release.await();
+            respond(exchange, 200, RATE_BODY);
+        };
+        // Another country, so the two lookups are not coalesced into one request
+        Future<Optional<BigDecimal>> inFlight = Executors.newVirtualThreadPerTaskExecutor()
+                .submit(() -> treasuryApiClient.getExchangeRatesFiltered("Canada", LocalDate.of(2024, 6, 15)));
+        while (requests.get() == 0) {
+            Thread.sleep(5);
+        }
+
+        assertThatThrownBy(() -> treasuryApiClient.getExchangeRatesFiltered("Brazil", LocalDate.of(2024, 6, 15)))
+                .isInstanceOf(TreasuryApiException.class)
+                .hasMessageContaining("bulkhead is full")
+                .hasCauseInstanceOf(BulkheadFullException.class);
+        release.countDown();
+
+        assertThat(inFlight.get(5, TimeUnit.SECONDS)).contains(new BigDecimal("4.977"));
+        assertThat(requests).hasValue(1);
+    }
+
+    @Test
+    void getExchangeRatesFiltered_SlowFirstRequest_IsHedged() throws Exception {
+        httpConfiguration.getHedge().setEnabled(true);
+        createClient();
+        handler = (request, exchange) -> {
+            if (request == 1) {
+                Thread.sleep(5_000);
+            }
+            respond(exchange, 200, RATE_BODY);
+        };
+
+        long start = System.nanoTime();
+        Optional<BigDecimal> rate = treasuryApiClient.getExchangeRatesFiltered("Brazil", LocalDate.of(2024, 6, 15));
+
+        assertThat(rate).contains(new BigDecimal("4.977"));
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(1));
+        assertThat(requests).hasValue(2);
+    }
+
+    @Test
+    void streamExchangeRatesPage_StreamsRecordsFromStub() {
+        handler = (request, exchange) -> respond(exchange, 200, RATE_BODY);
+        List<TreasuryApiResponse.ExchangeRateData> records = new ArrayList<>();
+
+        int totalPages = treasuryApiClient.streamExchangeRatesPage(LocalDate.of(2024, 1, 1), 1, 100, records::add);
+
+        assertThat(totalPages).isEqualTo(1);
+        assertThat(records).singleElement()
+                .satisfies(record -> assertThat(record.getCountry()).isEqualTo("Brazil"));
+    }
+
+    private void createClient() throws Exception {
+        if (requestFactory != null) {
+            requestFactory.destroy();
+        }
+        TreasuryApiConfiguration apiConfiguration = new TreasuryApiConfiguration();
+        apiConfiguration.setScheme("http");
+        apiConfiguration.setHost("localhost");
+        apiConfiguration.setPort(server.getAddress().getPort());
+        apiConfiguration.setPath("/rates");
+
+        TreasuryHttpClientConfig clientConfig = new TreasuryHttpClientConfig(httpConfiguration);
+        requestFactory = clientConfig.treasuryRequestFactory();
+        RestClient restClient = clientConfig.restClient(requestFactory);
+        TreasuryCallExecutor callExecutor = new TreasuryCallExecutor(httpConfiguration,
+                new CircuitBreaker(httpConfiguration.getCircuitBreaker().getFailureThreshold(), Duration.ofMinutes(1)));
+        treasuryApiClient = new TreasuryApiClient(restClient, apiConfiguration, httpConfiguration, callExecutor);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @FunctionalInterface
+    private interface StubHandler {
+        void handle(int request, HttpExchange exchange) throws IOException, InterruptedException;
+    }
+}
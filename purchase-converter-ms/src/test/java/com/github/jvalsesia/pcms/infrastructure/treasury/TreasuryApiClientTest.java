@@ -1,6 +1,7 @@
 package com.github.jvalsesia.pcms.infrastructure.treasury;
 
 import com.github.jvalsesia.pcms.infrastructure.treasury.config.TreasuryApiConfiguration;
+import com.github.jvalsesia.pcms.infrastructure.treasury.config.TreasuryHttpConfiguration;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,6 +11,8 @@ import org.springframework.web.client.RestClient;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -23,18 +26,26 @@ import static org.assertj.core.api.Assertions.assertThatThrownBy;
 @TestPropertySource(properties = {
         "treasury.api.scheme=https",
         "treasury.api.host=api.fiscaldata.treasury.gov",
-        "treasury.api.path=/services/api/fiscal_service/v1/accounting/od/rates_of_exchange"
+        "treasury.api.path=/services/api/fiscal_service/v1/accounting/od/rates_of_exchange",
+        "exchange-rate.sync.enabled=false"
 })
 class TreasuryApiClientTest {
     @Autowired
     private TreasuryApiConfiguration treasuryApiConfiguration;
 
+    @Autowired
+    private TreasuryHttpConfiguration treasuryHttpConfiguration;
+
+    @Autowired
+    private TreasuryCallExecutor treasuryCallExecutor;
+
     private TreasuryApiClient treasuryApiClient;
 
     @BeforeEach
     void setUp() {
         RestClient restClient = RestClient.builder().build();
-        treasuryApiClient = new TreasuryApiClient(restClient, treasuryApiConfiguration);
+        treasuryApiClient = new TreasuryApiClient(restClient, treasuryApiConfiguration, treasuryHttpConfiguration,
+                treasuryCallExecutor);
         treasuryApiClient.treasuryApiConfiguration = treasuryApiConfiguration;
     }
 
@@ -212,6 +223,21 @@ class TreasuryApiClientTest {
         assertThat(result).isPresent();
     }
 
+    @Test
+    void streamExchangeRatesPage_ReturnsOnlyRecordsFromEffectiveDate() {
+        // Given
+        LocalDate effectiveDate = LocalDate.now().minusMonths(6);
+        List<TreasuryApiResponse.ExchangeRateData> records = new ArrayList<>();
+
+        // When
+        int totalPages = treasuryApiClient.streamExchangeRatesPage(effectiveDate, 1, 100, records::add);
+
+        // Then
+        assertThat(totalPages).isPositive();
+        assertThat(records).isNotEmpty().hasSizeLessThanOrEqualTo(100);
+        assertThat(records).allSatisfy(rate -> assertThat(rate.getEffectiveDate()).isAfterOrEqualTo(effectiveDate));
+    }
+
     @Test
     void configuration_IsLoadedCorrectly() {
         // Then
@@ -0,0 +1,174 @@
+package com.github.jvalsesia.pcms.infrastructure.treasury;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.github.jvalsesia.pcms.domain.service.ExchangeRateQuote;
+import com.github.jvalsesia.pcms.infrastructure.treasury.config.TreasuryCacheConfiguration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TreasuryExchangeRateCacheTest {
+
+    private static final LocalDate TRANSACTION_DATE = LocalDate.of(2024, 1, 15);
+
+    @Mock
+    private TreasuryApiClient treasuryApiClient;
+
+    private final AtomicLong nanos = new AtomicLong();
+
+    private TreasuryCacheConfiguration cacheConfiguration;
+
+    private TreasuryExchangeRateCache treasuryExchangeRateCache;
+
+    @BeforeEach
+    void setUp() {
+        cacheConfiguration = new TreasuryCacheConfiguration();
+        cacheConfiguration.setMaximumSize(2);
+        treasuryExchangeRateCache = newCache();
+    }
+
+    @Test
+    void getExchangeRate_RepeatedLookup_CallsTreasuryOnce() {
+        when(treasuryApiClient.getExchangeRatesFiltered("Brazil", TRANSACTION_DATE))
+                .thenReturn(Optional.of(new BigDecimal("4.852")));
+
+        treasuryExchangeRateCache.getExchangeRate("Brazil", TRANSACTION_DATE);
+        advance(Duration.ofMinutes(5));
+        Optional<ExchangeRateQuote> quote = treasuryExchangeRateCache.getExchangeRate("Brazil", TRANSACTION_DATE);
+
+        assertThat(quote).isPresent();
+        assertThat(quote.get().rate()).isEqualByComparingTo("4.852");
+        assertThat(quote.get().age()).isEqualTo(Duration.ofMinutes(5));
+        assertThat(quote.get().stale()).isFalse();
+        verify(treasuryApiClient, times(1)).getExchangeRatesFiltered("Brazil", TRANSACTION_DATE);
+        CacheStats stats = treasuryExchangeRateCache.getCache().stats();
+        assertThat(stats.hitCount()).isEqualTo(1);
+        assertThat(stats.missCount()).isEqualTo(1);
+    }
+
+    @Test
+    void getExchangeRate_CountryIsNormalized() {
+        when(treasuryApiClient.getExchangeRatesFiltered("United Kingdom", TRANSACTION_DATE))
+                .thenReturn(Optional.of(new BigDecimal("0.787")));
+
+        treasuryExchangeRateCache.getExchangeRate("United Kingdom", TRANSACTION_DATE);
+        treasuryExchangeRateCache.getExchangeRate("  United   Kingdom ", TRANSACTION_DATE);
+
+        verify(treasuryApiClient, times(1)).getExchangeRatesFiltered("United Kingdom", TRANSACTION_DATE);
+    }
+
+    @Test
+    void getExchangeRate_EmptyResult_IsCachedForNegativeTtl() {
+        when(treasuryApiClient.getExchangeRatesFiltered("Brazil", TRANSACTION_DATE)).thenReturn(Optional.empty());
+
+        treasuryExchangeRateCache.getExchangeRate("Brazil", TRANSACTION_DATE);
+        treasuryExchangeRateCache.getExchangeRate("Brazil", TRANSACTION_DATE);
+        verify(treasuryApiClient, times(1)).getExchangeRatesFiltered("Brazil", TRANSACTION_DATE);
+
+        advance(cacheConfiguration.getNegativeTtl().plusSeconds(1));
+        treasuryExchangeRateCache.getExchangeRate("Brazil", TRANSACTION_DATE);
+
+        verify(treasuryApiClient, times(2)).getExchangeRatesFiltered("Brazil", TRANSACTION_DATE);
+    }
+
+    @Test
+    void getExchangeRate_PastDateRate_OutlivesNegativeTtl() {
+        when(treasuryApiClient.getExchangeRatesFiltered("Brazil", TRANSACTION_DATE))
+                .thenReturn(Optional.of(new BigDecimal("4.852")));
+
+        treasuryExchangeRateCache.getExchangeRate("Brazil", TRANSACTION_DATE);
+        advance(cacheConfiguration.getNegativeTtl().plusSeconds(1));
+        treasuryExchangeRateCache.getExchangeRate("Brazil", TRANSACTION_DATE);
+
+        verify(treasuryApiClient, times(1)).getExchangeRatesFiltered("Brazil", TRANSACTION_DATE);
+    }
+
+    @Test
+    void getExchangeRate_Failure_IsNotCached() {
+        when(treasuryApiClient.getExchangeRatesFiltered("Brazil", TRANSACTION_DATE))
+                .thenThrow(new TreasuryApiException("Treasury down"))
+                .thenReturn(Optional.of(new BigDecimal("4.852")));
+
+        assertThatThrownBy(() -> treasuryExchangeRateCache.getExchangeRate("Brazil", TRANSACTION_DATE))
+                .isInstanceOf(TreasuryApiException.class);
+
+        assertThat(treasuryExchangeRateCache.getExchangeRate("Brazil", TRANSACTION_DATE)).isPresent();
+    }
+
+    @Test
+    void getExchangeRate_MaximumSizeExceeded_EvictsEntries() {
+        when(treasuryApiClient.getExchangeRatesFiltered(anyString(), eq(TRANSACTION_DATE)))
+                .thenReturn(Optional.of(BigDecimal.ONE));
+
+        for (String country : new String[]{"Brazil", "Canada", "Mexico", "Japan"}) {
+            treasuryExchangeRateCache.getExchangeRate(country, TRANSACTION_DATE);
+        }
+        treasuryExchangeRateCache.getCache().cleanUp();
+
+        assertThat(treasuryExchangeRateCache.getCache().estimatedSize()).isLessThanOrEqualTo(2);
+        assertThat(treasuryExchangeRateCache.getCache().stats().evictionCount()).isPositive();
+    }
+
+    @Test
+    void getExchangeRate_StaleWhileRevalidate_ServesStaleAndRefreshes() {
+        cacheConfiguration.setStaleWhileRevalidate(true);
+        treasuryExchangeRateCache = newCache();
+        when(treasuryApiClient.getExchangeRatesFiltered("Brazil", TRANSACTION_DATE))
+                .thenReturn(Optional.of(new BigDecimal("4.852")))
+                .thenReturn(Optional.of(new BigDecimal("4.900")));
+
+        treasuryExchangeRateCache.getExchangeRate("Brazil", TRANSACTION_DATE);
+        advance(cacheConfiguration.getPastDateTtl().plusMinutes(1));
+        Optional<ExchangeRateQuote> stale = treasuryExchangeRateCache.getExchangeRate("Brazil", TRANSACTION_DATE);
+        Optional<ExchangeRateQuote> refreshed = treasuryExchangeRateCache.getExchangeRate("Brazil", TRANSACTION_DATE);
+
+        assertThat(stale).isPresent();
+        assertThat(stale.get().rate()).isEqualByComparingTo("4.852");
+        assertThat(stale.get().stale()).isTrue();
+        assertThat(refreshed).isPresent();
+        assertThat(refreshed.get().rate()).isEqualByComparingTo("4.900");
+        assertThat(refreshed.get().stale()).isFalse();
+    }
+
+    @Test
+    void getExchangeRate_StaleWhileRevalidate_ServesStaleOnErrorUpToMaxStale() {
+        cacheConfiguration.setStaleWhileRevalidate(true);
+        treasuryExchangeRateCache = newCache();
+        when(treasuryApiClient.getExchangeRatesFiltered("Brazil", TRANSACTION_DATE))
+                .thenReturn(Optional.of(new BigDecimal("4.852")))
+                .thenThrow(new TreasuryApiException("Treasury down"));
+
+        treasuryExchangeRateCache.getExchangeRate("Brazil", TRANSACTION_DATE);
+        advance(cacheConfiguration.getPastDateTtl().plusMinutes(1));
+        Optional<ExchangeRateQuote> stale = treasuryExchangeRateCache.getExchangeRate("Brazil", TRANSACTION_DATE);
+
+        assertThat(stale).isPresent();
+        assertThat(stale.get().stale()).isTrue();
+        assertThat(stale.get().age()).isEqualTo(cacheConfiguration.getPastDateTtl().plusMinutes(1));
+
+        advance(cacheConfiguration.getMaxStale());
+        assertThatThrownBy(() -> treasuryExchangeRateCache.getExchangeRate("Brazil", TRANSACTION_DATE))
+                .isInstanceOf(TreasuryApiException.class);
+    }
+
+    private TreasuryExchangeRateCache newCache() {
+        return new TreasuryExchangeRateCache(treasuryApiClient, cacheConfiguration, nanos::get, Runnable::run);
+    }
+
+    private void advance(Duration duration) {
+        nanos.addAndGet(duration.toNanos());
+    }
+}
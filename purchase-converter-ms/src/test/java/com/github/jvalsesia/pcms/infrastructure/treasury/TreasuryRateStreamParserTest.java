@@ -0,0 +1,90 @@
+package com.github.jvalsesia.pcms.infrastructure.treasury;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TreasuryRateStreamParserTest {
+
+    @Test
+    void parse_StreamsRecordsAndReturnsTotalPages() throws IOException {
+        String body = """
+                {"data":[
+                  {"effective_date":"2024-03-31","country":"Brazil","currency":"Real","exchange_rate":"4.977"},
+                  {"effective_date":"2024-03-31","country":"Canada","currency":"Dollar","exchange_rate":"1.354","extra":{"a":1}}
+                ],
+                "meta":{"count":2,"labels":{"country":"Country"},"total-count":20001,"total-pages":3},
+                "links":{"self":"&page%5Bnumber%5D=1"}}
+                """;
+        List<TreasuryApiResponse.ExchangeRateData> records = new ArrayList<>();
+
+        int totalPages = TreasuryRateStreamParser.parse(stream(body), records::add);
+
+        assertThat(totalPages).isEqualTo(3);
+        assertThat(records).hasSize(2);
+        assertThat(records.getFirst().getCountry()).isEqualTo("Brazil");
+        assertThat(records.getFirst().getCurrency()).isEqualTo("Real");
+        assertThat(records.getFirst().getEffectiveDate()).isEqualTo(LocalDate.of(2024, 3, 31));
+        assertThat(records.getFirst().getExchangeRate()).isEqualByComparingTo("4.977");
+        assertThat(records.get(1).getCountry()).isEqualTo("Canada");
+    }
+
+    @Test
+    void parse_MetaBeforeData_AndNullValues() throws IOException {
+        String body = """
+                {"meta":{"total-pages":1},
+                 "data":[{"effective_date":"2024-03-31","country":"Brazil","currency":null,"exchange_rate":"4.977"}]}
+                """;
+        List<TreasuryApiResponse.ExchangeRateData> records = new ArrayList<>();
+
+        int totalPages = TreasuryRateStreamParser.parse(stream(body), records::add);
+
+        assertThat(totalPages).isEqualTo(1);
+        assertThat(records).singleElement().satisfies(record -> assertThat(record.getCurrency()).isNull());
+    }
+
+    @Test
+    void parse_EmptyData_ReturnsNoRecords() throws IOException {
+        List<TreasuryApiResponse.ExchangeRateData> records = new ArrayList<>();
+
+        int totalPages = TreasuryRateStreamParser.parse(stream("{\"data\":[],\"meta\":{\"total-pages\":0}}"), records::add);
+
+        assertThat(totalPages).isZero();
+        assertThat(records).isEmpty();
+    }
+
+    @Test
+    void parseFirst_StopsAfterFirstRecord() throws IOException {
+        // The second record is truncated: reading it would fail
+        String body = """
+                {"data":[{"effective_date":"2024-03-31","exchange_rate":"4.977"},{"effective_date":
+                """;
+
+        Optional<TreasuryApiResponse.ExchangeRateData> first = TreasuryRateStreamParser.parseFirst(stream(body));
+
+        assertThat(first).hasValueSatisfying(record -> {
+            assertThat(record.getEffectiveDate()).isEqualTo(LocalDate.of(2024, 3, 31));
+            assertThat(record.getExchangeRate()).isEqualByComparingTo("4.977");
+        });
+    }
+
+    @Test
+    void parseFirst_EmptyData_ReturnsEmpty() throws IOException {
+        Optional<TreasuryApiResponse.ExchangeRateData> first =
+                TreasuryRateStreamParser.parseFirst(stream("{\"meta\":{\"total-pages\":0},\"data\":[]}"));
+
+        assertThat(first).isEmpty();
+    }
+
+    private ByteArrayInputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}